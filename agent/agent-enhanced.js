@@ -11,9 +11,13 @@ const rateLimit = require('express-rate-limit');
 const cors = require('cors');
 const WebSocket = require('ws'); // ONLY ONCE
 const { BankWealthParser } = require('./bank-wealth-parser');
+const { PushReceiver, DEFAULT_PORT: DEFAULT_PUSH_PORT } = require('./push-receiver');
 const { decrypt, detectJavaPath } = require('./utils');
 
-const bankWealthParser = new BankWealthParser();
+// PUSH_PORT=0 turns the loopback receiver off; the file readers below still work without it
+const PUSH_PORT = Number(process.env.PUSH_PORT ?? DEFAULT_PUSH_PORT);
+const pushReceiver = PUSH_PORT > 0 ? new PushReceiver({ port: PUSH_PORT }).start() : null;
+const bankWealthParser = new BankWealthParser({ pushReceiver });
 const app = express();
 const PORT = process.env.AGENT_PORT || 3001;
 
@@ -323,6 +327,24 @@ app.get('/api/stats/:username', async (req, res) => {
   res.json(stats);
 });
 
+// bank wealth over ?from=&to= (epoch ms, default the last 7 days), at most ?points= (default 500)
+app.get('/api/history/:username', (req, res) => {
+  try {
+    const username = decodeURIComponent(req.params.username);
+    const account = loadAccounts().find(a => a.username === username);
+    if (!account || !account.rsn) return res.status(404).json({ error: 'Not found' });
+
+    const to = Number(req.query.to) || Date.now();
+    const from = Number(req.query.from) || to - 7 * 24 * 60 * 60 * 1000;
+    const points = Math.min(Math.max(Number(req.query.points) || 500, 1), 5000);
+    // the plugin's file-safe RSN
+    const rsn = account.rsn.replace(/[\\/:*?"<>|]/g, '_').trim();
+    res.json(bankWealthParser.getBankWealthHistory(rsn, from, to, points));
+  } catch (e) {
+    res.status(500).json({ error: e.message });
+  }
+});
+
 app.get('/api/logs/:username', async (req, res) => {
   try {
     const username = decodeURIComponent(req.params.username);
@@ -374,8 +396,11 @@ async function getBotStats(username) {
       stats.bankValue = wealth.bankValue;
       stats.coins = wealth.coins;
     }
+    const pushedDays = pushReceiver && pushReceiver.getMembership(stats.rsn);
     const memFile = path.join(RUNELITE_HOME, 'membership-days', `${stats.rsn}.json`);
-    if (fs.existsSync(memFile)) {
+    if (pushedDays) {
+      stats.membershipDays = pushedDays.days;
+    } else if (fs.existsSync(memFile)) {
       const data = JSON.parse(fs.readFileSync(memFile, 'utf8'));
       stats.membershipDays = data.days;
     }
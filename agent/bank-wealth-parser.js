@@ -1,12 +1,37 @@
 const fs = require('fs');
 const path = require('path');
+const zlib = require('zlib');
+
+// zlib.crc32 needs Node 20.15+; older runtimes get the table-driven equivalent
+const crc32 = zlib.crc32 || (() => {
+  const table = new Int32Array(256);
+  for (let n = 0; n < 256; n++) {
+    let c = n;
+    for (let k = 0; k < 8; k++) c = c & 1 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+    table[n] = c;
+  }
+  return (buf) => {
+    let c = -1;
+    for (let i = 0; i < buf.length; i++) c = table[(c ^ buf[i]) & 0xFF] ^ (c >>> 8);
+    return (c ^ -1) >>> 0;
+  };
+})();
+
+// rollup tiers in <rsn>.<suffix>.wr, finest first, with the plugin's expected record spacing
+const ROLLUP_TIERS = [
+  { suffix: 'raw', spacingMs: 10000 },
+  { suffix: '1m', spacingMs: 60000 },
+  { suffix: '1h', spacingMs: 3600000 },
+  { suffix: '1d', spacingMs: 86400000 }
+];
 
 /**
  * Parse Bank Wealth plugin data
  * Reads bank value and coin data from custom RuneLite plugin
  */
 class BankWealthParser {
-  constructor() {
+  constructor({ pushReceiver = null } = {}) {
+    this.pushReceiver = pushReceiver; // live values from the plugin, preferred over files while fresh
     this.bankWealthDir = path.join(
       process.env.USERPROFILE || process.env.HOME,
       '.runelite',
@@ -20,45 +45,279 @@ class BankWealthParser {
    */
   getBankWealth(rsn) {
     try {
-      const filePath = path.join(this.bankWealthDir, `${rsn}.json`);
-      
-      if (!fs.existsSync(filePath)) {
+      const pushed = this.pushReceiver && this.pushReceiver.getWealth(rsn);
+      if (pushed) return pushed;
+
+      // the plugin only writes the files its current settings select, so one left behind
+      // by an earlier setting stops advancing: take whichever holds the newest entry.
+      // An entry is never newer than the file holding it, so files are read newest first
+      // and the rest skipped once none can beat what was found
+      const candidates = [
+        ['.wts', (p) => this.getBankWealthFromSeries(rsn, p)],
+        ['.jsonl', (p) => this.getBankWealthFromLog(rsn, p)],
+        ['.json', (p) => this.getBankWealthFromJson(rsn, p)]
+      ].map(([ext, read]) => {
+        const file = path.join(this.bankWealthDir, `${rsn}${ext}`);
+        return fs.existsSync(file) ? { file, read, mtimeMs: fs.statSync(file).mtimeMs } : null;
+      }).filter(c => c !== null).sort((x, y) => y.mtimeMs - x.mtimeMs);
+
+      if (candidates.length === 0) {
         console.log(`[BankWealth] No file found for RSN: ${rsn}`);
         return null;
       }
 
-      const data = JSON.parse(fs.readFileSync(filePath, 'utf8'));
-      
-      if (!data.entries || data.entries.length === 0) {
-        console.log(`[BankWealth] No entries found for RSN: ${rsn}`);
-        return null;
+      let best = null;
+      for (const c of candidates) {
+        if (best && c.mtimeMs < Date.parse(best.timestamp)) break;
+        let wealth = null;
+        try {
+          wealth = c.read(c.file);
+        } catch (error) {
+          console.error(`[BankWealth] Error reading ${c.file}:`, error.message);
+        }
+        if (wealth && (!best || Date.parse(wealth.timestamp) > Date.parse(best.timestamp))) best = wealth;
       }
+      return best;
+    } catch (error) {
+      console.error(`[BankWealth] Error reading file for RSN "${rsn}":`, error.message);
+      return null;
+    }
+  }
+
+  /**
+   * Legacy document (<rsn>.json): the last of its entries array
+   */
+  getBankWealthFromJson(rsn, filePath) {
+    const data = JSON.parse(fs.readFileSync(filePath, 'utf8'));
+
+    if (!data.entries || data.entries.length === 0) {
+      console.log(`[BankWealth] No entries found for RSN: ${rsn}`);
+      return null;
+    }
 
-      // Get the latest entry (last in array)
-      const latestEntry = data.entries[data.entries.length - 1];
+    // Get the latest entry (last in array)
+    const latestEntry = data.entries[data.entries.length - 1];
 
-      // Calculate total bank value (bank GE value + inventory coins)
-      const totalBankValue = latestEntry.bank_ge_value + latestEntry.inventory_coins;
+    // Calculate total bank value (bank GE value + inventory coins)
+    const totalBankValue = latestEntry.bank_ge_value + latestEntry.inventory_coins;
+
+    // Total coins = bank coins + inventory coins
+    const totalCoins = latestEntry.bank_coins + latestEntry.inventory_coins;
+
+    return {
+      rsn: data.rsn,
+      bankValue: totalBankValue,
+      coins: totalCoins,
+      bankCoins: latestEntry.bank_coins,
+      inventoryCoins: latestEntry.inventory_coins,
+      bankGeValue: latestEntry.bank_ge_value,
+      timestamp: latestEntry.timestamp,
+      lastUpdated: data.lastUpdated
+    };
+  }
+
+  /**
+   * Binary time series (<rsn>.wts): header holds the latest record offset,
+   * so this is two small reads and no parsing
+   */
+  getBankWealthFromSeries(rsn, seriesPath) {
+    const fd = fs.openSync(seriesPath, 'r');
+    try {
+      const header = Buffer.alloc(64);
+      if (fs.readSync(fd, header, 0, 64, 0) < 64) return null;
+      if (header.readInt32LE(0) !== 0x53545742 || header.readInt32LE(4) !== 1) return null;
+
+      const latestOffset = Number(header.readBigInt64LE(24));
+      if (latestOffset < 64) return null;
+
+      const rec = Buffer.alloc(32);
+      if (fs.readSync(fd, rec, 0, 32, latestOffset) < 32) return null;
+
+      const timestamp = new Date(Number(rec.readBigInt64LE(0))).toISOString();
+      const bankGeValue = Number(rec.readBigInt64LE(8));
+      const bankCoins = Number(rec.readBigInt64LE(16));
+      const inventoryCoins = Number(rec.readBigInt64LE(24));
+      return {
+        rsn,
+        bankValue: bankGeValue + inventoryCoins,
+        coins: bankCoins + inventoryCoins,
+        bankCoins,
+        inventoryCoins,
+        bankGeValue,
+        timestamp,
+        lastUpdated: timestamp
+      };
+    } finally {
+      fs.closeSync(fd);
+    }
+  }
+
+  /**
+   * Append-only log (<rsn>.jsonl): only the tail of the file is read,
+   * and a torn last line is ignored
+   */
+  getBankWealthFromLog(rsn, logPath) {
+    const fd = fs.openSync(logPath, 'r');
+    try {
+      const size = fs.fstatSync(fd).size;
+      const len = Math.min(size, 4096);
+      const buf = Buffer.alloc(len);
+      fs.readSync(fd, buf, 0, len, size - len);
 
-      // Total coins = bank coins + inventory coins
-      const totalCoins = latestEntry.bank_coins + latestEntry.inventory_coins;
+      const lines = buf.toString('utf8').split('\n');
+      lines.pop(); // empty or torn
+      const last = lines.length > 0 ? lines[lines.length - 1] : null;
+      if (!last) {
+        console.log(`[BankWealth] No entries found for RSN: ${rsn}`);
+        return null;
+      }
 
+      const latestEntry = JSON.parse(last);
       return {
-        rsn: data.rsn,
-        bankValue: totalBankValue,
-        coins: totalCoins,
+        rsn,
+        bankValue: latestEntry.bank_ge_value + latestEntry.inventory_coins,
+        coins: latestEntry.bank_coins + latestEntry.inventory_coins,
         bankCoins: latestEntry.bank_coins,
         inventoryCoins: latestEntry.inventory_coins,
         bankGeValue: latestEntry.bank_ge_value,
         timestamp: latestEntry.timestamp,
-        lastUpdated: data.lastUpdated
+        lastUpdated: latestEntry.timestamp
       };
-    } catch (error) {
-      console.error(`[BankWealth] Error reading file for RSN "${rsn}":`, error.message);
-      return null;
+    } finally {
+      fs.closeSync(fd);
     }
   }
 
+  /**
+   * Wealth over [fromMs, toMs] for charts, from the rollup rings (<rsn>.<tier>.wr) at the
+   * finest tier that keeps the range within maxPoints, as WealthRollupReader.forRange picks
+   * it, so long ranges never parse the full history. Oldest first; empty without rollups
+   */
+  getBankWealthHistory(rsn, fromMs, toMs, maxPoints = 500) {
+    const span = Math.max(1, toMs - fromMs);
+    const tier = ROLLUP_TIERS.find(t => Math.floor(span / t.spacingMs) <= maxPoints)
+      || ROLLUP_TIERS[ROLLUP_TIERS.length - 1];
+    const ringPath = path.join(this.bankWealthDir, `${rsn}.${tier.suffix}.wr`);
+    const points = [];
+    if (!fs.existsSync(ringPath)) return { tier: tier.suffix, points };
+
+    const fd = fs.openSync(ringPath, 'r');
+    try {
+      const header = Buffer.alloc(64);
+      if (fs.readSync(fd, header, 0, 64, 0) < 64 || header.readInt32LE(0) !== 0x55525742) {
+        return { tier: tier.suffix, points };
+      }
+      const cap = Number(header.readBigInt64LE(24));
+      const head = Number(header.readBigInt64LE(32));
+      const count = Math.min(Number(header.readBigInt64LE(40)), cap);
+      if (cap <= 0 || count <= 0) return { tier: tier.suffix, points };
+
+      // logical index 0 is the oldest bucket; starts are sorted, so binary search for fromMs
+      const rec = Buffer.alloc(80);
+      const readAt = (index) => {
+        const slot = (((head - count + index) % cap) + cap) % cap;
+        if (fs.readSync(fd, rec, 0, 80, 64 + slot * 80) < 80) throw new Error(`truncated rollup record at slot ${slot}`);
+        return Number(rec.readBigInt64LE(0));
+      };
+      let lo = 0;
+      let hi = count;
+      while (lo < hi) {
+        const mid = Math.floor((lo + hi) / 2);
+        if (readAt(mid) < fromMs) lo = mid + 1;
+        else hi = mid;
+      }
+
+      for (let i = lo; i < count; i++) {
+        const start = readAt(i);
+        if (start > toMs) break;
+        const samples = rec.readBigInt64LE(8) > 0n ? rec.readBigInt64LE(8) : 1n;
+        points.push({
+          timestamp: new Date(start).toISOString(),
+          samples: Number(samples),
+          bankMin: Number(rec.readBigInt64LE(16)),
+          bankMax: Number(rec.readBigInt64LE(24)),
+          bankLast: Number(rec.readBigInt64LE(32)),
+          bankAvg: Number(rec.readBigInt64LE(40) / samples),
+          coinsMin: Number(rec.readBigInt64LE(48)),
+          coinsMax: Number(rec.readBigInt64LE(56)),
+          coinsLast: Number(rec.readBigInt64LE(64)),
+          coinsAvg: Number(rec.readBigInt64LE(72) / samples)
+        });
+      }
+      return { tier: tier.suffix, points };
+    } finally {
+      fs.closeSync(fd);
+    }
+  }
+
+  /**
+   * Farm-wide manifest (_manifest.bin): every account's latest entry in one read.
+   * Returns { mtimeMs, byRsn } keyed by the RSN used in file names, or null when there
+   * is no usable manifest, so the caller can fall back to reading each history file
+   */
+  getAllBankWealthFromManifest() {
+    const manifestPath = path.join(this.bankWealthDir, '_manifest.bin');
+    if (!fs.existsSync(manifestPath)) return null;
+
+    // clients replace the manifest by rename, which Windows can briefly refuse a
+    // reader (EBUSY/EPERM); a record failing its CRC may come from an older client
+    // still writing in place. Read again, then give up on the manifest
+    for (let attempt = 0; attempt < 5; attempt++) {
+      const last = attempt === 4;
+      try {
+        // taken before the read: a manifest replaced in between only looks older
+        const mtimeMs = fs.statSync(manifestPath).mtimeMs;
+        const buf = fs.readFileSync(manifestPath);
+        if (buf.length < 32) return null;
+        if (buf.readInt32LE(0) !== 0x464D5742 || buf.readInt32LE(4) !== 1 || buf.readInt32LE(8) !== 96) return null;
+
+        const count = Math.min(buf.readInt32LE(12), Math.floor((buf.length - 32) / 96));
+        const byRsn = new Map();
+        let torn = false;
+        for (let i = 0; i < count; i++) {
+          const off = 32 + i * 96;
+          const nameLen = buf.readInt32LE(off + 48);
+          const named = nameLen > 0 && nameLen <= 44;
+          const rsn = named ? buf.toString('utf8', off + 52, off + 52 + nameLen) : null;
+
+          if ((crc32(buf.subarray(off + 4, off + 96)) | 0) !== buf.readInt32LE(off)) {
+            torn = true;
+            if (!last) break;
+            // still failing: read that account's own files, or scan them all
+            if (!named) return null;
+            const fromHistory = this.getBankWealth(rsn);
+            if (fromHistory) byRsn.set(rsn, fromHistory);
+            continue;
+          }
+          if (!named) continue;
+          const timestamp = new Date(Number(buf.readBigInt64LE(off + 8))).toISOString();
+          const bankGeValue = Number(buf.readBigInt64LE(off + 16));
+          const bankCoins = Number(buf.readBigInt64LE(off + 24));
+          const inventoryCoins = Number(buf.readBigInt64LE(off + 32));
+
+          const pushed = this.pushReceiver && this.pushReceiver.getWealth(rsn);
+          byRsn.set(rsn, pushed || {
+            rsn,
+            bankValue: bankGeValue + inventoryCoins,
+            coins: bankCoins + inventoryCoins,
+            bankCoins,
+            inventoryCoins,
+            bankGeValue,
+            timestamp,
+            lastUpdated: timestamp
+          });
+        }
+        if (!torn || last) return byRsn.size > 0 ? { mtimeMs, byRsn } : null;
+      } catch (error) {
+        if (last) {
+          console.error('[BankWealth] Error reading manifest:', error.message);
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
   /**
    * Get all bank wealth data
    */
@@ -69,12 +328,32 @@ class BankWealthParser {
         return [];
       }
 
-      const files = fs.readdirSync(this.bankWealthDir).filter(f => f.endsWith('.json'));
-      
-      return files.map(file => {
-        const rsn = file.replace('.json', '');
-        return this.getBankWealth(rsn);
-      }).filter(data => data !== null);
+      // newest history file per account
+      const histories = new Map();
+      for (const f of fs.readdirSync(this.bankWealthDir)) {
+        const m = /^(.+)\.(jsonl?|wts)$/.exec(f);
+        if (!m) continue;
+        const mtimeMs = fs.statSync(path.join(this.bankWealthDir, f)).mtimeMs;
+        histories.set(m[1], Math.max(histories.get(m[1]) || 0, mtimeMs));
+      }
+
+      const manifest = this.getAllBankWealthFromManifest();
+      const out = [];
+      if (manifest) {
+        // clients write the manifest after the history, so a history file newer than it
+        // holds an entry the manifest has not caught up with (or whose client keeps none)
+        for (const [rsn, wealth] of manifest.byRsn) {
+          if ((histories.get(rsn) || 0) > manifest.mtimeMs) continue;
+          out.push(wealth);
+          histories.delete(rsn);
+        }
+      }
+
+      for (const rsn of histories.keys()) {
+        const wealth = this.getBankWealth(rsn);
+        if (wealth !== null) out.push(wealth);
+      }
+      return out;
     } catch (error) {
       console.error('[BankWealth] Error reading directory:', error.message);
       return [];
@@ -0,0 +1,155 @@
+const net = require('net');
+
+/**
+ * Receives snapshots pushed by the RuneLite plugins over loopback
+ * (see com.craig.shared.PushChannel for the frame format) and keeps the
+ * latest wealth and membership values per RSN in memory.
+ *
+ * Files stay the fallback: callers should use these values only while fresh.
+ *
+ * Run on its own as a stand-in receiver that logs every frame:
+ *   node push-receiver.js [port]
+ */
+
+const DEFAULT_PORT = 47731;
+const VERSION = 1;
+const TYPE_HELLO = 1;
+const TYPE_WEALTH = 2;
+const TYPE_MEMBERSHIP = 3;
+const MAX_FRAME = 64 * 1024;
+
+class PushReceiver {
+  constructor({ port = DEFAULT_PORT, onFrame = null } = {}) {
+    this.port = port;
+    this.onFrame = onFrame;
+    this.wealth = new Map();      // rsn -> { rsn, bankValue, coins, ..., receivedAt }
+    this.membership = new Map();  // rsn -> { rsn, days, source, capturedAt, receivedAt }
+    this.server = null;
+  }
+
+  start() {
+    this.server = net.createServer(socket => this.handle(socket));
+    this.server.on('error', err => console.error('[Push] Receiver error:', err.message));
+    this.server.listen(this.port, '127.0.0.1', () => console.log(`[Push] Listening on 127.0.0.1:${this.port}`));
+    return this;
+  }
+
+  stop() {
+    if (this.server) this.server.close();
+    this.server = null;
+  }
+
+  /** Latest pushed wealth for rsn, or null if none arrived within maxAgeMs */
+  getWealth(rsn, maxAgeMs = 10 * 60 * 1000) {
+    return fresh(this.wealth.get(rsn), maxAgeMs);
+  }
+
+  getMembership(rsn, maxAgeMs = 60 * 60 * 1000) {
+    return fresh(this.membership.get(rsn), maxAgeMs);
+  }
+
+  handle(socket) {
+    let buf = Buffer.alloc(0);
+    let source = 'unknown';
+
+    socket.on('data', chunk => {
+      buf = buf.length === 0 ? chunk : Buffer.concat([buf, chunk]);
+      while (buf.length >= 4) {
+        const len = buf.readUInt32BE(0);
+        if (len < 2 || len > MAX_FRAME) {
+          console.error(`[Push] Bad frame length ${len} from ${source}, dropping connection`);
+          socket.destroy();
+          return;
+        }
+        if (buf.length < 4 + len) break;
+
+        const frame = buf.subarray(4, 4 + len);
+        buf = buf.subarray(4 + len);
+        try {
+          const msg = decode(frame);
+          if (!msg) continue;
+          if (msg.type === 'hello') source = msg.source;
+          else this.apply(msg);
+          if (this.onFrame) this.onFrame(msg, source);
+        } catch (err) {
+          console.error(`[Push] Undecodable frame from ${source}:`, err.message);
+        }
+      }
+    });
+    socket.on('error', () => { /* plugin went away; it reconnects on its own */ });
+  }
+
+  apply(msg) {
+    const receivedAt = Date.now();
+    if (msg.type === 'wealth') {
+      const timestamp = new Date(msg.timestamp).toISOString();
+      this.wealth.set(msg.rsn, {
+        rsn: msg.rsn,
+        bankValue: msg.bankGeValue + msg.inventoryCoins,
+        coins: msg.bankCoins + msg.inventoryCoins,
+        bankCoins: msg.bankCoins,
+        inventoryCoins: msg.inventoryCoins,
+        bankGeValue: msg.bankGeValue,
+        timestamp,
+        lastUpdated: timestamp,
+        receivedAt
+      });
+    } else if (msg.type === 'membership') {
+      this.membership.set(msg.rsn, {
+        rsn: msg.rsn,
+        days: msg.days,
+        source: msg.source,
+        captured_at: new Date(msg.timestamp).toISOString(),
+        receivedAt
+      });
+    }
+  }
+}
+
+function fresh(entry, maxAgeMs) {
+  if (!entry) return null;
+  return Date.now() - entry.receivedAt <= maxAgeMs ? entry : null;
+}
+
+function decode(frame) {
+  if (frame.readUInt8(0) !== VERSION) return null; // newer plugin; files still have the data
+  const type = frame.readUInt8(1);
+  let off = 2;
+  const str = () => {
+    const n = frame.readUInt16BE(off);
+    const s = frame.toString('utf8', off + 2, off + 2 + n);
+    off += 2 + n;
+    return s;
+  };
+  const i64 = () => {
+    const v = Number(frame.readBigInt64BE(off));
+    off += 8;
+    return v;
+  };
+
+  switch (type) {
+    case TYPE_HELLO:
+      return { type: 'hello', source: str() };
+    case TYPE_WEALTH: {
+      const timestamp = i64();
+      const rsn = str();
+      return { type: 'wealth', timestamp, rsn, bankGeValue: i64(), bankCoins: i64(), inventoryCoins: i64() };
+    }
+    case TYPE_MEMBERSHIP: {
+      const timestamp = i64();
+      const rsn = str();
+      const days = frame.readInt32BE(off);
+      off += 4;
+      return { type: 'membership', timestamp, rsn, days, source: str() };
+    }
+    default:
+      return null;
+  }
+}
+
+module.exports = { PushReceiver, decode, DEFAULT_PORT };
+
+if (require.main === module) {
+  const port = Number(process.argv[2]) || DEFAULT_PORT;
+  new PushReceiver({ port, onFrame: (msg, source) => console.log(source, JSON.stringify(msg)) }).start();
+}
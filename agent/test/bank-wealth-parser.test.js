@@ -0,0 +1,174 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const zlib = require('zlib');
+const { BankWealthParser } = require('../bank-wealth-parser');
+
+const HOUR = 60 * 60 * 1000;
+const T0 = Date.parse('2026-03-01T12:00:00');
+
+function parserIn(dir) {
+  const parser = new BankWealthParser();
+  parser.bankWealthDir = dir;
+  return parser;
+}
+
+function tmpDir(t) {
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'bank-wealth-'));
+  t.after(() => fs.rmSync(dir, { recursive: true, force: true }));
+  return dir;
+}
+
+// files are given the mtime they would have had when their last entry was written
+function touch(file, ms) {
+  fs.utimesSync(file, ms / 1000, ms / 1000);
+}
+
+function localIso(ms) {
+  const d = new Date(ms);
+  const p = (n) => String(n).padStart(2, '0');
+  return `${d.getFullYear()}-${p(d.getMonth() + 1)}-${p(d.getDate())}T${p(d.getHours())}:${p(d.getMinutes())}:${p(d.getSeconds())}`;
+}
+
+function entry(ms, bankGeValue) {
+  return { timestamp: localIso(ms), bank_ge_value: bankGeValue, bank_coins: 100, inventory_coins: 10 };
+}
+
+function writeJson(dir, rsn, ms, bankGeValue) {
+  const file = path.join(dir, `${rsn}.json`);
+  fs.writeFileSync(file, JSON.stringify({ rsn, lastUpdated: localIso(ms), entries: [entry(ms - HOUR, 1), entry(ms, bankGeValue)] }));
+  touch(file, ms);
+}
+
+function writeLog(dir, rsn, ms, bankGeValue) {
+  const file = path.join(dir, `${rsn}.jsonl`);
+  fs.writeFileSync(file, [entry(ms - HOUR, 1), entry(ms, bankGeValue)].map(e => JSON.stringify(e) + '\n').join(''));
+  touch(file, ms);
+}
+
+function writeSeries(dir, rsn, ms, bankGeValue) {
+  const file = path.join(dir, `${rsn}.wts`);
+  const buf = Buffer.alloc(64 + 32);
+  buf.writeInt32LE(0x53545742, 0);
+  buf.writeInt32LE(1, 4);
+  buf.writeBigInt64LE(64n, 24);
+  buf.writeBigInt64LE(BigInt(ms), 64);
+  buf.writeBigInt64LE(BigInt(bankGeValue), 72);
+  buf.writeBigInt64LE(100n, 80);
+  buf.writeBigInt64LE(10n, 88);
+  fs.writeFileSync(file, buf);
+  touch(file, ms);
+}
+
+function writeManifest(dir, records, ms) {
+  const buf = Buffer.alloc(32 + records.length * 96);
+  buf.writeInt32LE(0x464D5742, 0);
+  buf.writeInt32LE(1, 4);
+  buf.writeInt32LE(96, 8);
+  buf.writeInt32LE(records.length, 12);
+  records.forEach(([rsn, tsMs, bankGeValue], i) => {
+    const off = 32 + i * 96;
+    buf.writeBigInt64LE(BigInt(tsMs), off + 8);
+    buf.writeBigInt64LE(BigInt(bankGeValue), off + 16);
+    buf.writeBigInt64LE(100n, off + 24);
+    buf.writeBigInt64LE(10n, off + 32);
+    buf.writeInt32LE(Buffer.byteLength(rsn), off + 48);
+    buf.write(rsn, off + 52);
+    buf.writeInt32LE(zlib.crc32(buf.subarray(off + 4, off + 96)) | 0, off);
+  });
+  const file = path.join(dir, '_manifest.bin');
+  fs.writeFileSync(file, buf);
+  touch(file, ms);
+}
+
+test('a series left behind by switching it off loses to a fresher json', (t) => {
+  const dir = tmpDir(t);
+  writeSeries(dir, 'Alice', T0, 5000);
+  writeJson(dir, 'Alice', T0 + 24 * HOUR, 7000);
+
+  const wealth = parserIn(dir).getBankWealth('Alice');
+  assert.strictEqual(wealth.bankGeValue, 7000);
+  assert.strictEqual(wealth.bankValue, 7010);
+});
+
+test('a log left behind by switching back to json loses to the json', (t) => {
+  const dir = tmpDir(t);
+  writeLog(dir, 'Alice', T0, 5000);
+  writeJson(dir, 'Alice', T0 + HOUR, 6000);
+
+  assert.strictEqual(parserIn(dir).getBankWealth('Alice').bankGeValue, 6000);
+});
+
+test('a current series wins over an older json and log', (t) => {
+  const dir = tmpDir(t);
+  writeJson(dir, 'Alice', T0, 5000);
+  writeLog(dir, 'Alice', T0 + HOUR, 6000);
+  writeSeries(dir, 'Alice', T0 + 2 * HOUR, 8000);
+
+  assert.strictEqual(parserIn(dir).getBankWealth('Alice').bankGeValue, 8000);
+});
+
+test('an unreadable stale file does not hide a good one', (t) => {
+  const dir = tmpDir(t);
+  writeJson(dir, 'Alice', T0 + HOUR, 6000);
+  const log = path.join(dir, 'Alice.jsonl');
+  fs.writeFileSync(log, 'not json\n');
+  touch(log, T0);
+
+  assert.strictEqual(parserIn(dir).getBankWealth('Alice').bankGeValue, 6000);
+});
+
+test('accounts whose history moved on since the manifest are read from their files', (t) => {
+  const dir = tmpDir(t);
+  writeJson(dir, 'Alice', T0, 5000);
+  writeJson(dir, 'Bob', T0, 5000);
+  writeManifest(dir, [['Alice', T0, 5000], ['Bob', T0, 5000]], T0 + 1000);
+  writeJson(dir, 'Bob', T0 + HOUR, 9000);
+  writeLog(dir, 'Carol', T0 + HOUR, 3000);
+
+  const all = parserIn(dir).getAllBankWealth();
+  const byRsn = Object.fromEntries(all.map(w => [w.rsn, w.bankGeValue]));
+  assert.deepStrictEqual(byRsn, { Alice: 5000, Bob: 9000, Carol: 3000 });
+});
+
+function writeRing(dir, rsn, suffix, widthMs, starts) {
+  const cap = starts.length + 2;
+  const buf = Buffer.alloc(64 + cap * 80);
+  buf.writeInt32LE(0x55525742, 0);
+  buf.writeInt32LE(1, 4);
+  buf.writeInt32LE(80, 8);
+  buf.writeBigInt64LE(BigInt(widthMs), 16);
+  buf.writeBigInt64LE(BigInt(cap), 24);
+  buf.writeBigInt64LE(BigInt(starts.length), 32);
+  buf.writeBigInt64LE(BigInt(starts.length), 40);
+  starts.forEach((start, i) => {
+    const off = 64 + i * 80;
+    buf.writeBigInt64LE(BigInt(start), off);
+    buf.writeBigInt64LE(2n, off + 8);
+    for (const f of [16, 24, 32]) buf.writeBigInt64LE(BigInt(1000 + i), off + f);
+    buf.writeBigInt64LE(BigInt(2 * (1000 + i)), off + 40);
+  });
+  fs.writeFileSync(path.join(dir, `${rsn}.${suffix}.wr`), buf);
+}
+
+test('history is served from the finest rollup tier that fits the range', (t) => {
+  const dir = tmpDir(t);
+  const DAY = 24 * HOUR;
+  writeRing(dir, 'Alice', '1h', HOUR, Array.from({ length: 24 * 60 }, (_, i) => T0 + i * HOUR));
+  writeRing(dir, 'Alice', '1d', DAY, Array.from({ length: 60 }, (_, i) => T0 + i * DAY));
+  const parser = parserIn(dir);
+
+  const week = parser.getBankWealthHistory('Alice', T0 + DAY, T0 + 8 * DAY, 500);
+  assert.strictEqual(week.tier, '1h');
+  assert.strictEqual(week.points.length, 7 * 24 + 1);
+  assert.strictEqual(Date.parse(week.points[0].timestamp), T0 + DAY);
+  assert.strictEqual(week.points[0].bankAvg, 1024);
+
+  const quarter = parser.getBankWealthHistory('Alice', T0, T0 + 90 * DAY, 500);
+  assert.strictEqual(quarter.tier, '1d');
+  assert.strictEqual(quarter.points.length, 60);
+
+  assert.deepStrictEqual(parser.getBankWealthHistory('Alice', T0, T0 + HOUR, 500), { tier: 'raw', points: [] });
+});
@@ -0,0 +1,142 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.*;
+import net.runelite.api.Item;
+
+/**
+ * Last seen bank contents per RSN ({@code <rsn>.bank}), so the bank can be valued right
+ * after a restart and while the bank is closed.
+ *
+ * Little-endian layout:
+ * <pre>
+ *   0  int   magic 'BWBC'
+ *   4  int   format version (1)
+ *   8  long  saved, epoch millis
+ *  16  int   slot count
+ *  20  slots: int item id, int quantity
+ * </pre>
+ * The file is read once per RSN on the writer thread, after which {@code onLoaded} runs so
+ * the caller can revalue. Saves go through {@link SnapshotWriter#replace}, at most every
+ * {@link #SAVE_EVERY_MS} while the contents keep changing, plus once on shutdown.
+ *
+ * Client thread only, apart from the load itself.
+ */
+final class BankCache
+{
+    static final String EXT = ".bank";
+
+    static final int MAGIC = 0x43425742; // "BWBC" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 20;
+    static final long SAVE_EVERY_MS = 30_000L;
+
+    private final Path dir;
+    private final SnapshotWriter writer;
+    private final Runnable onLoaded;
+
+    private String rsn;
+    // shared with the loader; guarded by this
+    private Path file;
+    private Item[] items;
+    private boolean live;
+    private boolean dirty;
+    private long lastSaveMs;
+
+    BankCache(Path dir, SnapshotWriter writer, Runnable onLoaded)
+    {
+        this.dir = dir;
+        this.writer = writer;
+        this.onLoaded = onLoaded;
+    }
+
+    /** Last known contents for {@code rsn} (file-safe), or null while nothing is known yet. */
+    Item[] items(String rsn)
+    {
+        select(rsn);
+        synchronized (this) { return items; }
+    }
+
+    /** Records the live bank; {@code changed} marks it for the next save. */
+    void remember(String rsn, Item[] bankItems, boolean changed)
+    {
+        select(rsn);
+        synchronized (this)
+        {
+            items = bankItems;
+            live = true;
+        }
+        if (changed) dirty = true;
+    }
+
+    /** Saves pending contents once {@link #SAVE_EVERY_MS} has passed, or now if {@code force}. */
+    void saveIfDue(long nowMs, boolean force)
+    {
+        if (!dirty) return;
+        if (!force && nowMs - lastSaveMs < SAVE_EVERY_MS) return;
+
+        Path f;
+        Item[] snapshot;
+        synchronized (this)
+        {
+            f = file;
+            snapshot = items;
+        }
+        writer.replace(f, encode(snapshot, nowMs), false);
+        dirty = false;
+        lastSaveMs = nowMs;
+    }
+
+    private void select(String rsn)
+    {
+        if (rsn.equals(this.rsn)) return;
+
+        saveIfDue(System.currentTimeMillis(), true); // the previous account's pending contents
+        this.rsn = rsn;
+        dirty = false;
+        final Path f = dir.resolve(rsn + EXT);
+        synchronized (this)
+        {
+            file = f;
+            items = null;
+            live = false;
+        }
+
+        writer.runAlways("bankcache:load:" + f, () -> {
+            if (!Files.exists(f)) return;
+            Item[] loaded = decode(Files.readAllBytes(f));
+            if (loaded == null) return;
+            synchronized (this)
+            {
+                // live contents seen meanwhile win; a switch to another account drops this load
+                if (live || !f.equals(file)) return;
+                items = loaded;
+            }
+            onLoaded.run();
+        });
+    }
+
+    static byte[] encode(Item[] items, long nowMs)
+    {
+        ByteBuffer b = ByteBuffer.allocate(HEADER + 8 * items.length).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(FORMAT).putLong(nowMs).putInt(items.length);
+        for (Item it : items) b.putInt(it.getId()).putInt(it.getQuantity());
+        return b.array();
+    }
+
+    /** Null unless {@code bytes} is a complete cache file. */
+    static Item[] decode(byte[] bytes)
+    {
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER || b.getInt(0) != MAGIC || b.getInt(4) != FORMAT) return null;
+        int n = b.getInt(16);
+        if (n < 0 || bytes.length != HEADER + 8L * n) return null;
+
+        Item[] out = new Item[n];
+        b.position(HEADER);
+        for (int i = 0; i < n; i++) out[i] = new Item(b.getInt(), b.getInt());
+        return out;
+    }
+}
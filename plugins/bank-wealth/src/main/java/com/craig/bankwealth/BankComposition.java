@@ -0,0 +1,306 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import net.runelite.api.Item;
+
+/**
+ * Per-item bank history ({@code <rsn>.bcl}): which items were in which slot at every entry,
+ * without storing the whole bank each time.
+ *
+ * The file is a run of independently deflated segments. Each segment opens with a keyframe
+ * (every slot) followed by up to {@link #KEYFRAME_EVERY}-1 deltas holding only the slots that
+ * changed, so any point in time is one segment inflate plus a short replay away.
+ * <pre>
+ *  segment header (40 bytes, little-endian)
+ *   0  int   magic 'BCS1'
+ *   4  int   compressed body length
+ *   8  int   raw body length
+ *  12  int   record count
+ *  16  long  first timestamp, epoch millis
+ *  24  long  last timestamp
+ *  32  int   CRC-32 of the compressed body
+ *  36  int   reserved
+ *  body (deflated), records back to back, all integers varints:
+ *   keyframe: 0, dt, slots, then per slot zigzag(id - previous slot's id), quantity
+ *   delta:    1, dt, slots, changes, then per change slot gap, zigzag(id - old id), zigzag(qty - old qty)
+ * </pre>
+ * {@code dt} is the time since the previous record (the segment's first timestamp for the
+ * first). A slot gap is the distance from the previous changed slot plus one; slots past the
+ * old size count as id -1, quantity 0, and a smaller slot count drops the tail.
+ *
+ * The open segment is rewritten in place as it grows and a torn tail is cut off on open, so a
+ * crash loses at most the open segment. Each session starts a new segment.
+ *
+ * The client thread only calls {@link #enqueue}; the file is touched by the writer thread.
+ */
+final class BankComposition implements AutoCloseable
+{
+    static final String EXT = ".bcl";
+
+    static final int MAGIC = 0x31534342; // "BCS1" little-endian
+    static final int HEADER = 40;
+    static final int KEYFRAME_EVERY = 64;
+
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+
+    private final Path file;
+
+    // queued snapshots; guarded by this
+    private long[] pendingTs = new long[4];
+    private int[] pendingLen = new int[4];
+    private int[] pendingSlots = new int[2 * 1024]; // id, qty pairs
+    private int pendingCount;
+    private int pendingSlotsUsed;
+
+    // writer thread only
+    private FileChannel ch;
+    private long segmentStart;
+    private byte[] raw = new byte[8 * 1024];
+    private int rawLen;
+    private int records;
+    private long firstTs, lastTs;
+    private int[] ids = new int[0];
+    private int[] qtys = new int[0];
+    private int size;
+    private boolean dirty;          // raw has records the file does not
+    private byte[] deflated = new byte[8 * 1024];
+    private int deflatedLen;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+
+    BankComposition(Path file)
+    {
+        this.file = file;
+    }
+
+    Path file()
+    {
+        return file;
+    }
+
+    /** Names this file's writes in write events. */
+    @Override
+    public String toString()
+    {
+        return file.toString();
+    }
+
+    /** Queues the bank's slots as they are now; any thread. */
+    synchronized void enqueue(long timestampMs, Item[] items)
+    {
+        int n = items.length;
+        if (pendingCount == pendingTs.length)
+        {
+            pendingTs = Arrays.copyOf(pendingTs, pendingCount * 2);
+            pendingLen = Arrays.copyOf(pendingLen, pendingCount * 2);
+        }
+        if (pendingSlotsUsed + 2 * n > pendingSlots.length)
+        {
+            pendingSlots = Arrays.copyOf(pendingSlots, Math.max(pendingSlots.length * 2, pendingSlotsUsed + 2 * n));
+        }
+
+        pendingTs[pendingCount] = timestampMs;
+        pendingLen[pendingCount] = n;
+        pendingCount++;
+        for (Item it : items)
+        {
+            pendingSlots[pendingSlotsUsed++] = it.getId();
+            pendingSlots[pendingSlotsUsed++] = it.getQuantity();
+        }
+    }
+
+    /** Encodes all queued snapshots and rewrites the open segment. Writer thread only. */
+    void flush(boolean fsync) throws IOException
+    {
+        long[] ts;
+        int[] lens, slots;
+        int n;
+        synchronized (this)
+        {
+            if (pendingCount == 0) return;
+            n = pendingCount;
+            ts = Arrays.copyOf(pendingTs, n);
+            lens = Arrays.copyOf(pendingLen, n);
+            slots = Arrays.copyOf(pendingSlots, pendingSlotsUsed);
+            pendingCount = 0;
+            pendingSlotsUsed = 0;
+        }
+
+        if (ch == null) open();
+        int o = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (records == KEYFRAME_EVERY)
+            {
+                // segment is complete; the next one starts after it with a keyframe
+                if (dirty) writeSegment(fsync);
+                segmentStart += HEADER + deflatedLen;
+                rawLen = 0;
+                records = 0;
+            }
+            encode(ts[i], slots, o, lens[i]);
+            o += 2 * lens[i];
+        }
+        writeSegment(fsync);
+    }
+
+    @Override
+    public void close()
+    {
+        deflater.end();
+        if (ch != null)
+        {
+            try { ch.close(); } catch (IOException ignored) {}
+            ch = null;
+        }
+    }
+
+    private void encode(long ts, int[] slots, int off, int n)
+    {
+        if (records == 0)
+        {
+            firstTs = ts;
+            lastTs = ts;
+        }
+        if (ts < lastTs) ts = lastTs; // keep the replay monotonic if the clock steps back
+        long dt = ts - lastTs;
+        lastTs = ts;
+
+        if (records == 0)
+        {
+            putByte(KEYFRAME);
+            putVarLong(dt);
+            putVarLong(n);
+            int prevId = 0;
+            for (int i = 0; i < n; i++)
+            {
+                int id = slots[off + 2 * i];
+                putVarLong(zigzag((long) id - prevId));
+                putVarLong(slots[off + 2 * i + 1] & 0xFFFFFFFFL);
+                prevId = id;
+            }
+        }
+        else
+        {
+            int changes = 0;
+            for (int i = 0; i < n; i++)
+            {
+                if (slots[off + 2 * i] != idAt(i) || slots[off + 2 * i + 1] != qtyAt(i)) changes++;
+            }
+
+            putByte(DELTA);
+            putVarLong(dt);
+            putVarLong(n);
+            putVarLong(changes);
+            int prev = -1;
+            for (int i = 0; i < n; i++)
+            {
+                int id = slots[off + 2 * i], qty = slots[off + 2 * i + 1];
+                int oldId = idAt(i), oldQty = qtyAt(i);
+                if (id == oldId && qty == oldQty) continue;
+                putVarLong(i - prev);
+                putVarLong(zigzag((long) id - oldId));
+                putVarLong(zigzag((long) qty - oldQty));
+                prev = i;
+            }
+        }
+
+        // the new state becomes the base for the next delta
+        if (ids.length < n)
+        {
+            ids = Arrays.copyOf(ids, Math.max(n, ids.length * 2));
+            qtys = Arrays.copyOf(qtys, ids.length);
+        }
+        for (int i = 0; i < n; i++)
+        {
+            ids[i] = slots[off + 2 * i];
+            qtys[i] = slots[off + 2 * i + 1];
+        }
+        size = n;
+        records++;
+        dirty = true;
+    }
+
+    private int idAt(int i)  { return i < size ? ids[i] : -1; }
+    private int qtyAt(int i) { return i < size ? qtys[i] : 0; }
+
+    private void writeSegment(boolean fsync) throws IOException
+    {
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLen);
+        deflater.finish();
+        deflatedLen = 0;
+        while (!deflater.finished())
+        {
+            if (deflatedLen == deflated.length) deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            deflatedLen += deflater.deflate(deflated, deflatedLen, deflated.length - deflatedLen);
+        }
+        crc.reset();
+        crc.update(deflated, 0, deflatedLen);
+
+        header.clear();
+        header.putInt(0, MAGIC).putInt(4, deflatedLen).putInt(8, rawLen).putInt(12, records)
+              .putLong(16, firstTs).putLong(24, lastTs).putInt(32, (int) crc.getValue()).putInt(36, 0);
+
+        long pos = segmentStart;
+        while (header.hasRemaining()) pos += ch.write(header, pos);
+        ByteBuffer body = ByteBuffer.wrap(deflated, 0, deflatedLen);
+        while (body.hasRemaining()) pos += ch.write(body, pos);
+        if (ch.size() > pos) ch.truncate(pos);
+        if (fsync) ch.force(false);
+        dirty = false;
+        SnapshotWriter.recordBytes(HEADER + deflatedLen);
+    }
+
+    /** Finds the end of the last intact segment, cuts anything after it and starts a new segment there. */
+    private void open() throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long pos = 0, size = ch.size();
+        while (true)
+        {
+            long next = BankCompositionReader.nextSegment(ch, pos, size, crc);
+            if (next < 0) break;
+            pos = next;
+        }
+        if (pos < size) ch.truncate(pos);
+
+        segmentStart = pos;
+        rawLen = 0;
+        records = 0;
+        this.size = 0;
+    }
+
+    private void putByte(int b)
+    {
+        if (rawLen == raw.length) raw = Arrays.copyOf(raw, raw.length * 2);
+        raw[rawLen++] = (byte) b;
+    }
+
+    private void putVarLong(long v)
+    {
+        while ((v & ~0x7FL) != 0)
+        {
+            putByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        putByte((int) v);
+    }
+
+    static long zigzag(long v)
+    {
+        return (v << 1) ^ (v >> 63);
+    }
+}
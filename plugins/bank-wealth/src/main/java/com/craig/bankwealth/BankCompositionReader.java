@@ -0,0 +1,278 @@
+package com.craig.bankwealth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Rebuilds the bank at any moment from a {@code <rsn>.bcl} file written by {@link BankComposition}.
+ *
+ * Opening reads only the segment headers. {@link #at} picks the last segment starting at or
+ * before the requested time, inflates it and replays its keyframe and deltas up to that time.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.bankwealth.BankCompositionReader &lt;file.bcl&gt; [epochMs [toEpochMs]]
+ * </pre>
+ * With one time the bank at that moment is printed, with two the per-item change between them.
+ */
+public final class BankCompositionReader implements AutoCloseable
+{
+    /** Bank slots as of {@link #timestamp}; ids and quantities are parallel arrays. */
+    public static final class Snapshot
+    {
+        public final long timestamp;
+        public final int[] ids;
+        public final int[] qtys;
+
+        Snapshot(long timestamp, int[] ids, int[] qtys)
+        {
+            this.timestamp = timestamp;
+            this.ids = ids;
+            this.qtys = qtys;
+        }
+
+        /** Total quantity per item id, ignoring empty slots. */
+        public Map<Integer, Long> totals()
+        {
+            Map<Integer, Long> out = new TreeMap<>();
+            for (int i = 0; i < ids.length; i++)
+            {
+                if (ids[i] > 0 && qtys[i] > 0) out.merge(ids[i], (long) qtys[i], Long::sum);
+            }
+            return out;
+        }
+    }
+
+    private final FileChannel ch;
+    private final List<long[]> segments = new ArrayList<>(); // offset, first ts, last ts, records
+
+    public BankCompositionReader(Path file) throws IOException
+    {
+        ch = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer h = ByteBuffer.allocate(BankComposition.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = 0, size = ch.size();
+        CRC32 crc = new CRC32();
+        while (true)
+        {
+            long next = nextSegment(ch, pos, size, crc);
+            if (next < 0) break;
+            readFully(h, pos);
+            segments.add(new long[] { pos, h.getLong(16), h.getLong(24), h.getInt(12) });
+            pos = next;
+        }
+    }
+
+    public int segmentCount()
+    {
+        return segments.size();
+    }
+
+    public long recordCount()
+    {
+        long n = 0;
+        for (long[] s : segments) n += s[3];
+        return n;
+    }
+
+    /** Latest snapshot at or before {@code timestampMs}, or null if the log starts later. */
+    public Snapshot at(long timestampMs) throws IOException
+    {
+        int lo = 0, hi = segments.size() - 1, found = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (segments.get(mid)[1] <= timestampMs)
+            {
+                found = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return found < 0 ? null : replay(segments.get(found)[0], timestampMs);
+    }
+
+    public Snapshot latest() throws IOException
+    {
+        return segments.isEmpty() ? null : replay(segments.get(segments.size() - 1)[0], Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        ch.close();
+    }
+
+    private Snapshot replay(long offset, long until) throws IOException
+    {
+        ByteBuffer h = ByteBuffer.allocate(BankComposition.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(h, offset);
+        ByteBuffer body = ByteBuffer.allocate(h.getInt(4));
+        readFully(body, offset + BankComposition.HEADER);
+
+        byte[] raw = new byte[h.getInt(8)];
+        Inflater inf = new Inflater();
+        try
+        {
+            inf.setInput(body.array());
+            int n = 0;
+            while (n < raw.length && !inf.finished()) n += inf.inflate(raw, n, raw.length - n);
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IOException("corrupt segment at " + offset, ex);
+        }
+        finally
+        {
+            inf.end();
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        int records = h.getInt(12);
+        long ts = h.getLong(16);
+        int[] ids = new int[0], qtys = new int[0];
+        int size = 0;
+        long shownTs = ts;
+
+        for (int r = 0; r < records; r++)
+        {
+            int type = in.get();
+            long recTs = ts + readVarLong(in);
+            if (recTs > until && r > 0) break;
+            ts = recTs;
+
+            int n = (int) readVarLong(in);
+            if (ids.length < n)
+            {
+                ids = Arrays.copyOf(ids, n);
+                qtys = Arrays.copyOf(qtys, n);
+            }
+            if (type == BankComposition.KEYFRAME)
+            {
+                int prevId = 0;
+                for (int i = 0; i < n; i++)
+                {
+                    ids[i] = (int) (prevId + unzigzag(readVarLong(in)));
+                    qtys[i] = (int) readVarLong(in);
+                    prevId = ids[i];
+                }
+            }
+            else
+            {
+                for (int i = size; i < n; i++)
+                {
+                    ids[i] = -1;
+                    qtys[i] = 0;
+                }
+                int changes = (int) readVarLong(in);
+                int slot = -1;
+                for (int c = 0; c < changes; c++)
+                {
+                    slot += (int) readVarLong(in);
+                    ids[slot] = (int) (ids[slot] + unzigzag(readVarLong(in)));
+                    qtys[slot] = (int) (qtys[slot] + unzigzag(readVarLong(in)));
+                }
+            }
+            size = n;
+            shownTs = ts;
+        }
+        return new Snapshot(shownTs, Arrays.copyOf(ids, size), Arrays.copyOf(qtys, size));
+    }
+
+    /**
+     * Validates the segment at {@code pos} and returns where the next one starts, or -1 if
+     * there is no intact segment there (end of file or a torn tail).
+     */
+    static long nextSegment(FileChannel ch, long pos, long size, CRC32 crc) throws IOException
+    {
+        if (pos + BankComposition.HEADER > size) return -1;
+        ByteBuffer h = ByteBuffer.allocate(BankComposition.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (h.hasRemaining() && ch.read(h, pos + h.position()) > 0) { }
+        if (h.hasRemaining() || h.getInt(0) != BankComposition.MAGIC) return -1;
+
+        int len = h.getInt(4);
+        long end = pos + BankComposition.HEADER + len;
+        if (len < 0 || end > size) return -1;
+
+        ByteBuffer body = ByteBuffer.allocate(len);
+        while (body.hasRemaining() && ch.read(body, pos + BankComposition.HEADER + body.position()) > 0) { }
+        crc.reset();
+        crc.update(body.array(), 0, len);
+        return (int) crc.getValue() == h.getInt(32) ? end : -1;
+    }
+
+    private void readFully(ByteBuffer b, long pos) throws IOException
+    {
+        b.clear();
+        while (b.hasRemaining() && ch.read(b, pos + b.position()) > 0) { }
+        if (b.hasRemaining()) throw new IOException("truncated segment at " + pos);
+    }
+
+    private static long readVarLong(ByteBuffer in)
+    {
+        long v = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    private static long unzigzag(long v)
+    {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1 || args.length > 3)
+        {
+            System.err.println("usage: BankCompositionReader <file.bcl> [epochMs [toEpochMs]]");
+            System.exit(2);
+        }
+
+        try (BankCompositionReader r = new BankCompositionReader(Paths.get(args[0])))
+        {
+            System.out.println("segments: " + r.segmentCount() + ", records: " + r.recordCount());
+            if (args.length == 3)
+            {
+                Snapshot a = r.at(Long.parseLong(args[1]));
+                Snapshot b = r.at(Long.parseLong(args[2]));
+                if (a == null || b == null)
+                {
+                    System.out.println("no data at the requested time");
+                    return;
+                }
+                Map<Integer, Long> before = a.totals();
+                Map<Integer, Long> delta = new TreeMap<>();
+                b.totals().forEach((id, q) -> delta.put(id, q - before.getOrDefault(id, 0L)));
+                before.forEach((id, q) -> delta.putIfAbsent(id, -q));
+                System.out.println("item,change  (" + a.timestamp + " -> " + b.timestamp + ")");
+                delta.forEach((id, q) -> { if (q != 0) System.out.println(id + "," + q); });
+                return;
+            }
+
+            Snapshot s = args.length == 2 ? r.at(Long.parseLong(args[1])) : r.latest();
+            if (s == null)
+            {
+                System.out.println("no data at the requested time");
+                return;
+            }
+            System.out.println("item,quantity  (" + s.timestamp + ")");
+            s.totals().forEach((id, q) -> System.out.println(id + "," + q));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.craig.bankwealth;
+
+import java.util.Arrays;
+import net.runelite.api.Item;
+import net.runelite.api.ItemID;
+
+/**
+ * Keeps the last bank snapshot in primitive arrays and updates the totals from the
+ * slots that changed, so a single withdraw costs one price lookup instead of one per slot.
+ *
+ * Falls back to a full revalue when the snapshot was invalidated, when the price
+ * version moved, or when too many slots changed for a diff to be worth it.
+ */
+final class BankValuation
+{
+    interface PriceLookup
+    {
+        int price(int itemId);
+
+        /** Changes whenever previously returned prices may no longer hold. */
+        int version();
+    }
+
+    // full revalue if more than this share of slots changed (but always allow a few)
+    private static final int MIN_DIFF_SLOTS = 32;
+    private static final int MAX_DIFF_DIVISOR = 4;
+
+    private int[] ids    = new int[0];
+    private int[] qtys   = new int[0];
+    private int[] prices = new int[0];
+    private int size;
+    private boolean valid;
+    private int priceVersion;
+
+    private long value;
+    private long coins;
+
+    // last update, for diagnostics
+    private int lastChangedSlots;
+    private boolean lastFull;
+
+    long value()           { return value; }
+    long coins()           { return coins; }
+    int lastChangedSlots() { return lastChangedSlots; }
+    boolean lastWasFull()  { return lastFull; }
+
+    /** Forces the next {@link #update} to revalue every slot. */
+    void invalidate()
+    {
+        valid = false;
+    }
+
+    /** Brings the totals in line with {@code items}. */
+    void update(Item[] items, PriceLookup lookup)
+    {
+        final int n = items.length;
+
+        if (valid && priceVersion == lookup.version())
+        {
+            int changed = 0;
+            final int common = Math.min(n, size);
+            for (int i = 0; i < common; i++)
+            {
+                Item it = items[i];
+                if (it.getId() != ids[i] || it.getQuantity() != qtys[i]) changed++;
+            }
+            changed += Math.abs(n - size);
+
+            if (changed <= Math.max(MIN_DIFF_SLOTS, size / MAX_DIFF_DIVISOR))
+            {
+                applyDiff(items, lookup);
+                lastChangedSlots = changed;
+                lastFull = false;
+                return;
+            }
+        }
+
+        full(items, lookup);
+    }
+
+    private void full(Item[] items, PriceLookup lookup)
+    {
+        final int n = items.length;
+        ensureCapacity(n);
+
+        long v = 0, c = 0;
+        for (int i = 0; i < n; i++)
+        {
+            Item it = items[i];
+            int id = it.getId();
+            int qty = it.getQuantity();
+            int p = counts(id, qty) ? lookup.price(id) : 0;
+
+            ids[i] = id;
+            qtys[i] = qty;
+            prices[i] = p;
+
+            if (counts(id, qty))
+            {
+                v += (long) p * qty;
+                if (id == ItemID.COINS_995) c += qty;
+            }
+        }
+
+        size = n;
+        value = v;
+        coins = c;
+        valid = true;
+        priceVersion = lookup.version();
+        lastChangedSlots = n;
+        lastFull = true;
+    }
+
+    private void applyDiff(Item[] items, PriceLookup lookup)
+    {
+        final int n = items.length;
+        ensureCapacity(n);
+
+        long v = value, c = coins;
+        final int upto = Math.max(n, size);
+        for (int i = 0; i < upto; i++)
+        {
+            int id  = i < n ? items[i].getId() : -1;
+            int qty = i < n ? items[i].getQuantity() : 0;
+            int oldId  = i < size ? ids[i] : -1;
+            int oldQty = i < size ? qtys[i] : 0;
+            if (id == oldId && qty == oldQty) continue;
+
+            // take out the old slot at the price it was valued at
+            if (counts(oldId, oldQty))
+            {
+                v -= (long) prices[i] * oldQty;
+                if (oldId == ItemID.COINS_995) c -= oldQty;
+            }
+
+            // same item with a new quantity keeps its price; a new item is looked up
+            int p = 0;
+            if (counts(id, qty))
+            {
+                p = id == oldId && counts(oldId, oldQty) ? prices[i] : lookup.price(id);
+                v += (long) p * qty;
+                if (id == ItemID.COINS_995) c += qty;
+            }
+
+            ids[i] = id;
+            qtys[i] = qty;
+            prices[i] = p;
+        }
+
+        size = n;
+        value = v;
+        coins = c;
+    }
+
+    private void ensureCapacity(int n)
+    {
+        if (ids.length >= n) return;
+        int cap = Math.max(n, ids.length + (ids.length >> 1));
+        ids    = Arrays.copyOf(ids, cap);
+        qtys   = Arrays.copyOf(qtys, cap);
+        prices = Arrays.copyOf(prices, cap);
+    }
+
+    private static boolean counts(int id, int qty)
+    {
+        return id > 0 && qty > 0;
+    }
+}
@@ -1,5 +1,7 @@
 package com.craig.bankwealth;
 
+import com.craig.shared.Metrics;
+import com.craig.shared.PushChannel;
 import net.runelite.client.config.*;
 
 @ConfigGroup("bankwealth")
@@ -19,10 +21,182 @@ public interface BankWealthConfig extends Config
     )
     default boolean onlyWhenBankOpen() { return true; }
 
+    @ConfigItem(
+        keyName = "cacheBankContents",
+        name = "Remember bank contents",
+        description = "Keep the last seen bank in <rsn>.bank and value it at current prices after a restart or while the bank is closed"
+    )
+    default boolean cacheBankContents() { return true; }
+
     @ConfigItem(
         keyName = "dedupe",
         name = "Skip identical entries",
         description = "Do not write when values have not changed"
     )
     default boolean dedupe() { return true; }
+
+    enum Compression
+    {
+        /** Keep every entry that passes the interval and dedupe checks. */
+        OFF,
+        /** Keep an entry once a value moves further than the error bound from the last kept one. */
+        DEADBAND,
+        /** Keep only the entries needed to redraw the series as straight lines within the error bound. */
+        SWINGING_DOOR
+    }
+
+    @ConfigItem(
+        keyName = "compression",
+        name = "Compression",
+        description = "Drop entries that can be rebuilt from their neighbours within the error below; applies to history, series and manifest"
+    )
+    default Compression compression() { return Compression.OFF; }
+
+    @ConfigItem(
+        keyName = "compressionGp",
+        name = "Compression error (gp)",
+        description = "Largest error allowed in any value, in gp"
+    )
+    default int compressionGp() { return 10_000; }
+
+    @ConfigItem(
+        keyName = "compressionPercent",
+        name = "Compression error (%)",
+        description = "Largest error allowed as a percentage of the value; the larger of the two bounds applies"
+    )
+    default double compressionPercent() { return 0.1; }
+
+    @ConfigItem(
+        keyName = "compressionHeartbeatMinutes",
+        name = "Heartbeat (min)",
+        description = "With compression on, still write an entry after this many minutes without one"
+    )
+    default int compressionHeartbeatMinutes() { return 15; }
+
+    enum StorageMode
+    {
+        /** Rewrite the whole {@code <rsn>.json} document on every entry. */
+        JSON,
+        /** Append one line per entry to {@code <rsn>.jsonl}; legacy entries are migrated once. */
+        APPEND_LOG
+    }
+
+    @ConfigItem(
+        keyName = "storageMode",
+        name = "Storage mode",
+        description = "JSON rewrites <rsn>.json on every entry; APPEND_LOG appends one line to <rsn>.jsonl"
+    )
+    default StorageMode storageMode() { return StorageMode.JSON; }
+
+    @ConfigItem(
+        keyName = "fsyncWrites",
+        name = "Fsync writes",
+        description = "Force each write batch to disk before moving on (safer, slower on shared disks)"
+    )
+    default boolean fsyncWrites() { return false; }
+
+    @ConfigItem(
+        keyName = "writeSeries",
+        name = "Write binary time series",
+        description = "Also append each entry to a fixed-record <rsn>.wts file whose latest value can be read without parsing"
+    )
+    default boolean writeSeries() { return false; }
+
+    @ConfigItem(
+        keyName = "writeComposition",
+        name = "Write item composition",
+        description = "Also log which items are in the bank to a compact <rsn>.bcl file (keyframes plus changed slots)"
+    )
+    default boolean writeComposition() { return false; }
+
+    @ConfigItem(
+        keyName = "writeManifest",
+        name = "Write manifest",
+        description = "Keep each account's latest entry in _manifest.bin, so all accounts can be listed without reading every history file"
+    )
+    default boolean writeManifest() { return true; }
+
+    @ConfigItem(
+        keyName = "writeRollups",
+        name = "Write rollups",
+        description = "Keep raw, 1-minute, 1-hour and 1-day min/max/last/avg series with bounded retention"
+    )
+    default boolean writeRollups() { return false; }
+
+    @ConfigItem(
+        keyName = "rollupRawDays",
+        name = "Raw retention (days)",
+        description = "Days of raw samples kept in the rollup store (sized for one sample per 10s)"
+    )
+    default int rollupRawDays() { return 2; }
+
+    @ConfigItem(
+        keyName = "rollupMinuteDays",
+        name = "1-minute retention (days)",
+        description = "Days of 1-minute buckets kept"
+    )
+    default int rollupMinuteDays() { return 14; }
+
+    @ConfigItem(
+        keyName = "rollupHourDays",
+        name = "1-hour retention (days)",
+        description = "Days of 1-hour buckets kept"
+    )
+    default int rollupHourDays() { return 365; }
+
+    @ConfigItem(
+        keyName = "rollupDayDays",
+        name = "1-day retention (days)",
+        description = "Days of 1-day buckets kept"
+    )
+    default int rollupDayDays() { return 3650; }
+
+    @ConfigItem(
+        keyName = "metricsFormat",
+        name = "Metrics export",
+        description = "Write timing/size metrics to bank-wealth/metrics/<rsn>.prom (Prometheus) or .json"
+    )
+    default Metrics.Format metricsFormat() { return Metrics.Format.OFF; }
+
+    @ConfigItem(
+        keyName = "metricsIntervalSeconds",
+        name = "Metrics interval (s)",
+        description = "How often the metrics file is rewritten"
+    )
+    default int metricsIntervalSeconds() { return 30; }
+
+    @ConfigItem(
+        keyName = "pushEnabled",
+        name = "Push to agent",
+        description = "Also send each valuation to the local agent over loopback, so it does not have to poll files"
+    )
+    default boolean pushEnabled() { return false; }
+
+    @ConfigItem(
+        keyName = "pushPort",
+        name = "Agent push port",
+        description = "Loopback port the agent listens on (PUSH_PORT on the agent side)"
+    )
+    default int pushPort() { return PushChannel.DEFAULT_PORT; }
+
+    @ConfigItem(
+        keyName = "writeBoard",
+        name = "Write host board",
+        description = "Also keep this account's latest values in ~/.runelite/wealth-board.bin, shared by every client on the host"
+    )
+    default boolean writeBoard() { return false; }
+
+    @ConfigItem(
+        keyName = "recordTrace",
+        name = "Record event trace",
+        description = "Record client events to ~/.runelite/traces for offline replay with the benchmarks' TraceReplay"
+    )
+    default boolean recordTrace() { return false; }
+
+    @ConfigItem(
+        keyName = "traceMaxMb",
+        name = "Trace size limit (MB)",
+        description = "Recording stops once the trace file reaches this size"
+    )
+    default int traceMaxMb() { return 256; }
 }
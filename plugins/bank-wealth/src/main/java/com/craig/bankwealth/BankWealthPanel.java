@@ -1,44 +1,295 @@
 package com.craig.bankwealth;
 
+import java.awt.AlphaComposite;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.text.NumberFormat;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import net.runelite.client.ui.PluginPanel;
 
-import javax.swing.*;
-import java.awt.*;
-
+/**
+ * Side panel: latest values, gp/hour over the last 5, 15 and 60 minutes, and a sparkline of
+ * recent total wealth.
+ *
+ * {@link #post} may be called from any thread as often as it likes. It only stores the
+ * values and schedules at most one refresh; refreshes run on the EDT no more than once
+ * per {@link #MIN_REFRESH_MS}, touch only the labels whose value changed and add a
+ * sparkline sample only when the total moved.
+ */
 final class BankWealthPanel extends PluginPanel
 {
-    private final JLabel bankValue = new JLabel("Bank GE Value: —");
-    private final JLabel bankCoins = new JLabel("Bank Coins: —");
-    private final JLabel invCoins  = new JLabel("Inventory Coins: —");
+    static final long MIN_REFRESH_MS = 250;
+
+    private final JLabel bankVal = new JLabel("Bank GE: 0 gp");
+    private final JLabel bankGp  = new JLabel("Bank coins: 0");
+    private final JLabel invGp   = new JLabel("Inventory coins: 0");
+    private final JLabel[] rateLabels = new JLabel[WealthRate.WINDOWS_MS.length];
+    private final Sparkline spark = new Sparkline(120);
+
+    // handed over from the posting thread; a post that changes nothing schedules nothing
+    private final Object lock = new Object();
+    private long pendingBank = Long.MIN_VALUE, pendingBankCoins = Long.MIN_VALUE, pendingInvCoins = Long.MIN_VALUE;
+    private final long[] pendingRates = new long[WealthRate.WINDOWS_MS.length];
+    private boolean scheduled;
+    private final Runnable refreshTask = this::refresh;
+
+    // EDT only
+    private final NumberFormat nf = NumberFormat.getInstance();
+    private final Timer deferred = new Timer(0, e -> refresh());
+    private long shownBank = Long.MIN_VALUE, shownBankCoins = Long.MIN_VALUE, shownInvCoins = Long.MIN_VALUE;
+    private final long[] rates = new long[WealthRate.WINDOWS_MS.length];
+    private final long[] shownRates = new long[WealthRate.WINDOWS_MS.length];
+    private long lastRefreshMs;
 
     BankWealthPanel()
     {
-        setLayout(new GridLayout(0, 1, 4, 4));
-        add(title("Bank Wealth"));
-        add(bankValue);
-        add(bankCoins);
-        add(invCoins);
+        setLayout(new BorderLayout());
+        JPanel p = new JPanel(new GridLayout(0, 1, 0, 4));
+        p.add(bankVal);
+        p.add(bankGp);
+        p.add(invGp);
+        for (int i = 0; i < rateLabels.length; i++)
+        {
+            rateLabels[i] = new JLabel(rateText(i, 0));
+            p.add(rateLabels[i]);
+        }
+        add(p, BorderLayout.NORTH);
+        add(spark, BorderLayout.CENTER);
+        deferred.setRepeats(false);
     }
 
-    void update(long bankValueGp, long bankCoinsGp, long invCoinsGp)
+    /** Any thread; the latest values win. */
+    void post(long bankValue, long bankCoins, long invCoins)
     {
-        bankValue.setText("Bank GE Value: " + fmt(bankValueGp) + " gp");
-        bankCoins.setText("Bank Coins: " + fmt(bankCoinsGp));
-        invCoins.setText("Inventory Coins: " + fmt(invCoinsGp));
+        synchronized (lock)
+        {
+            if (bankValue == pendingBank && bankCoins == pendingBankCoins && invCoins == pendingInvCoins) return;
+            pendingBank = bankValue;
+            pendingBankCoins = bankCoins;
+            pendingInvCoins = invCoins;
+            if (scheduled) return;
+            scheduled = true;
+        }
+        SwingUtilities.invokeLater(refreshTask);
+    }
+
+    /** Any thread; gp/hour per {@link WealthRate#WINDOWS_MS} window, the latest win. */
+    void postRates(long r5, long r15, long r60)
+    {
+        synchronized (lock)
+        {
+            if (r5 == pendingRates[0] && r15 == pendingRates[1] && r60 == pendingRates[2]) return;
+            pendingRates[0] = r5;
+            pendingRates[1] = r15;
+            pendingRates[2] = r60;
+            if (scheduled) return;
+            scheduled = true;
+        }
+        SwingUtilities.invokeLater(refreshTask);
+    }
+
+    /** Stops a deferred refresh; call when the panel is removed. */
+    void stop()
+    {
+        SwingUtilities.invokeLater(deferred::stop);
+    }
+
+    private void refresh()
+    {
+        long now = System.currentTimeMillis();
+        long wait = lastRefreshMs + MIN_REFRESH_MS - now;
+        if (wait > 0)
+        {
+            deferred.setInitialDelay((int) wait);
+            deferred.restart();
+            return;
+        }
+        lastRefreshMs = now;
+
+        long bank, bankCoins, invCoins;
+        synchronized (lock)
+        {
+            scheduled = false;
+            bank = pendingBank;
+            bankCoins = pendingBankCoins;
+            invCoins = pendingInvCoins;
+            System.arraycopy(pendingRates, 0, rates, 0, rates.length);
+        }
+
+        boolean totalMoved = bank != shownBank || invCoins != shownInvCoins;
+        if (bank != shownBank)
+        {
+            bankVal.setText("Bank GE: " + nf.format(bank) + " gp");
+            shownBank = bank;
+        }
+        if (bankCoins != shownBankCoins)
+        {
+            bankGp.setText("Bank coins: " + nf.format(bankCoins));
+            shownBankCoins = bankCoins;
+        }
+        if (invCoins != shownInvCoins)
+        {
+            invGp.setText("Inventory coins: " + nf.format(invCoins));
+            shownInvCoins = invCoins;
+        }
+        for (int i = 0; i < rates.length; i++)
+        {
+            if (rates[i] == shownRates[i]) continue;
+            rateLabels[i].setText(rateText(i, rates[i]));
+            shownRates[i] = rates[i];
+        }
+        // same total the agent reports: bank GE value plus coins carried
+        if (totalMoved) spark.add(bank + invCoins);
     }
 
-    private static JLabel title(String s)
+    private String rateText(int window, long perHour)
     {
-        final JLabel l = new JLabel(s);
-        l.setFont(l.getFont().deriveFont(Font.BOLD, 14f));
-        return l;
+        return "GP/hr (" + WealthRate.WINDOWS_MS[window] / 60_000 + "m): " + (perHour > 0 ? "+" : "") + nf.format(perHour);
     }
 
-    private static String fmt(long n)
+    /**
+     * Line of the last {@code capacity} samples, one fixed step apart, newest on the right.
+     *
+     * Samples live in a primitive ring. The line is kept in an image: a sample inside the
+     * current min/max adds one segment (scrolling the image one step once the ring is full);
+     * only a change of scale or size redraws it all. EDT only.
+     */
+    private static final class Sparkline extends JComponent
     {
-        if (n >= 1_000_000_000L) return String.format("%.2fB", n / 1_000_000_000.0);
-        if (n >= 1_000_000L)     return String.format("%.2fM", n / 1_000_000.0);
-        if (n >= 1_000L)         return String.format("%.1fk", n / 1_000.0);
-        return Long.toString(n);
+        private static final Color LINE = new Color(255, 200, 0);
+
+        private final long[] ring;
+        private int head;   // next write
+        private int size;
+        private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+        private BufferedImage img;
+        private boolean stale = true;
+
+        Sparkline(int capacity)
+        {
+            ring = new long[capacity];
+            setPreferredSize(new Dimension(0, 60));
+            setToolTipText("Total wealth, last " + capacity + " changes");
+        }
+
+        void add(long v)
+        {
+            long evicted = size == ring.length ? ring[head] : 0;
+            boolean full = size == ring.length;
+
+            ring[head] = v;
+            head = (head + 1) % ring.length;
+            if (!full) size++;
+
+            boolean rescale = v < min || v > max;
+            if (full && (evicted == min || evicted == max)) rescale = true;
+            if (rescale)
+            {
+                rescan();
+                stale = true;
+            }
+            else if (!stale && img != null)
+            {
+                appendSegment(full);
+            }
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g)
+        {
+            int w = getWidth(), h = getHeight();
+            if (w < 2 || h < 2) return;
+            if (img == null || img.getWidth() != w || img.getHeight() != h)
+            {
+                img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                stale = true;
+            }
+            if (stale) redraw();
+            g.drawImage(img, 0, 0, null);
+        }
+
+        private void rescan()
+        {
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++)
+            {
+                long v = ring[i];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+        }
+
+        /** Value {@code i} samples after the oldest. */
+        private long at(int i)
+        {
+            int oldest = size == ring.length ? head : 0;
+            return ring[(oldest + i) % ring.length];
+        }
+
+        private int step()
+        {
+            return Math.max(1, (img.getWidth() - 1) / (ring.length - 1));
+        }
+
+        private int y(long v)
+        {
+            int h = img.getHeight() - 1;
+            if (max == min) return h / 2;
+            return h - (int) ((double) (v - min) * h / (max - min));
+        }
+
+        private void redraw()
+        {
+            Graphics2D g = graphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, img.getWidth(), img.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            int step = step();
+            for (int i = 1; i < size; i++)
+            {
+                g.drawLine((i - 1) * step, y(at(i - 1)), i * step, y(at(i)));
+            }
+            g.dispose();
+            stale = false;
+        }
+
+        private void appendSegment(boolean scrolled)
+        {
+            if (size < 2) return;
+            int step = step();
+            int x = (size - 1) * step;
+            Graphics2D g = graphics();
+            if (scrolled)
+            {
+                g.setComposite(AlphaComposite.Src); // plain copy, transparent pixels included
+                g.copyArea(step, 0, x, img.getHeight(), -step, 0);
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(x - step + 1, 0, img.getWidth(), img.getHeight());
+                g.setComposite(AlphaComposite.SrcOver);
+            }
+            g.drawLine(x - step, y(at(size - 2)), x, y(at(size - 1)));
+            g.dispose();
+        }
+
+        private Graphics2D graphics()
+        {
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(LINE);
+            return g;
+        }
     }
-}
\ No newline at end of file
+}
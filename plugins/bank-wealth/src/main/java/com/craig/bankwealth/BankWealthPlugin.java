@@ -1,28 +1,43 @@
 package com.craig.bankwealth;
 
-import com.google.gson.*;
 import com.google.inject.Provides;
-import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.GridLayout;
 import java.awt.image.BufferedImage;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.*;
-import java.text.NumberFormat;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.inject.Inject;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
-import javax.swing.SwingUtilities;
 
+import com.craig.shared.Histogram;
+import com.craig.shared.Jfr;
+import com.craig.shared.Metrics;
+import com.craig.shared.PushChannel;
+import com.craig.shared.SnapshotWriter;
+import com.craig.shared.TraceRecorder;
+import com.craig.shared.WealthBoard;
 import net.runelite.api.Client;
 import net.runelite.api.InventoryID;
 import net.runelite.api.Item;
 import net.runelite.api.ItemContainer;
 import net.runelite.api.ItemID;
+import net.runelite.api.Player;
+import net.runelite.api.events.ClientTick;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
 import net.runelite.api.events.WidgetLoaded;
 import net.runelite.api.widgets.WidgetID;
 import net.runelite.api.widgets.WidgetInfo;
@@ -30,13 +45,15 @@ import net.runelite.api.widgets.WidgetInfo;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.game.ItemManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
-import net.runelite.client.ui.PluginPanel;
 import net.runelite.client.util.ImageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @PluginDescriptor(
         name = "Bank Wealth",
@@ -45,6 +62,8 @@ import net.runelite.client.util.ImageUtil;
 )
 public class BankWealthPlugin extends Plugin
 {
+    private static final Logger log = LoggerFactory.getLogger(BankWealthPlugin.class);
+
     @Inject private Client client;
     @Inject private ClientThread clientThread;
     @Inject private ItemManager itemManager;
@@ -56,7 +75,6 @@ public class BankWealthPlugin extends Plugin
 
     private Path baseDir;
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     // dedupe + throttle
     private long lastBankValue = Long.MIN_VALUE;
@@ -64,6 +82,87 @@ public class BankWealthPlugin extends Plugin
     private long lastInvCoins  = Long.MIN_VALUE;
     private long lastWriteMs   = 0L;
 
+    // slot-diffed valuation against a cached price table; the table checks for a
+    // RuneLite price refresh at most every PRICE_PROBE_MS
+    private static final long PRICE_PROBE_MS = 30_000L;
+    private final BankValuation valuation = new BankValuation();
+    private PriceTable prices;
+    private long lastPriceProbeMs = 0L;
+
+    // the client copies every slot into new Items on each getItems(), so the bank is only read
+    // again after it changed; inventory-only and price-driven recalcs reuse the last read
+    private Item[] liveBank;
+    private boolean bankStale = true;
+    private String safeNameOf, safeName; // last sanitised rsn
+
+    // gp/hour over sliding windows, fed by every valuation; re-sent to the panel on ticks so
+    // idle windows decay
+    private static final long RATE_REFRESH_MS = 5_000L;
+    private final WealthRate rates = new WealthRate();
+    private String rateRsn;
+    private long lastRatePostMs;
+
+    // optional deadband / swinging-door thinning of what reaches history, series and manifest
+    private final WealthCompressor compressor = new WealthCompressor();
+    private final long[] rateSample = new long[WealthRate.WINDOWS_MS.length];
+    private String compressRsn;
+    private long lastHeartbeatPokeMs;
+
+    // last seen bank per RSN, valued when the bank container is empty or closed
+    private BankCache bankCache;
+    private boolean cfgCacheBank;
+
+    // all file I/O goes through the shared writer thread
+    private SnapshotWriter writer;
+    private WealthLog wealthLog;
+    private WealthSeries wealthSeries;
+    private BankComposition composition;
+    private WealthRollups wealthRollups;
+    private WealthManifest manifest;
+    private final ConcurrentLinkedQueue<WealthJson.Entry> pendingJson = new ConcurrentLinkedQueue<>();
+    // entries a failed rewrite left over, written ahead of newer ones for the same file; writer thread only
+    private final Map<Path, List<WealthJson.Entry>> retryJson = new LinkedHashMap<>();
+
+    // config snapshot, refreshed on ConfigChanged instead of read through the proxy per event
+    private long cfgMinGapMs;
+    private boolean cfgOnlyWhenBankOpen;
+    private boolean cfgDedupe;
+    private BankWealthConfig.StorageMode cfgStorageMode;
+    private boolean cfgFsync;
+    private boolean cfgWriteSeries;
+    private boolean cfgWriteComposition;
+    private boolean cfgWriteRollups;
+    private boolean cfgWriteManifest;
+    private int[] cfgRetentionDays; // by WealthRollups.Tier ordinal
+
+    // per-tick coalescing: any number of change events in a tick -> one recalc at tick end
+    private final Runnable recalcTask = this::recalcIfDirty;
+    private boolean recalcDirty;
+    private long eventsReceived;
+    private long recalcsRun;
+
+    // recorded on the client thread without allocating; rendered and written on the writer thread
+    private final Histogram recalcNanos = new Histogram();
+    private final Histogram slotsChanged = new Histogram();
+    private Metrics metrics;
+    private Metrics.Format cfgMetricsFormat;
+    private long cfgMetricsIntervalMs;
+    private long lastMetricsMs;
+
+    // optional loopback push to the agent and host-wide board; both independent of the file throttle
+    private PushChannel push;
+    private boolean cfgPushEnabled;
+    private int cfgPushPort;
+    private int pushPort;
+    private WealthBoard board;
+    private boolean cfgWriteBoard;
+    private long publishedBankValue = Long.MIN_VALUE, publishedBankCoins = Long.MIN_VALUE, publishedInvCoins = Long.MIN_VALUE;
+
+    // opt-in event trace for offline replay; records first in every handler
+    private TraceRecorder trace;
+    private boolean cfgRecordTrace;
+    private long cfgTraceMaxBytes;
+
     @Provides
     BankWealthConfig provideConfig(ConfigManager cm) { return cm.getConfig(BankWealthConfig.class); }
 
@@ -94,39 +193,270 @@ public class BankWealthPlugin extends Plugin
         baseDir = Paths.get(home, ".runelite", "bank-wealth");
         try { Files.createDirectories(baseDir); } catch (Exception ignored) {}
 
+        prices = new PriceTable(itemManager);
+        loadConfig();
+        recalcDirty = false;
+        eventsReceived = 0;
+        recalcsRun = 0;
+        liveBank = null;
+        bankStale = true;
+
+        writer = SnapshotWriter.acquire();
+        bankCache = new BankCache(baseDir, writer, () -> clientThread.invokeLater(this::markDirty));
+        metrics = buildMetrics();
+        lastMetricsMs = System.currentTimeMillis();
+        syncTrace();
+
         recalcAsync();
     }
 
     @Override
     protected void shutDown()
     {
+        log.debug("Bank Wealth stopped: {} change events coalesced into {} recalcs", eventsReceived, recalcsRun);
+
         if (nav != null)
         {
             clientToolbar.removeNavigation(nav);
             nav = null;
         }
+        if (panel != null) panel.stop();
         panel = null;
+
+        // the entry compression was holding back, ahead of the closes below
+        if (writer != null) storeKept(compressRsn, compressor.flush());
+        compressRsn = null;
+
+        if (wealthLog != null)
+        {
+            writer.runAlways("close:" + wealthLog.file(), wealthLog::close);
+            wealthLog = null;
+        }
+        if (wealthSeries != null)
+        {
+            writer.runAlways("close:" + wealthSeries.file(), wealthSeries::close);
+            wealthSeries = null;
+        }
+        if (composition != null)
+        {
+            writer.runAlways("close:" + composition.file(), composition::close);
+            composition = null;
+        }
+        if (wealthRollups != null)
+        {
+            writer.runAlways("close:rollups:" + wealthRollups.rsn(), wealthRollups::close);
+            wealthRollups = null;
+        }
+        manifest = null;
+        if (bankCache != null)
+        {
+            bankCache.saveIfDue(System.currentTimeMillis(), true);
+            bankCache = null;
+        }
+        closeTrace();
+        if (writer != null)
+        {
+            log.debug("Bank Wealth writer: depth={} coalesced={} dropped={}",
+                    writer.queueDepth(), writer.coalesced(), writer.dropped());
+            SnapshotWriter.release(2_000);
+            writer = null;
+        }
+        closePush();
+        board = null;
+        valuation.invalidate();
+        liveBank = null;
+        rates.reset();
+        rateRsn = null;
+        prices = null;
     }
 
     @Subscribe
     public void onWidgetLoaded(WidgetLoaded e)
     {
+        if (trace != null) trace.widgetLoaded(e, client);
         if (e.getGroupId() == WidgetID.BANK_GROUP_ID)
         {
-            recalcAsync();
+            bankStale = true;
+            markDirty();
         }
     }
 
     @Subscribe
     public void onItemContainerChanged(ItemContainerChanged e)
     {
+        if (trace != null) trace.container(e);
         int id = e.getContainerId();
+        if (id == InventoryID.BANK.getId()) bankStale = true;
         if (id == InventoryID.INVENTORY.getId() || id == InventoryID.BANK.getId())
         {
-            recalcAsync();
+            markDirty();
+        }
+    }
+
+    @Subscribe
+    public void onGameTick(GameTick t)
+    {
+        if (trace != null) trace.gameTick(client);
+        if (writer == null) return;
+        long now = System.currentTimeMillis();
+
+        // RuneLite does not announce price refreshes, so look for one here; this also
+        // revalues the cached bank while the bank itself is closed
+        if (prices != null && now - lastPriceProbeMs >= PRICE_PROBE_MS)
+        {
+            lastPriceProbeMs = now;
+            if (prices.probe()) markDirty();
+        }
+        if (bankCache != null) bankCache.saveIfDue(now, false);
+
+        // a quiet account still gets its heartbeat entry
+        if (compressor.enabled() && compressor.heartbeatDue(now) && now - lastHeartbeatPokeMs >= PRICE_PROBE_MS)
+        {
+            lastHeartbeatPokeMs = now;
+            markDirty();
+        }
+
+        BankWealthPanel p = panel;
+        if (p != null && rates.started() && now - lastRatePostMs >= RATE_REFRESH_MS) postRates(p, now);
+
+        if (cfgMetricsFormat == Metrics.Format.OFF) return;
+        if (now - lastMetricsMs < cfgMetricsIntervalMs) return;
+        lastMetricsMs = now;
+        exportMetrics(now);
+    }
+
+    @Subscribe
+    public void onGameStateChanged(GameStateChanged e)
+    {
+        if (trace != null) trace.gameState(e);
+        bankStale = true; // login, hop: the next read must come from the client
+    }
+
+    // only recorded; the plugin itself does not use these
+
+    @Subscribe
+    public void onClientTick(ClientTick t)
+    {
+        if (trace != null) trace.clientTick(client);
+    }
+
+    @Subscribe
+    public void onVarbitChanged(VarbitChanged e)
+    {
+        if (trace != null) trace.varbit(e);
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged e)
+    {
+        if ("bankwealth".equals(e.getGroup()))
+        {
+            loadConfig();
         }
     }
 
+    private void loadConfig()
+    {
+        cfgMinGapMs         = Math.max(0, config.minLogSeconds()) * 1000L;
+        cfgOnlyWhenBankOpen = config.onlyWhenBankOpen();
+        cfgDedupe           = config.dedupe();
+        cfgStorageMode      = config.storageMode();
+        cfgFsync            = config.fsyncWrites();
+        cfgWriteSeries      = config.writeSeries();
+        cfgWriteComposition = config.writeComposition();
+        cfgCacheBank        = config.cacheBankContents();
+        cfgWriteRollups     = config.writeRollups();
+        cfgWriteManifest    = config.writeManifest();
+        cfgRetentionDays    = new int[] {
+                config.rollupRawDays(), config.rollupMinuteDays(), config.rollupHourDays(), config.rollupDayDays() };
+        cfgMetricsFormat    = config.metricsFormat();
+        cfgMetricsIntervalMs = Math.max(5, config.metricsIntervalSeconds()) * 1000L;
+        cfgPushEnabled      = config.pushEnabled();
+        cfgPushPort         = config.pushPort();
+        cfgWriteBoard       = config.writeBoard();
+        compressor.configure(config.compression(), config.compressionGp(), config.compressionPercent(),
+                Math.max(1, config.compressionHeartbeatMinutes()) * 60_000L);
+        cfgRecordTrace      = config.recordTrace();
+        cfgTraceMaxBytes    = Math.max(1, config.traceMaxMb()) * 1024L * 1024L;
+        syncPush();
+        syncBoard();
+        syncTrace();
+    }
+
+    private void syncTrace()
+    {
+        if (!cfgRecordTrace) closeTrace();
+        else if (trace == null && writer != null)
+        {
+            trace = TraceRecorder.acquire("bank-wealth", TraceRecorder.defaultDir(), writer, cfgTraceMaxBytes);
+        }
+    }
+
+    /** Before the writer is released, so the rest of the trace still gets written. */
+    private void closeTrace()
+    {
+        if (trace == null) return;
+        trace = null;
+        TraceRecorder.release();
+    }
+
+    private void syncPush()
+    {
+        if (push != null && (!cfgPushEnabled || pushPort != cfgPushPort)) closePush();
+        if (cfgPushEnabled && push == null)
+        {
+            push = new PushChannel("bank-wealth", cfgPushPort);
+            pushPort = cfgPushPort;
+        }
+    }
+
+    private void closePush()
+    {
+        if (push == null) return;
+        push.close();
+        push = null;
+        publishedBankValue = Long.MIN_VALUE;
+    }
+
+    private void syncBoard()
+    {
+        if (!cfgWriteBoard)
+        {
+            board = null;
+            return;
+        }
+        if (board != null) return;
+        try
+        {
+            board = WealthBoard.open(WealthBoard.defaultFile(), true);
+            publishedBankValue = Long.MIN_VALUE;
+        }
+        catch (Exception ex)
+        {
+            log.warn("Bank Wealth could not open the wealth board", ex);
+        }
+    }
+
+    /** Called on the client thread for every relevant event; schedules at most one recalc per tick. */
+    private void markDirty()
+    {
+        eventsReceived++;
+        if (recalcDirty) return;
+        recalcDirty = true;
+        clientThread.invokeAtTickEnd(recalcTask);
+    }
+
+    private void recalcIfDirty()
+    {
+        if (!recalcDirty) return;
+        recalcDirty = false;
+        recalcsRun++;
+        recalcBank();
+    }
+
+    long eventsReceived() { return eventsReceived; }
+    long recalcsRun()     { return recalcsRun; }
+
     private void recalcAsync()
     {
         clientThread.invokeLater(this::recalcBank);
@@ -139,160 +469,356 @@ public class BankWealthPlugin extends Plugin
 
     private void recalcBank()
     {
+        RecalcEvent ev = Jfr.AVAILABLE ? RecalcEvent.start(prices) : null;
+        long t0 = System.nanoTime();
+        valueAndWrite();
+        recalcNanos.record(System.nanoTime() - t0);
+        if (ev != null) ev.finish(client.getTickCount(), valuation, prices);
+    }
+
+    private void valueAndWrite()
+    {
+        if (prices == null) return; // shut down before this ran
+
         long bankValue = 0;
         long bankCoins = 0;
         long invCoins  = 0;
 
         ItemContainer bank = client.getItemContainer(InventoryID.BANK);
-        boolean bankHasData = bank != null && bank.getItems() != null && bank.getItems().length > 0;
-
-        // optional: only write when bank UI is actually open
-        if (config.onlyWhenBankOpen() && !isBankOpen())
+        if (bank == null)
         {
-            // still update panel with last known values; skip write
-            SwingUtilities.invokeLater(() -> {
-                if (panel != null) panel.setValues(lastBankValue == Long.MIN_VALUE ? 0 : lastBankValue,
-                                                   lastBankCoins == Long.MIN_VALUE ? 0 : lastBankCoins,
-                                                   lastInvCoins  == Long.MIN_VALUE ? 0 : lastInvCoins);
-            });
-            return;
+            liveBank = null;
+            bankStale = true;
         }
-
-        if (bankHasData)
+        else if (bankStale)
+        {
+            liveBank = bank.getItems();
+            bankStale = false;
+        }
+        Item[] bankItems = liveBank;
+        boolean bankHasData = bankItems != null && bankItems.length > 0;
+        Player me = client.getLocalPlayer();
+        String rsn = me != null ? me.getName() : null;
+        String cacheKey = cfgCacheBank && bankCache != null && rsn != null && !rsn.isEmpty() ? safeName(rsn) : null;
+
+        // history is only written from the live bank (and, optionally, only while it is open);
+        // otherwise the cached contents are valued for the panel, push and board
+        boolean writable = bankHasData && (!cfgOnlyWhenBankOpen || isBankOpen());
+        Item[] valued = bankHasData ? bankItems : cacheKey != null ? bankCache.items(cacheKey) : null;
+        if (valued != null && valued.length == 0) valued = null;
+
+        if (valued != null)
         {
-            for (Item it : bank.getItems())
+            valuation.update(valued, prices);
+            slotsChanged.record(valuation.lastWasFull() ? valued.length : valuation.lastChangedSlots());
+            if (bankHasData && cacheKey != null)
             {
-                int id = it.getId();
-                int qty = it.getQuantity();
-                if (id <= 0 || qty <= 0) continue;
-
-                if (id == ItemID.COINS_995) bankCoins += qty;
-
-                int ge = 0;
-                try { ge = itemManager.getItemPrice(id); } catch (Exception ignored) {}
-                bankValue += (long) ge * (long) qty;
+                bankCache.remember(cacheKey, bankItems, valuation.lastWasFull() || valuation.lastChangedSlots() > 0);
             }
+
+            bankValue = valuation.value();
+            bankCoins = valuation.coins();
         }
 
         ItemContainer inv = client.getItemContainer(InventoryID.INVENTORY);
-        if (inv != null && inv.getItems() != null)
+        if (inv != null) invCoins = inv.count(ItemID.COINS_995); // counted in place, no Item copies
+
+        long now = System.currentTimeMillis();
+        if (rsn != null && !rsn.isEmpty())
         {
-            for (Item it : inv.getItems())
+            if (!rsn.equals(rateRsn))
             {
-                if (it.getId() == ItemID.COINS_995) invCoins += it.getQuantity();
+                rates.reset();
+                rateRsn = rsn;
             }
+            // the bank only counts when seen live; inventory coins always do
+            rates.update(now, bankValue, bankHasData, invCoins);
         }
 
-        // panel update always
-        final long fBankValue = bankValue, fBankCoins = bankCoins, fInvCoins = invCoins;
-        SwingUtilities.invokeLater(() -> {
-            if (panel != null) panel.setValues(fBankValue, fBankCoins, fInvCoins);
-        });
+        // panel update always; the panel coalesces and rate-caps its own refreshes
+        BankWealthPanel p = panel;
+        if (p != null)
+        {
+            p.post(bankValue, bankCoins, invCoins);
+            postRates(p, now);
+        }
 
         // skip writing if no bank data yet to avoid 0,0,0 spam
-        if (!bankHasData) return;
+        if (valued == null) return;
+        if (rsn == null) rsn = "unknown";
+        if ((push != null || board != null)
+                && (bankValue != publishedBankValue || bankCoins != publishedBankCoins || invCoins != publishedInvCoins))
+        {
+            if (push != null) push.wealth(rsn, now, bankValue, bankCoins, invCoins);
+            if (board != null) board.putWealth(rsn, now, bankValue, bankCoins, invCoins);
+            publishedBankValue = bankValue;
+            publishedBankCoins = bankCoins;
+            publishedInvCoins  = invCoins;
+        }
+
+        if (!writable) return;
 
         // throttle + dedupe
-        long now = System.currentTimeMillis();
-        long minGapMs = Math.max(0, config.minLogSeconds()) * 1000L;
-        boolean due = (now - lastWriteMs) >= minGapMs;
+        boolean due = (now - lastWriteMs) >= cfgMinGapMs;
+        if (!due) return;
 
         boolean changed = true;
-        if (config.dedupe())
+        if (cfgDedupe)
         {
             changed = bankValue != lastBankValue || bankCoins != lastBankCoins || invCoins != lastInvCoins;
         }
 
-        if (due && changed)
+        // history, series and manifest: every changed entry, or what compression keeps of every
+        // sample; a sample held back for another account or from before compression was
+        // switched off is written first
+        rates.perHour(now, rateSample);
+        if (compressor.pending() && (!compressor.enabled() || !rsn.equals(compressRsn)))
         {
-            String rsn = client.getLocalPlayer() != null ? client.getLocalPlayer().getName() : "unknown";
-            writeUserJson(rsn, bankValue, bankCoins, invCoins);
+            storeKept(compressRsn, compressor.flush());
+        }
+        compressRsn = rsn;
+        if (compressor.enabled())
+        {
+            storeKept(rsn, compressor.offer(now, bankValue, bankCoins, invCoins, rateSample));
+        }
+        else if (changed)
+        {
+            storeEntry(rsn, now, bankValue, bankCoins, invCoins, rateSample.clone());
+        }
 
+        // contents and rollups keep their own change-driven cadence
+        if (changed)
+        {
+            if (cfgWriteComposition)
+            {
+                appendComposition(rsn, now, bankItems);
+            }
+            if (cfgWriteRollups)
+            {
+                appendRollups(rsn, now, bankValue, bankCoins + invCoins);
+            }
             lastBankValue = bankValue;
             lastBankCoins = bankCoins;
             lastInvCoins  = invCoins;
-            lastWriteMs   = now;
         }
+        if (changed || compressor.enabled()) lastWriteMs = now;
     }
 
-    private void writeUserJson(String rsn, long bankValue, long bankCoins, long invCoins)
+    /** Writes the {@code n} points the compressor just kept. */
+    private void storeKept(String rsn, int n)
     {
-        try
+        for (int i = 0; i < n; i++)
+        {
+            storeEntry(rsn, compressor.time(i), compressor.value(i, 0), compressor.value(i, 1), compressor.value(i, 2),
+                    compressor.rates(i).clone());
+        }
+    }
+
+    private void storeEntry(String rsn, long timeMs, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+    {
+        String timestamp = TS_FMT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMs), ZoneId.systemDefault()));
+        if (cfgStorageMode == BankWealthConfig.StorageMode.APPEND_LOG)
+        {
+            appendUserLog(rsn, timestamp, bankValue, bankCoins, invCoins, gpPerHour);
+        }
+        else
+        {
+            writeUserJson(rsn, timestamp, bankValue, bankCoins, invCoins, gpPerHour);
+        }
+        if (cfgWriteSeries)
+        {
+            appendSeries(rsn, timeMs, bankValue, bankCoins, invCoins);
+        }
+        if (cfgWriteManifest)
+        {
+            updateManifest(rsn, timeMs, bankValue, bankCoins, invCoins);
+        }
+    }
+
+    private void postRates(BankWealthPanel p, long now)
+    {
+        p.postRates(rates.perHour(0, now), rates.perHour(1, now), rates.perHour(2, now));
+        lastRatePostMs = now;
+    }
+
+    private void writeUserJson(String rsn, String timestamp, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+    {
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
+        Path file = baseDir.resolve(safe + ".json");
+
+        pendingJson.add(new WealthJson.Entry(file, rsn, timestamp, bankValue, bankCoins, invCoins, gpPerHour));
+        writer.run(baseDir, this::flushJson);
+    }
+
+    /**
+     * Writer thread: folds every queued entry into its <rsn>.json document, so a burst
+     * costs one rewrite per file rather than one per entry. The rewrite streams the existing
+     * document, so memory does not grow with the history. A file that cannot be written keeps
+     * its entries for the next flush and does not hold up the others.
+     */
+    private void flushJson()
+    {
+        Set<Path> files = new LinkedHashSet<>(retryJson.keySet());
+        for (WealthJson.Entry e : pendingJson) files.add(e.file);
+
+        for (Path file : files)
         {
-            String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
-            Path file = baseDir.resolve(safe + ".json");
+            // take from the queue only the entries about to be written
+            List<WealthJson.Entry> forFile = retryJson.remove(file);
+            if (forFile == null) forFile = new ArrayList<>();
+            for (Iterator<WealthJson.Entry> it = pendingJson.iterator(); it.hasNext(); )
+            {
+                WealthJson.Entry e = it.next();
+                if (!e.file.equals(file)) continue;
+                forFile.add(e);
+                it.remove();
+            }
 
-            JsonObject root;
-            if (Files.exists(file))
+            try
             {
-                try
-                {
-                    String txt = Files.readString(file, StandardCharsets.UTF_8);
-                    JsonElement je = new JsonParser().parse(txt); // Gson 2.8.5 compatible
-                    root = je != null && je.isJsonObject() ? je.getAsJsonObject() : new JsonObject();
-                }
-                catch (Exception ex)
-                {
-                    root = new JsonObject();
-                }
+                WealthJson.append(file, forFile, cfgFsync);
             }
-            else
+            catch (Exception ex)
             {
-                root = new JsonObject();
+                log.warn("Bank Wealth could not write {}; {} entries kept for the next write", file, forFile.size(), ex);
+                retryJson.put(file, forFile);
             }
+        }
+    }
 
-            root.addProperty("rsn", rsn);
-            root.addProperty("lastUpdated", TS_FMT.format(LocalDateTime.now()));
+    private void appendUserLog(String rsn, String timestamp, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+    {
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
+        Path file = baseDir.resolve(safe + WealthLog.EXT);
+
+        if (wealthLog == null || !wealthLog.file().equals(file))
+        {
+            if (wealthLog != null) writer.runAlways("close:" + wealthLog.file(), wealthLog::close);
+            wealthLog = new WealthLog(file);
 
-            JsonArray entries = root.has("entries") && root.get("entries").isJsonArray()
-                    ? root.getAsJsonArray("entries")
-                    : new JsonArray();
+            // first use for this rsn: fold the legacy entries array into the log.
+            // Queued ahead of the first flush, and the writer runs work in order.
+            Path legacy = baseDir.resolve(safe + ".json");
+            writer.runAlways("migrate:" + file, () -> WealthLog.migrate(legacy, file));
+        }
 
-            JsonObject entry = new JsonObject();
-            entry.addProperty("timestamp", TS_FMT.format(LocalDateTime.now()));
-            entry.addProperty("bank_ge_value", bankValue);
-            entry.addProperty("bank_coins", bankCoins);
-            entry.addProperty("inventory_coins", invCoins);
-            entries.add(entry);
-            root.add("entries", entries);
+        final WealthLog wl = wealthLog;
+        final boolean fsync = cfgFsync;
+        wl.enqueue(WealthLog.record(timestamp, bankValue, bankCoins, invCoins, gpPerHour));
+        // keyed by instance: after switching away and back, a flush still queued for the old
+        // log must not absorb the new one's
+        writer.run(wl, () -> wl.flush(fsync));
+    }
 
-            byte[] out = GSON.toJson(root).getBytes(StandardCharsets.UTF_8);
-            Path tmp = file.resolveSibling(file.getFileName().toString() + ".tmp");
-            Files.write(tmp, out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
-            try { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
-            catch (Exception ignore) { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); }
+    private void appendSeries(String rsn, long nowMs, long bankValue, long bankCoins, long invCoins)
+    {
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
+        Path file = baseDir.resolve(safe + WealthSeries.EXT);
+
+        if (wealthSeries == null || !wealthSeries.file().equals(file))
+        {
+            if (wealthSeries != null) writer.runAlways("close:" + wealthSeries.file(), wealthSeries::close);
+            wealthSeries = new WealthSeries(file);
         }
-        catch (Exception ignored) {}
+
+        final WealthSeries ws = wealthSeries;
+        final boolean fsync = cfgFsync;
+        ws.enqueue(nowMs, bankValue, bankCoins, invCoins);
+        writer.run(ws, () -> ws.flush(fsync));
     }
 
-    private static String sanitiseFileName(String s)
+    private void appendComposition(String rsn, long nowMs, Item[] bankItems)
     {
-        return s.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
+        Path file = baseDir.resolve(safe + BankComposition.EXT);
+
+        if (composition == null || !composition.file().equals(file))
+        {
+            if (composition != null) writer.runAlways("close:" + composition.file(), composition::close);
+            composition = new BankComposition(file);
+        }
+
+        final BankComposition bc = composition;
+        final boolean fsync = cfgFsync;
+        bc.enqueue(nowMs, bankItems);
+        writer.run(bc, () -> bc.flush(fsync));
     }
 
-    // Minimal panel
-    private static class BankWealthPanel extends PluginPanel
+    private void appendRollups(String rsn, long nowMs, long bankValue, long coins)
     {
-        private final JLabel bankVal = new JLabel("Bank GE: 0 gp");
-        private final JLabel bankGp  = new JLabel("Bank coins: 0");
-        private final JLabel invGp   = new JLabel("Inventory coins: 0");
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
 
-        BankWealthPanel()
+        if (wealthRollups == null || !wealthRollups.rsn().equals(safe))
         {
-            setLayout(new BorderLayout());
-            JPanel p = new JPanel(new GridLayout(0, 1, 0, 4));
-            p.add(bankVal);
-            p.add(bankGp);
-            p.add(invGp);
-            add(p, BorderLayout.NORTH);
+            if (wealthRollups != null) writer.runAlways("close:rollups:" + wealthRollups.rsn(), wealthRollups::close);
+            wealthRollups = new WealthRollups(baseDir, safe);
         }
 
-        void setValues(long bankValue, long bankCoins, long invCoins)
+        final WealthRollups wr = wealthRollups;
+        final int[] retention = cfgRetentionDays;
+        final boolean fsync = cfgFsync;
+        wr.enqueue(nowMs, bankValue, coins);
+        writer.run(wr, () -> wr.flush(retention, fsync));
+    }
+
+    /**
+     * Queued after this entry's history write. Coalesced per RSN like the rollups: a task already
+     * running may record these values before their history write lands, and the one queued
+     * behind that write then records the full length.
+     */
+    private void updateManifest(String rsn, long nowMs, long bankValue, long bankCoins, long invCoins)
+    {
+        String safe = sanitiseFileName(rsn == null || rsn.isEmpty() ? "unknown" : rsn);
+        Path history = baseDir.resolve(safe + (cfgStorageMode == BankWealthConfig.StorageMode.APPEND_LOG ? WealthLog.EXT : ".json"));
+
+        if (manifest == null) manifest = new WealthManifest(baseDir);
+        final WealthManifest wm = manifest;
+        final boolean fsync = cfgFsync;
+        wm.enqueue(safe, nowMs, bankValue, bankCoins, invCoins, history);
+        writer.run("manifest:" + safe, () -> wm.flush(fsync));
+    }
+
+    private Metrics buildMetrics()
+    {
+        Metrics m = new Metrics("bankwealth_");
+        m.histogram("recalc_nanos", "Client-thread time per bank recalculation", recalcNanos);
+        m.histogram("recalc_slots_changed", "Bank slots revalued per recalculation", slotsChanged);
+        m.counter("events_total", "Bank/inventory change events received", () -> eventsReceived);
+        m.counter("recalcs_total", "Recalculations run after per-tick coalescing", () -> recalcsRun);
+        m.counter("price_lookups_total", "Price table lookups", () -> prices == null ? 0 : prices.lookups());
+        m.counter("price_misses_total", "Price table misses sent to ItemManager", () -> prices == null ? 0 : prices.misses());
+        m.counter("push_sent_total", "Frames pushed to the agent", () -> push == null ? 0 : push.sent());
+        m.counter("push_dropped_total", "Frames dropped from a full push outbox", () -> push == null ? 0 : push.dropped());
+        m.counter("board_skipped_total", "Wealth board updates given up on a busy slot", () -> board == null ? 0 : board.skipped());
+        writer.register(m);
+        return m;
+    }
+
+    /** Client thread: only decides the file; rendering happens on the writer thread. */
+    private void exportMetrics(long now)
+    {
+        String rsn = client.getLocalPlayer() != null ? client.getLocalPlayer().getName() : null;
+        if (rsn == null || rsn.isEmpty()) return;
+
+        Metrics m = metrics;
+        Metrics.Format fmt = cfgMetricsFormat;
+        Path file = baseDir.resolve("metrics").resolve(sanitiseFileName(rsn) + fmt.extension());
+        writer.run("metrics:" + file, () -> SnapshotWriter.writeAtomically(file, m.render(fmt, rsn, now), false));
+    }
+
+    /** {@link #sanitiseFileName} for the current account, without a regex pass per recalc. */
+    private String safeName(String rsn)
+    {
+        if (!rsn.equals(safeNameOf))
         {
-            NumberFormat nf = NumberFormat.getInstance();
-            bankVal.setText("Bank GE: " + nf.format(bankValue) + " gp");
-            bankGp.setText("Bank coins: " + nf.format(bankCoins));
-            invGp.setText("Inventory coins: " + nf.format(invCoins));
+            safeName = sanitiseFileName(rsn);
+            safeNameOf = rsn;
         }
+        return safeName;
+    }
+
+    private static String sanitiseFileName(String s)
+    {
+        return s.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
     }
 }
@@ -0,0 +1,114 @@
+package com.craig.bankwealth;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import net.runelite.client.game.ItemManager;
+
+/**
+ * Plugin-side GE price cache: a dense int array indexed by item id.
+ *
+ * Only a miss goes to {@link ItemManager} (and pays for the try/catch); hits are a bounds
+ * check and an array load. RuneLite does not announce price refreshes, so {@link #probe}
+ * re-reads a handful of cached ids and, if any moved, drops the table and bumps
+ * {@link #version()} so valuations know to revalue.
+ */
+final class PriceTable implements BankValuation.PriceLookup
+{
+    private static final int MISSING = -1;
+    private static final int MAX_ID = 1 << 20; // ids beyond this are not cached
+    private static final int CANARIES = 16;
+
+    private final IntUnaryOperator source;
+
+    private int[] prices = new int[0];
+    private final int[] canaries = new int[CANARIES];
+    private int canaryCount;
+    private int version;
+
+    private long lookups;
+    private long misses;
+
+    PriceTable(ItemManager itemManager)
+    {
+        this(itemManager::getItemPrice);
+    }
+
+    /** Any id-to-price source; the benchmarks use this to run without a client. */
+    PriceTable(IntUnaryOperator source)
+    {
+        this.source = source;
+    }
+
+    @Override
+    public int version()
+    {
+        return version;
+    }
+
+    long lookups() { return lookups; }
+    long misses()  { return misses; }
+
+    @Override
+    public int price(int itemId)
+    {
+        lookups++;
+        // empty and placeholder slots carry id -1
+        if (itemId >= 0 && itemId < prices.length)
+        {
+            int p = prices[itemId];
+            if (p != MISSING) return p;
+        }
+        return miss(itemId);
+    }
+
+    /**
+     * Compares the canary ids against RuneLite's current prices.
+     * @return true if prices moved and the table was dropped
+     */
+    boolean probe()
+    {
+        for (int i = 0; i < canaryCount; i++)
+        {
+            int id = canaries[i];
+            if (id >= 0 && id < prices.length && prices[id] != MISSING && prices[id] != fetch(id))
+            {
+                invalidate();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Drops every cached price and bumps the version. */
+    void invalidate()
+    {
+        Arrays.fill(prices, MISSING);
+        canaryCount = 0;
+        version++;
+    }
+
+    private int miss(int itemId)
+    {
+        misses++;
+        int p = fetch(itemId);
+        if (itemId < 0 || itemId >= MAX_ID) return p;
+
+        if (itemId >= prices.length)
+        {
+            int cap = Math.max(1024, Integer.highestOneBit(itemId) << 1);
+            int old = prices.length;
+            prices = Arrays.copyOf(prices, cap);
+            Arrays.fill(prices, old, cap, MISSING);
+        }
+        prices[itemId] = p;
+
+        // canaries are the first few priced items seen; coins etc. at 0/1 gp tell us nothing
+        if (canaryCount < CANARIES && p > 1) canaries[canaryCount++] = itemId;
+        return p;
+    }
+
+    private int fetch(int itemId)
+    {
+        try { return Math.max(0, source.applyAsInt(itemId)); } catch (Exception ignored) { return 0; }
+    }
+}
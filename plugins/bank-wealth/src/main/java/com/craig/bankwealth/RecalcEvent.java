@@ -0,0 +1,72 @@
+package com.craig.bankwealth;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** One {@code recalcBank} on the client thread. Only used when {@code Jfr.AVAILABLE}. */
+@Name(RecalcEvent.NAME)
+@Label("Bank Wealth Recalc")
+@Category({ "RuneLite Plugins", "Bank Wealth" })
+@Description("Bank valuation and write decision for one tick")
+@Threshold("100 us")
+@StackTrace(false)
+final class RecalcEvent extends Event
+{
+    static final String NAME = "com.craig.bankwealth.Recalc";
+
+    private static final EventType TYPE = EventType.getEventType(RecalcEvent.class);
+
+    @Label("Game Tick")
+    int tick;
+
+    @Label("Slots Revalued")
+    @Description("Bank slots whose value was recomputed; every slot on a full revalue")
+    int slotsRevalued;
+
+    @Label("Full Revalue")
+    boolean full;
+
+    @Label("Price Lookups")
+    long priceLookups;
+
+    @Label("Price Misses")
+    @Description("Lookups that went to the item manager")
+    long priceMisses;
+
+    private long lookups0, misses0;
+
+    /** A started event, or null when no recording has this event on. */
+    static RecalcEvent start(PriceTable prices)
+    {
+        if (!TYPE.isEnabled()) return null;
+        RecalcEvent e = new RecalcEvent();
+        if (prices != null)
+        {
+            e.lookups0 = prices.lookups();
+            e.misses0 = prices.misses();
+        }
+        e.begin();
+        return e;
+    }
+
+    void finish(int tick, BankValuation valuation, PriceTable prices)
+    {
+        end();
+        if (!shouldCommit()) return;
+        this.tick = tick;
+        this.full = valuation.lastWasFull();
+        this.slotsRevalued = valuation.lastChangedSlots();
+        if (prices != null)
+        {
+            this.priceLookups = prices.lookups() - lookups0;
+            this.priceMisses = prices.misses() - misses0;
+        }
+        commit();
+    }
+}
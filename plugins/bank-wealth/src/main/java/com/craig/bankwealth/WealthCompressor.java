@@ -0,0 +1,187 @@
+package com.craig.bankwealth;
+
+/**
+ * Decides which wealth samples are kept in the history, series and manifest, so a bank that
+ * only drifts with GE prices stops producing a point per interval.
+ *
+ * Each field (bank value, bank coins, inventory coins) gets an error bound of
+ * {@code max(gp, percent of its value)}, taken at the last kept point:
+ * <ul>
+ * <li>{@link BankWealthConfig.Compression#DEADBAND}: a sample is kept when any field moved
+ *   more than its bound from the last kept point. Holding each kept value until the next one
+ *   rebuilds every sample within the bound.</li>
+ * <li>{@link BankWealthConfig.Compression#SWINGING_DOOR}: a sample is kept when no straight
+ *   line from the last kept point passes within the bound of every sample since; the point
+ *   kept is then the previous sample, the end of the longest line that still did. Drawing
+ *   straight lines between kept points rebuilds every sample within the bound, which is how
+ *   the charts draw them anyway.</li>
+ * </ul>
+ * All fields are kept together, at the same timestamps. A sample is also kept once nothing
+ * has been for the heartbeat interval, so a quiet account still shows it is being tracked.
+ *
+ * Kept points are read back with {@link #time}, {@link #value} and {@link #rates} right after
+ * {@link #offer} or {@link #flush} returns. Client thread only.
+ */
+final class WealthCompressor
+{
+    static final int FIELDS = 3;
+
+    private BankWealthConfig.Compression mode = BankWealthConfig.Compression.OFF;
+    private long gp;
+    private double fraction;
+    private long heartbeatMs;
+
+    // last kept point and its bounds
+    private boolean anchored;
+    private long anchorT;
+    private final long[] anchor = new long[FIELDS];
+    private final double[] bound = new double[FIELDS];
+
+    // swinging door: the newest sample not kept yet, and the slopes a line from the anchor may take
+    private boolean pending;
+    private long candT;
+    private final long[] cand = new long[FIELDS];
+    private final long[] candRates = new long[WealthRate.WINDOWS_MS.length];
+    private final double[] slopeLow = new double[FIELDS];
+    private final double[] slopeHigh = new double[FIELDS];
+
+    // points kept by the last call
+    private int kept;
+    private final long[] keptT = new long[2];
+    private final long[][] keptV = new long[2][FIELDS];
+    private final long[][] keptRates = new long[2][WealthRate.WINDOWS_MS.length];
+
+    private final long[] sample = new long[FIELDS];
+
+    void configure(BankWealthConfig.Compression mode, long gp, double percent, long heartbeatMs)
+    {
+        this.mode = mode == null ? BankWealthConfig.Compression.OFF : mode;
+        this.gp = Math.max(0, gp);
+        this.fraction = Math.max(0, percent) / 100.0;
+        this.heartbeatMs = Math.max(1, heartbeatMs);
+    }
+
+    boolean enabled()
+    {
+        return mode != BankWealthConfig.Compression.OFF;
+    }
+
+    /** True while a sample is held back waiting for the next one. */
+    boolean pending()
+    {
+        return pending;
+    }
+
+    /** Nothing has been kept for the heartbeat interval. */
+    boolean heartbeatDue(long nowMs)
+    {
+        return anchored && nowMs - anchorT >= heartbeatMs;
+    }
+
+    /**
+     * Adds one sample; returns how many points to store now (0 to 2), oldest first.
+     * {@code gpPerHour} is copied.
+     */
+    int offer(long nowMs, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+    {
+        kept = 0;
+        sample[0] = bankValue;
+        sample[1] = bankCoins;
+        sample[2] = invCoins;
+
+        if (!anchored)
+        {
+            keep(nowMs, sample, gpPerHour);
+            return kept;
+        }
+
+        if (mode == BankWealthConfig.Compression.DEADBAND)
+        {
+            if (nowMs - anchorT >= heartbeatMs || outsideBand(sample)) keep(nowMs, sample, gpPerHour);
+            return kept;
+        }
+
+        long dt = Math.max(1, nowMs - anchorT);
+        if (pending && !throughDoors(dt, sample))
+        {
+            // no line reaches this sample; the previous one ends the segment
+            keep(candT, cand, candRates);
+            dt = Math.max(1, nowMs - anchorT);
+        }
+        narrowDoors(dt, sample);
+        candT = nowMs;
+        System.arraycopy(sample, 0, cand, 0, FIELDS);
+        System.arraycopy(gpPerHour, 0, candRates, 0, candRates.length);
+        pending = true;
+
+        if (nowMs - anchorT >= heartbeatMs) keep(candT, cand, candRates);
+        return kept;
+    }
+
+    /**
+     * Keeps the sample held back, if any, and starts afresh with the next one: for shutdown,
+     * an account switch or switching compression off. Returns 0 or 1.
+     */
+    int flush()
+    {
+        kept = 0;
+        if (pending) keep(candT, cand, candRates);
+        anchored = false;
+        return kept;
+    }
+
+    long time(int i) { return keptT[i]; }
+
+    long value(int i, int field) { return keptV[i][field]; }
+
+    long[] rates(int i) { return keptRates[i]; }
+
+    private boolean outsideBand(long[] v)
+    {
+        for (int f = 0; f < FIELDS; f++)
+        {
+            if (Math.abs((double) v[f] - anchor[f]) > bound[f]) return true;
+        }
+        return false;
+    }
+
+    /** The line from the anchor to {@code v} passes within bounds of every sample since the anchor. */
+    private boolean throughDoors(long dt, long[] v)
+    {
+        for (int f = 0; f < FIELDS; f++)
+        {
+            double slope = ((double) v[f] - anchor[f]) / dt;
+            if (slope < slopeLow[f] || slope > slopeHigh[f]) return false;
+        }
+        return true;
+    }
+
+    private void narrowDoors(long dt, long[] v)
+    {
+        for (int f = 0; f < FIELDS; f++)
+        {
+            double d = (double) v[f] - anchor[f];
+            slopeLow[f] = Math.max(slopeLow[f], (d - bound[f]) / dt);
+            slopeHigh[f] = Math.min(slopeHigh[f], (d + bound[f]) / dt);
+        }
+    }
+
+    private void keep(long t, long[] v, long[] gpPerHour)
+    {
+        keptT[kept] = t;
+        System.arraycopy(v, 0, keptV[kept], 0, FIELDS);
+        System.arraycopy(gpPerHour, 0, keptRates[kept], 0, keptRates[kept].length);
+        kept++;
+
+        anchored = true;
+        anchorT = t;
+        for (int f = 0; f < FIELDS; f++)
+        {
+            anchor[f] = v[f];
+            bound[f] = Math.max(gp, fraction * Math.abs((double) v[f]));
+            slopeLow[f] = Double.NEGATIVE_INFINITY;
+            slopeHigh[f] = Double.POSITIVE_INFINITY;
+        }
+        pending = false;
+    }
+}
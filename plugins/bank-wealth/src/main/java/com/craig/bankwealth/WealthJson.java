@@ -0,0 +1,340 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Streams {@code <rsn>.json} history documents through fixed-size buffers, so memory stays the
+ * same however long the history is: existing entries are copied token by token, never held as
+ * a tree. Output is what Gson's pretty printer wrote for the same document.
+ *
+ * Writer thread only.
+ */
+final class WealthJson
+{
+    private static final int BUFFER = 8192;
+
+    /** One entry queued for a document. */
+    static final class Entry
+    {
+        final Path file;
+        final String rsn;
+        final String timestamp;
+        final long bankValue, bankCoins, invCoins;
+        final long[] gpPerHour;
+
+        Entry(Path file, String rsn, String timestamp, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+        {
+            this.file = file;
+            this.rsn = rsn;
+            this.timestamp = timestamp;
+            this.bankValue = bankValue;
+            this.bankCoins = bankCoins;
+            this.invCoins = invCoins;
+            this.gpPerHour = gpPerHour;
+        }
+    }
+
+    interface EntryVisitor
+    {
+        void entry(String timestamp, long bankValue, long bankCoins, long invCoins) throws IOException;
+    }
+
+    private WealthJson() { }
+
+    /**
+     * Rewrites {@code file} with {@code added} appended to its {@code entries}, and {@code rsn}
+     * and {@code lastUpdated} taken from the last of them. A missing or unreadable document is
+     * started afresh.
+     */
+    static void append(Path file, List<Entry> added, boolean fsync) throws IOException
+    {
+        Path dir = file.getParent();
+        if (dir != null) Files.createDirectories(dir);
+
+        Path tmp = file.resolveSibling(file.getFileName().toString() + ".tmp");
+        long bytes;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            if (!Files.exists(file) || !write(ch, file, added))
+            {
+                ch.truncate(0);
+                ch.position(0);
+                write(ch, null, added);
+            }
+            if (fsync) ch.force(false);
+            bytes = ch.size();
+        }
+        SnapshotWriter.recordBytes(bytes);
+        try { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+        catch (Exception ignore) { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); }
+    }
+
+    /**
+     * Streams each well-formed object in the {@code entries} array of {@code file} to {@code v}.
+     * @return false if the document is unreadable or has no entries array
+     */
+    static boolean readEntries(Path file, EntryVisitor v) throws IOException
+    {
+        try (JsonReader in = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8)))
+        {
+            in.setLenient(true);
+            if (in.peek() != JsonToken.BEGIN_OBJECT) return false;
+
+            boolean found = false;
+            in.beginObject();
+            while (in.hasNext())
+            {
+                if (!"entries".equals(in.nextName()) || in.peek() != JsonToken.BEGIN_ARRAY)
+                {
+                    in.skipValue();
+                    continue;
+                }
+                found = true;
+                in.beginArray();
+                while (in.hasNext()) readEntry(in, v);
+                in.endArray();
+            }
+            in.endObject();
+            return found && in.peek() == JsonToken.END_DOCUMENT;
+        }
+        catch (MalformedJsonException | EOFException | CharacterCodingException | IllegalStateException ex)
+        {
+            return false;
+        }
+    }
+
+    /** Writes the document; from {@code existing} if given. False if {@code existing} could not be read. */
+    private static boolean write(FileChannel ch, Path existing, List<Entry> added) throws IOException
+    {
+        Writer w = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER), BUFFER);
+        // as Gson.toJson(JsonElement) with setPrettyPrinting()
+        JsonWriter out = new JsonWriter(w);
+        out.setIndent("  ");
+        out.setLenient(true);
+        out.setHtmlSafe(true);
+        out.setSerializeNulls(false);
+
+        if (existing == null)
+        {
+            Entry last = added.get(added.size() - 1);
+            out.beginObject();
+            out.name("rsn").value(last.rsn);
+            out.name("lastUpdated").value(last.timestamp);
+            out.name("entries");
+            writeEntries(out, null, added);
+            out.endObject();
+        }
+        else if (!copy(existing, out, added))
+        {
+            return false;
+        }
+        out.flush(); // not closed: that would close the channel
+        return true;
+    }
+
+    private static boolean copy(Path existing, JsonWriter out, List<Entry> added) throws IOException
+    {
+        Entry last = added.get(added.size() - 1);
+        try (JsonReader in = new JsonReader(Files.newBufferedReader(existing, StandardCharsets.UTF_8)))
+        {
+            in.setLenient(true);
+            if (in.peek() != JsonToken.BEGIN_OBJECT) return false;
+
+            // the three fields this plugin owns keep their place; anything else is copied through
+            boolean rsn = false, updated = false, entries = false;
+            in.beginObject();
+            out.beginObject();
+            while (in.hasNext())
+            {
+                String name = in.nextName();
+                switch (name)
+                {
+                    case "rsn":
+                        in.skipValue();
+                        if (rsn) break;
+                        out.name(name).value(last.rsn);
+                        rsn = true;
+                        break;
+                    case "lastUpdated":
+                        in.skipValue();
+                        if (updated) break;
+                        out.name(name).value(last.timestamp);
+                        updated = true;
+                        break;
+                    case "entries":
+                        if (entries) { in.skipValue(); break; }
+                        out.name(name);
+                        writeEntries(out, in, added);
+                        entries = true;
+                        break;
+                    default:
+                        out.name(name);
+                        copyValue(in, out);
+                        break;
+                }
+            }
+            in.endObject();
+            if (in.peek() != JsonToken.END_DOCUMENT) return false;
+
+            if (!rsn) out.name("rsn").value(last.rsn);
+            if (!updated) out.name("lastUpdated").value(last.timestamp);
+            if (!entries)
+            {
+                out.name("entries");
+                writeEntries(out, null, added);
+            }
+            out.endObject();
+            return true;
+        }
+        catch (MalformedJsonException | EOFException | CharacterCodingException ex)
+        {
+            // only the reader throws these; write failures propagate and leave the file alone
+            return false;
+        }
+    }
+
+    /** The entries array: whatever {@code in} holds there (if an array), then {@code added}. */
+    private static void writeEntries(JsonWriter out, JsonReader in, List<Entry> added) throws IOException
+    {
+        out.beginArray();
+        if (in != null)
+        {
+            if (in.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                in.beginArray();
+                while (in.hasNext()) copyValue(in, out);
+                in.endArray();
+            }
+            else
+            {
+                in.skipValue();
+            }
+        }
+        for (Entry e : added)
+        {
+            out.beginObject();
+            out.name("timestamp").value(e.timestamp);
+            out.name("bank_ge_value").value(e.bankValue);
+            out.name("bank_coins").value(e.bankCoins);
+            out.name("inventory_coins").value(e.invCoins);
+            for (int w = 0; w < e.gpPerHour.length; w++)
+            {
+                out.name(WealthRate.fieldName(w)).value(e.gpPerHour[w]);
+            }
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static void copyValue(JsonReader in, JsonWriter out) throws IOException
+    {
+        switch (in.peek())
+        {
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) copyValue(in, out);
+                in.endArray();
+                out.endArray();
+                break;
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext())
+                {
+                    out.name(in.nextName());
+                    copyValue(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                out.jsonValue(in.nextString()); // as written, like Gson's lazily parsed numbers
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("unexpected " + in.peek());
+        }
+    }
+
+    /** One element of an entries array; anything but an object with the four fields is skipped. */
+    private static void readEntry(JsonReader in, EntryVisitor v) throws IOException
+    {
+        if (in.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            in.skipValue();
+            return;
+        }
+
+        String timestamp = null, bankValue = null, bankCoins = null, invCoins = null;
+        in.beginObject();
+        while (in.hasNext())
+        {
+            String name = in.nextName();
+            JsonToken t = in.peek();
+            if (t != JsonToken.STRING && t != JsonToken.NUMBER)
+            {
+                in.skipValue();
+                continue;
+            }
+            switch (name)
+            {
+                case "timestamp":       timestamp = in.nextString(); break;
+                case "bank_ge_value":   bankValue = in.nextString(); break;
+                case "bank_coins":      bankCoins = in.nextString(); break;
+                case "inventory_coins": invCoins  = in.nextString(); break;
+                default:                in.skipValue(); break;
+            }
+        }
+        in.endObject();
+
+        if (timestamp == null || bankValue == null || bankCoins == null || invCoins == null) return;
+        long bv, bc, ic;
+        try
+        {
+            bv = toLong(bankValue);
+            bc = toLong(bankCoins);
+            ic = toLong(invCoins);
+        }
+        catch (NumberFormatException ex)
+        {
+            return; // skip malformed entries
+        }
+        v.entry(timestamp, bv, bc, ic);
+    }
+
+    /** As Gson's {@code getAsLong} on a number or numeric string. */
+    private static long toLong(String s)
+    {
+        try { return Long.parseLong(s); }
+        catch (NumberFormatException ex) { return new BigDecimal(s).longValue(); }
+    }
+}
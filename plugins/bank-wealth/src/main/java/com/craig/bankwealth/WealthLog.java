@@ -0,0 +1,157 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Append-only wealth history: one compact JSON record per line in {@code <rsn>.jsonl}.
+ *
+ * Appends cost the same no matter how long the history is. A crash mid-write can only
+ * leave a torn last line; it is cut off the next time the log is opened, so at most the
+ * last partial record is lost.
+ *
+ * The client thread only calls {@link #enqueue}; everything touching the file runs on the
+ * single writer thread, which writes all lines queued since its last run in one go.
+ */
+final class WealthLog implements AutoCloseable
+{
+    static final String EXT = ".jsonl";
+
+    private final Path file;
+    private final StringBuilder pending = new StringBuilder(); // guarded by itself
+
+    // writer thread only
+    private FileChannel ch;
+
+    WealthLog(Path file)
+    {
+        this.file = file;
+    }
+
+    Path file()
+    {
+        return file;
+    }
+
+    /** Names this file's writes in write events. */
+    @Override
+    public String toString()
+    {
+        return file.toString();
+    }
+
+    /** Formats one record exactly as the legacy {@code entries} objects, minus whitespace. */
+    static String record(String timestamp, long bankValue, long bankCoins, long invCoins)
+    {
+        return record(timestamp, bankValue, bankCoins, invCoins, null);
+    }
+
+    /** As above, plus gp/hour per {@link WealthRate#WINDOWS_MS} window when {@code gpPerHour} is given. */
+    static String record(String timestamp, long bankValue, long bankCoins, long invCoins, long[] gpPerHour)
+    {
+        StringBuilder sb = new StringBuilder(160)
+                .append("{\"timestamp\":\"").append(timestamp)
+                .append("\",\"bank_ge_value\":").append(bankValue)
+                .append(",\"bank_coins\":").append(bankCoins)
+                .append(",\"inventory_coins\":").append(invCoins);
+        if (gpPerHour != null)
+        {
+            for (int i = 0; i < gpPerHour.length; i++)
+            {
+                sb.append(",\"").append(WealthRate.fieldName(i)).append("\":").append(gpPerHour[i]);
+            }
+        }
+        return sb.append("}\n").toString();
+    }
+
+    /** Queues a record; any thread. */
+    void enqueue(String line)
+    {
+        synchronized (pending)
+        {
+            pending.append(line);
+        }
+    }
+
+    /** Writes every queued record with a single append. Writer thread only. */
+    void flush(boolean fsync) throws IOException
+    {
+        String chunk;
+        synchronized (pending)
+        {
+            if (pending.length() == 0) return;
+            chunk = pending.toString();
+            pending.setLength(0);
+        }
+
+        if (ch == null) open();
+        ByteBuffer buf = ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+        SnapshotWriter.recordBytes(buf.remaining());
+        while (buf.hasRemaining()) ch.write(buf);
+        if (fsync) ch.force(false);
+    }
+
+    @Override
+    public void close()
+    {
+        if (ch != null)
+        {
+            try { ch.close(); } catch (IOException ignored) {}
+            ch = null;
+        }
+    }
+
+    private void open() throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // drop a torn last record left behind by a crash
+        long size = ch.size();
+        long keep = size;
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (keep > 0)
+        {
+            one.clear();
+            ch.read(one, keep - 1);
+            if (one.get(0) == '\n') break;
+            keep--;
+        }
+        if (keep != size) ch.truncate(keep);
+        ch.position(keep);
+    }
+
+    /**
+     * One-off migration of a legacy {@code <rsn>.json} document: its {@code entries}
+     * array becomes the start of the log. Does nothing if the log already exists.
+     */
+    static int migrate(Path legacyJson, Path log) throws IOException
+    {
+        if (Files.exists(log) || !Files.exists(legacyJson)) return 0;
+
+        // streamed, so a long legacy history is never held in memory
+        int[] n = { 0 };
+        Path tmp = log.resolveSibling(log.getFileName().toString() + ".tmp");
+        boolean ok;
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            ok = WealthJson.readEntries(legacyJson, (timestamp, bankValue, bankCoins, invCoins) -> {
+                out.write(record(timestamp, bankValue, bankCoins, invCoins));
+                n[0]++;
+            });
+        }
+        if (!ok)
+        {
+            Files.deleteIfExists(tmp);
+            return 0;
+        }
+        try { Files.move(tmp, log, StandardCopyOption.ATOMIC_MOVE); }
+        catch (Exception ignore) { Files.move(tmp, log); }
+        return n[0];
+    }
+}
@@ -0,0 +1,245 @@
+package com.craig.bankwealth;
+
+import com.craig.bankwealth.WealthManifestReader.Entry;
+import com.craig.shared.SnapshotWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Farm-wide index of the latest entry per RSN ({@code bank-wealth/_manifest.bin}), so listing
+ * every account is one small read instead of a parse of every history file.
+ *
+ * Little-endian layout, see {@link WealthManifestReader} for the reading side and rebuild:
+ * <pre>
+ *  header (32 bytes)
+ *   0  int   magic 'BWMF'
+ *   4  int   format version (1)
+ *   8  int   record size (96)
+ *  12  int   record count
+ *  records (96 bytes each, from offset 32)
+ *   0  int   CRC-32 of bytes 4..95
+ *   4  int   history kind: 0 = &lt;rsn&gt;.json, 1 = &lt;rsn&gt;.jsonl
+ *   8  long  timestamp, epoch millis
+ *  16  long  bank_ge_value
+ *  24  long  bank_coins
+ *  32  long  inventory_coins
+ *  40  long  history file length after this entry; new entries start there
+ *  48  int   RSN length in bytes
+ *  52  byte[44] RSN as used in file names, UTF-8
+ * </pre>
+ * Every client JVM on the host merges its records in under an exclusive lock on
+ * {@code _manifest.lock} and replaces the manifest by rename, as {@code MembershipLedger}
+ * does; nothing ever locks the manifest itself, so readers (the agent included) need no lock
+ * and one read is always a whole manifest. A missing or unreadable manifest is built from the
+ * existing history.
+ *
+ * The client thread only calls {@link #enqueue}; {@link #flush} runs on the writer thread.
+ */
+final class WealthManifest
+{
+    static final String FILE = "_manifest.bin";
+    static final String LOCK = "_manifest.lock";
+
+    static final int MAGIC = 0x464D5742; // "BWMF" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 32;
+    static final int RECORD = 96;
+    static final int OFF_COUNT = 12;
+
+    static final int KIND_JSON = 0;
+    static final int KIND_JSONL = 1;
+
+    static final int OFF_CRC = 0;
+    static final int OFF_KIND = 4;
+    static final int OFF_TS = 8;
+    static final int OFF_BANK = 16;
+    static final int OFF_BANK_COINS = 24;
+    static final int OFF_INV_COINS = 32;
+    static final int OFF_HISTORY_LEN = 40;
+    static final int OFF_NAME_LEN = 48;
+    static final int OFF_NAME = 52;
+    static final int NAME_MAX = RECORD - OFF_NAME;
+
+    /** The latest values queued for one RSN; its history length is read when it is written. */
+    private static final class Update
+    {
+        final String rsn;
+        final long timestampMs, bankValue, bankCoins, invCoins;
+        final Path history;
+        long writtenLength = -1; // writer thread only
+
+        Update(String rsn, long timestampMs, long bankValue, long bankCoins, long invCoins, Path history)
+        {
+            this.rsn = rsn;
+            this.timestampMs = timestampMs;
+            this.bankValue = bankValue;
+            this.bankCoins = bankCoins;
+            this.invCoins = invCoins;
+            this.history = history;
+        }
+    }
+
+    private final Path dir;
+    private final Path file;
+    private final Map<String, Update> latest = new HashMap<>(); // guarded by itself
+
+    WealthManifest(Path dir)
+    {
+        this.dir = dir;
+        this.file = dir.resolve(FILE);
+    }
+
+    Path file()
+    {
+        return file;
+    }
+
+    /** Queues the entry just handed to {@code history} for {@code rsn} (file-safe); a later one replaces it. */
+    void enqueue(String rsn, long timestampMs, long bankValue, long bankCoins, long invCoins, Path history)
+    {
+        synchronized (latest)
+        {
+            latest.put(rsn, new Update(rsn, timestampMs, bankValue, bankCoins, invCoins, history));
+        }
+    }
+
+    /**
+     * Writes every account whose values are new, or whose history has grown, since it was last
+     * written. Queued behind each history write, so a record whose values ran ahead of their
+     * history write is brought up to the full length by the task queued behind that write; a
+     * failed write is retried by the next flush. Writer thread only.
+     */
+    void flush(boolean fsync) throws IOException
+    {
+        List<Update> candidates;
+        synchronized (latest)
+        {
+            candidates = new ArrayList<>(latest.values());
+        }
+
+        List<Update> due = new ArrayList<>();
+        List<Entry> records = new ArrayList<>();
+        for (Update u : candidates)
+        {
+            long len = Files.exists(u.history) ? Files.size(u.history) : 0;
+            if (len == u.writtenLength) continue;
+            int kind = u.history.getFileName().toString().endsWith(WealthLog.EXT) ? KIND_JSONL : KIND_JSON;
+            due.add(u);
+            records.add(new Entry(u.rsn, kind, u.timestampMs, u.bankValue, u.bankCoins, u.invCoins, len));
+        }
+        if (due.isEmpty()) return;
+
+        Files.createDirectories(dir);
+        try (FileChannel lockCh = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            FileLock lock = lockCh.lock();
+            try
+            {
+                List<Entry> entries = load();
+                for (Entry e : records)
+                {
+                    int i = indexOf(entries, e.rsn);
+                    if (i < 0) entries.add(e);
+                    // another client may have logged this account in more recently
+                    else if (entries.get(i).timestamp <= e.timestamp) entries.set(i, e);
+                }
+                SnapshotWriter.writeAtomically(file, encode(entries), fsync);
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        for (int i = 0; i < due.size(); i++) due.get(i).writtenLength = records.get(i).historyLength;
+    }
+
+    /** The current records; rebuilt from the history if there is no readable manifest. */
+    private List<Entry> load() throws IOException
+    {
+        if (Files.exists(file))
+        {
+            try
+            {
+                List<Entry> entries = decodeAll(Files.readAllBytes(file));
+                if (entries != null) return entries;
+            }
+            catch (IOException ignored) {} // unreadable: rebuilt below
+        }
+        return WealthManifestReader.scan(dir);
+    }
+
+    private static int indexOf(List<Entry> entries, String rsn)
+    {
+        for (int i = 0; i < entries.size(); i++) if (entries.get(i).rsn.equals(rsn)) return i;
+        return -1;
+    }
+
+    /** Every intact record, or null if {@code bytes} is not a manifest this version reads. */
+    static List<Entry> decodeAll(byte[] bytes)
+    {
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER || b.getInt(0) != MAGIC || b.getInt(4) != FORMAT || b.getInt(8) != RECORD) return null;
+
+        int count = Math.max(0, Math.min(b.getInt(OFF_COUNT), (bytes.length - HEADER) / RECORD));
+        List<Entry> out = new ArrayList<>(count);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < count; i++)
+        {
+            Entry e = decode(b, HEADER + i * RECORD, crc);
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+
+    static byte[] encode(List<Entry> entries)
+    {
+        ByteBuffer b = ByteBuffer.allocate(HEADER + entries.size() * RECORD).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, RECORD).putInt(OFF_COUNT, entries.size());
+        CRC32 c = new CRC32();
+        for (int i = 0; i < entries.size(); i++) put(b, HEADER + i * RECORD, entries.get(i), c);
+        return b.array();
+    }
+
+    private static void put(ByteBuffer b, int off, Entry e, CRC32 c)
+    {
+        byte[] name = e.rsn.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(name.length, NAME_MAX);
+
+        b.putInt(off + OFF_KIND, e.kind);
+        b.putLong(off + OFF_TS, e.timestamp);
+        b.putLong(off + OFF_BANK, e.bankValue);
+        b.putLong(off + OFF_BANK_COINS, e.bankCoins);
+        b.putLong(off + OFF_INV_COINS, e.invCoins);
+        b.putLong(off + OFF_HISTORY_LEN, e.historyLength);
+        b.putInt(off + OFF_NAME_LEN, len);
+        b.position(off + OFF_NAME);
+        b.put(name, 0, len);
+
+        c.reset();
+        c.update(b.array(), off + 4, RECORD - 4);
+        b.putInt(off + OFF_CRC, (int) c.getValue());
+    }
+
+    /** Null if the record is corrupt or empty. */
+    static Entry decode(ByteBuffer r, int off, CRC32 c)
+    {
+        c.reset();
+        c.update(r.array(), off + 4, RECORD - 4);
+        if ((int) c.getValue() != r.getInt(off + OFF_CRC)) return null;
+        int len = Math.max(0, Math.min(NAME_MAX, r.getInt(off + OFF_NAME_LEN)));
+        if (len == 0) return null;
+        return new Entry(new String(r.array(), off + OFF_NAME, len, StandardCharsets.UTF_8),
+                r.getInt(off + OFF_KIND), r.getLong(off + OFF_TS), r.getLong(off + OFF_BANK),
+                r.getLong(off + OFF_BANK_COINS), r.getLong(off + OFF_INV_COINS), r.getLong(off + OFF_HISTORY_LEN));
+    }
+}
@@ -0,0 +1,241 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import com.google.gson.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Lists every account's latest entry from {@code _manifest.bin} (see {@link WealthManifest})
+ * with one read of the whole file, and rebuilds the manifest from the history files.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.bankwealth.WealthManifestReader [dir]
+ * java -cp bank-wealth.jar com.craig.bankwealth.WealthManifestReader --rebuild [dir]
+ * </pre>
+ * {@code dir} defaults to {@code ~/.runelite/bank-wealth}.
+ */
+public final class WealthManifestReader
+{
+    /** Latest values for one RSN. */
+    public static final class Entry
+    {
+        public final String rsn;
+        public final int kind;
+        public final long timestamp;
+        public final long bankValue;
+        public final long bankCoins;
+        public final long invCoins;
+        public final long historyLength;
+
+        Entry(String rsn, int kind, long timestamp, long bankValue, long bankCoins, long invCoins, long historyLength)
+        {
+            this.rsn = rsn;
+            this.kind = kind;
+            this.timestamp = timestamp;
+            this.bankValue = bankValue;
+            this.bankCoins = bankCoins;
+            this.invCoins = invCoins;
+            this.historyLength = historyLength;
+        }
+
+        @Override
+        public String toString()
+        {
+            return rsn + "," + timestamp + "," + bankValue + "," + bankCoins + "," + invCoins + "," + historyLength;
+        }
+    }
+
+    private static final int TAIL_BYTES = 4096;
+
+    private WealthManifestReader() {}
+
+    /**
+     * Every intact record, or an empty list if there is no manifest yet. The manifest is only
+     * ever replaced by rename, never written in place, so one read needs no lock and no retry.
+     */
+    public static List<Entry> read(Path file) throws IOException
+    {
+        if (!Files.exists(file)) return new ArrayList<>();
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < WealthManifest.HEADER) return new ArrayList<>();
+        List<Entry> entries = WealthManifest.decodeAll(bytes);
+        if (entries == null)
+        {
+            ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            if (b.getInt(0) != WealthManifest.MAGIC) throw new IOException("not a wealth manifest");
+            throw new IOException("unsupported wealth manifest format " + b.getInt(4));
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces the manifest in {@code dir} with one built from the history files, under the
+     * same lock clients merge under; their next update merges into the rebuilt one.
+     */
+    public static List<Entry> rebuild(Path dir) throws IOException
+    {
+        List<Entry> entries;
+        try (FileChannel lockCh = FileChannel.open(dir.resolve(WealthManifest.LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            FileLock lock = lockCh.lock();
+            try
+            {
+                entries = scan(dir);
+                SnapshotWriter.writeAtomically(dir.resolve(WealthManifest.FILE), WealthManifest.encode(entries), true);
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        return entries;
+    }
+
+    /** The last entry of every history file in {@code dir}, preferring {@code <rsn>.jsonl} over {@code <rsn>.json}. */
+    static List<Entry> scan(Path dir) throws IOException
+    {
+        TreeMap<String, Path> histories = new TreeMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir))
+        {
+            for (Path p : ds)
+            {
+                String name = p.getFileName().toString();
+                if (name.startsWith("_") || !Files.isRegularFile(p)) continue;
+                if (name.endsWith(WealthLog.EXT))
+                {
+                    histories.put(name.substring(0, name.length() - WealthLog.EXT.length()), p);
+                }
+                else if (name.endsWith(".json"))
+                {
+                    histories.putIfAbsent(name.substring(0, name.length() - ".json".length()), p);
+                }
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (String rsn : histories.keySet())
+        {
+            Path p = histories.get(rsn);
+            boolean log = p.getFileName().toString().endsWith(WealthLog.EXT);
+            JsonObject last = log ? lastLogRecord(p) : lastJsonEntry(p);
+            if (last == null) continue;
+            try
+            {
+                long ts = LocalDateTime.parse(last.get("timestamp").getAsString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                entries.add(new Entry(rsn, log ? WealthManifest.KIND_JSONL : WealthManifest.KIND_JSON, ts,
+                        last.get("bank_ge_value").getAsLong(), last.get("bank_coins").getAsLong(),
+                        last.get("inventory_coins").getAsLong(), Files.size(p)));
+            }
+            catch (RuntimeException ignored) {} // malformed last entry
+        }
+        return entries;
+    }
+
+    /** Last well-formed line, looking at the tail first and the whole log only if that has none. */
+    private static JsonObject lastLogRecord(Path log) throws IOException
+    {
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.READ))
+        {
+            long size = ch.size();
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, TAIL_BYTES));
+            while (tail.hasRemaining() && ch.read(tail, size - tail.capacity() + tail.position()) > 0) { }
+            String[] lines = new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8).split("\n");
+            // the first line of a partial tail is cut, unless the tail is the whole file
+            for (int i = lines.length - 1; i >= (size > TAIL_BYTES ? 1 : 0); i--)
+            {
+                JsonObject o = parse(lines[i]);
+                if (o != null) return o;
+            }
+            if (size <= TAIL_BYTES) return null;
+        }
+
+        JsonObject last = null;
+        try (BufferedReader in = Files.newBufferedReader(log, StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                JsonObject o = parse(line);
+                if (o != null) last = o;
+            }
+        }
+        return last;
+    }
+
+    private static JsonObject lastJsonEntry(Path json) throws IOException
+    {
+        try (BufferedReader r = Files.newBufferedReader(json, StandardCharsets.UTF_8))
+        {
+            JsonElement je = new JsonParser().parse(r); // Gson 2.8.5 compatible
+            if (je == null || !je.isJsonObject()) return null;
+            JsonObject root = je.getAsJsonObject();
+            if (!root.has("entries") || !root.get("entries").isJsonArray()) return null;
+            JsonArray entries = root.getAsJsonArray("entries");
+            for (int i = entries.size() - 1; i >= 0; i--)
+            {
+                if (entries.get(i).isJsonObject() && entries.get(i).getAsJsonObject().has("timestamp"))
+                {
+                    return entries.get(i).getAsJsonObject();
+                }
+            }
+            return null;
+        }
+        catch (JsonParseException ex)
+        {
+            return null;
+        }
+    }
+
+    private static JsonObject parse(String line)
+    {
+        line = line.trim();
+        if (line.isEmpty() || line.charAt(0) != '{' || line.charAt(line.length() - 1) != '}') return null;
+        try
+        {
+            JsonElement je = new JsonParser().parse(line);
+            return je.isJsonObject() && je.getAsJsonObject().has("timestamp") ? je.getAsJsonObject() : null;
+        }
+        catch (JsonParseException ex)
+        {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        boolean rebuild = args.length > 0 && args[0].equals("--rebuild");
+        int rest = rebuild ? 1 : 0;
+        if (args.length > rest + 1)
+        {
+            System.err.println("usage: WealthManifestReader [--rebuild] [dir]");
+            System.exit(2);
+        }
+        Path dir = args.length > rest
+                ? Paths.get(args[rest])
+                : Paths.get(System.getProperty("user.home"), ".runelite", "bank-wealth");
+
+        if (rebuild)
+        {
+            List<Entry> entries = rebuild(dir);
+            System.out.println("rebuilt " + dir.resolve(WealthManifest.FILE) + ": " + entries.size() + " accounts");
+            return;
+        }
+
+        System.out.println("rsn,timestamp,bank_ge_value,bank_coins,inventory_coins,history_length");
+        for (Entry e : read(dir.resolve(WealthManifest.FILE))) System.out.println(e);
+    }
+}
@@ -0,0 +1,140 @@
+package com.craig.bankwealth;
+
+import java.util.Arrays;
+
+/**
+ * Live gp/hour over the last 5, 15 and 60 minutes, updated in O(1) per valuation.
+ *
+ * Every valuation contributes the change in wealth since the previous one. Each window keeps
+ * those changes in a ring of {@link #BUCKETS} time buckets plus their running sum; moving the
+ * window forward clears the buckets that fell out of it and subtracts them from the sum, so the
+ * rate is the sum scaled to an hour. Windows are exact to one bucket (1/60 of the window).
+ *
+ * Bank value only counts while the live bank is seen: a bank valued from the cache while closed
+ * would turn price refreshes into profit. Inventory coins count always, so coins made with the
+ * bank closed show up at once, and a deposit nets out (inventory -x now, bank +x when it is next
+ * seen).
+ *
+ * Client thread only.
+ */
+final class WealthRate
+{
+    static final long[] WINDOWS_MS = { 5 * 60_000L, 15 * 60_000L, 60 * 60_000L };
+    static final int BUCKETS = 60;
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    private final long[][] buckets = new long[WINDOWS_MS.length][BUCKETS];
+    private final long[] width = new long[WINDOWS_MS.length];
+    private final long[] head = new long[WINDOWS_MS.length];   // absolute index of the newest bucket
+    private final long[] sum = new long[WINDOWS_MS.length];
+
+    private boolean started;
+    private long startMs;
+    private boolean haveBank;
+    private long lastBank;
+    private long lastInvCoins;
+
+    WealthRate()
+    {
+        for (int w = 0; w < WINDOWS_MS.length; w++) width[w] = WINDOWS_MS[w] / BUCKETS;
+    }
+
+    /** Forgets everything, e.g. on an account switch. */
+    void reset()
+    {
+        for (int w = 0; w < WINDOWS_MS.length; w++)
+        {
+            Arrays.fill(buckets[w], 0);
+            sum[w] = 0;
+        }
+        started = false;
+        haveBank = false;
+    }
+
+    /**
+     * Adds one valuation. {@code bankLive} is false while {@code bankValue} comes from the cache
+     * (or is unknown); it is then left out.
+     */
+    void update(long nowMs, long bankValue, boolean bankLive, long invCoins)
+    {
+        if (!started)
+        {
+            started = true;
+            startMs = nowMs;
+            for (int w = 0; w < WINDOWS_MS.length; w++) head[w] = nowMs / width[w];
+            haveBank = bankLive;
+            lastBank = bankValue;
+            lastInvCoins = invCoins;
+            return;
+        }
+
+        long delta = invCoins - lastInvCoins;
+        lastInvCoins = invCoins;
+        if (bankLive)
+        {
+            if (haveBank) delta += bankValue - lastBank;
+            haveBank = true;
+            lastBank = bankValue;
+        }
+        if (delta == 0) return;
+
+        for (int w = 0; w < WINDOWS_MS.length; w++)
+        {
+            advance(w, nowMs);
+            buckets[w][(int) (head[w] % BUCKETS)] += delta;
+            sum[w] += delta;
+        }
+    }
+
+    /** gp/hour over window {@code w} (index into {@link #WINDOWS_MS}); 0 until a sample arrives. */
+    long perHour(int w, long nowMs)
+    {
+        if (!started) return 0;
+        advance(w, nowMs);
+        // scaled over the time the buckets actually cover: the older buckets whole, the newest so
+        // far, and no further back than the first sample; at least one bucket
+        long span = (BUCKETS - 1) * width[w] + Math.floorMod(nowMs, width[w]);
+        long covered = Math.max(width[w], Math.min(span, nowMs - startMs));
+        return (long) ((double) sum[w] * HOUR_MS / covered);
+    }
+
+    /** All windows at {@code nowMs}, in {@link #WINDOWS_MS} order. */
+    long[] perHour(long nowMs)
+    {
+        long[] out = new long[WINDOWS_MS.length];
+        perHour(nowMs, out);
+        return out;
+    }
+
+    void perHour(long nowMs, long[] out)
+    {
+        for (int w = 0; w < out.length; w++) out[w] = perHour(w, nowMs);
+    }
+
+    /** History record field for window {@code w}, e.g. {@code gp_per_hour_5m}. */
+    static String fieldName(int w)
+    {
+        return "gp_per_hour_" + WINDOWS_MS[w] / 60_000 + "m";
+    }
+
+    boolean started()
+    {
+        return started;
+    }
+
+    private void advance(int w, long nowMs)
+    {
+        long target = nowMs / width[w];
+        if (target <= head[w]) return; // same bucket, or the clock stepped back
+        long steps = Math.min(target - head[w], BUCKETS);
+        long[] b = buckets[w];
+        for (long s = 1; s <= steps; s++)
+        {
+            int i = (int) ((head[w] + s) % BUCKETS);
+            sum[w] -= b[i];
+            b[i] = 0;
+        }
+        head[w] = target;
+    }
+}
@@ -0,0 +1,140 @@
+package com.craig.bankwealth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rollup rings written by {@link WealthRollups}. Long-range charts should call
+ * {@link #forRange} so they get the finest tier that still fits their point budget,
+ * rather than loading raw history; the agent's {@code getBankWealthHistory} picks tiers the
+ * same way for {@code /api/history}.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.bankwealth.WealthRollupReader &lt;dir&gt; &lt;rsn&gt; &lt;fromEpochMs&gt; &lt;toEpochMs&gt; [maxPoints]
+ * </pre>
+ */
+public final class WealthRollupReader
+{
+    public static final class Bucket
+    {
+        public final long start;
+        public final long samples;
+        public final long bankMin, bankMax, bankLast, bankAvg;
+        public final long coinsMin, coinsMax, coinsLast, coinsAvg;
+
+        Bucket(ByteBuffer b)
+        {
+            start     = b.getLong(0);
+            samples   = Math.max(1, b.getLong(8));
+            bankMin   = b.getLong(16);
+            bankMax   = b.getLong(24);
+            bankLast  = b.getLong(32);
+            bankAvg   = b.getLong(40) / samples;
+            coinsMin  = b.getLong(48);
+            coinsMax  = b.getLong(56);
+            coinsLast = b.getLong(64);
+            coinsAvg  = b.getLong(72) / samples;
+        }
+
+        @Override
+        public String toString()
+        {
+            return start + "," + samples + "," + bankMin + "," + bankMax + "," + bankLast + "," + bankAvg
+                    + "," + coinsMin + "," + coinsMax + "," + coinsLast + "," + coinsAvg;
+        }
+    }
+
+    private WealthRollupReader() {}
+
+    /** Buckets of one tier with {@code from <= start <= to}, oldest first. */
+    public static List<Bucket> read(Path dir, String rsn, String tier, long from, long to) throws IOException
+    {
+        Path file = WealthRollups.file(dir, rsn, tierOf(tier));
+        List<Bucket> out = new ArrayList<>();
+        if (!Files.exists(file)) return out;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer h = ByteBuffer.allocate(WealthRollups.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (ch.read(h, 0) < WealthRollups.HEADER || h.getInt(0) != WealthRollups.MAGIC) return out;
+
+            long cap   = h.getLong(WealthRollups.OFF_CAPACITY);
+            long head  = h.getLong(WealthRollups.OFF_HEAD);
+            long count = Math.min(h.getLong(WealthRollups.OFF_COUNT), cap);
+            if (cap <= 0 || count <= 0) return out;
+
+            // logical index 0 is the oldest bucket; starts are sorted, so binary search for 'from'
+            ByteBuffer b = ByteBuffer.allocate(WealthRollups.RECORD).order(ByteOrder.LITTLE_ENDIAN);
+            long lo = 0, hi = count;
+            while (lo < hi)
+            {
+                long mid = (lo + hi) >>> 1;
+                if (readAt(ch, b, slot(head, count, cap, mid)) < from) lo = mid + 1;
+                else hi = mid;
+            }
+
+            for (long i = lo; i < count; i++)
+            {
+                if (readAt(ch, b, slot(head, count, cap, i)) > to) break;
+                out.add(new Bucket(b));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Buckets for {@code [from, to]} from the finest tier whose resolution keeps the result
+     * within {@code maxPoints}; raw is only used when the range is short enough.
+     */
+    public static List<Bucket> forRange(Path dir, String rsn, long from, long to, int maxPoints) throws IOException
+    {
+        long span = Math.max(1, to - from);
+        for (WealthRollups.Tier t : WealthRollups.Tier.values())
+        {
+            if (span / t.spacingMs <= maxPoints) return read(dir, rsn, t.suffix, from, to);
+        }
+        return read(dir, rsn, WealthRollups.Tier.DAY.suffix, from, to);
+    }
+
+    private static WealthRollups.Tier tierOf(String suffix)
+    {
+        for (WealthRollups.Tier t : WealthRollups.Tier.values())
+        {
+            if (t.suffix.equals(suffix)) return t;
+        }
+        throw new IllegalArgumentException("unknown tier " + suffix + " (raw, 1m, 1h, 1d)");
+    }
+
+    private static long slot(long head, long count, long cap, long index)
+    {
+        return Math.floorMod(head - count + index, cap);
+    }
+
+    private static long readAt(FileChannel ch, ByteBuffer b, long slot) throws IOException
+    {
+        b.clear();
+        long pos = WealthRollups.HEADER + slot * WealthRollups.RECORD;
+        while (b.hasRemaining() && ch.read(b, pos + b.position()) > 0) { }
+        if (b.hasRemaining()) throw new IOException("truncated rollup record at slot " + slot);
+        return b.getLong(0);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 4)
+        {
+            System.err.println("usage: WealthRollupReader <dir> <rsn> <fromEpochMs> <toEpochMs> [maxPoints]");
+            System.exit(2);
+        }
+        int max = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+        for (Bucket b : forRange(Paths.get(args[0]), args[1], Long.parseLong(args[2]), Long.parseLong(args[3]), max))
+        {
+            System.out.println(b);
+        }
+    }
+}
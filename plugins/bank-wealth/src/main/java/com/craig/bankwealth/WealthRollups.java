@@ -0,0 +1,337 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Downsampled wealth history at raw, 1-minute, 1-hour and 1-day resolution.
+ *
+ * Each tier is a fixed-capacity ring file ({@code <rsn>.<tier>.wr}); capacity comes from the
+ * configured retention, so old buckets age out by being overwritten and disk use never grows
+ * past it. Every bucket keeps min/max/last/sum/count of bank value and of total coins
+ * (bank + inventory). The open bucket of each coarse tier is rewritten in place, so a
+ * reader always sees the current minute/hour/day too.
+ *
+ * Little-endian layout, see {@link WealthRollupReader}:
+ * <pre>
+ *  header (64 bytes)
+ *   0  int   magic 'BWRU'
+ *   4  int   format version (1)
+ *   8  int   record size (80)
+ *  16  long  bucket width in ms (0 for raw)
+ *  24  long  capacity in records
+ *  32  long  next slot to write
+ *  40  long  records in use
+ *  record (80 bytes)
+ *   0  long  bucket start (raw: sample time), epoch ms
+ *   8  long  samples in bucket
+ *  16  long  bank min, 24 bank max, 32 bank last, 40 bank sum
+ *  48  long  coins min, 56 coins max, 64 coins last, 72 coins sum
+ * </pre>
+ * Writer thread only, apart from {@link #enqueue}.
+ */
+final class WealthRollups implements AutoCloseable
+{
+    enum Tier
+    {
+        RAW("raw", 0L, 10_000L),
+        MINUTE("1m", 60_000L, 60_000L),
+        HOUR("1h", 3_600_000L, 3_600_000L),
+        DAY("1d", 86_400_000L, 86_400_000L);
+
+        final String suffix;
+        final long widthMs;
+        final long spacingMs; // expected gap between records, for sizing the ring
+
+        Tier(String suffix, long widthMs, long spacingMs)
+        {
+            this.suffix = suffix;
+            this.widthMs = widthMs;
+            this.spacingMs = spacingMs;
+        }
+    }
+
+    static final String EXT = ".wr";
+
+    static final int MAGIC = 0x55525742; // "BWRU" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 64;
+    static final int RECORD = 80;
+
+    static final int OFF_WIDTH = 16;
+    static final int OFF_CAPACITY = 24;
+    static final int OFF_HEAD = 32;
+    static final int OFF_COUNT = 40;
+
+    private static final long MAX_CAPACITY = 1_000_000L;
+
+    private final Path dir;
+    private final String rsn;
+    private final Ring[] rings = new Ring[Tier.values().length];
+
+    // queued samples, 3 longs each; guarded by this
+    private long[] pending = new long[3 * 8];
+    private int pendingCount;
+
+    WealthRollups(Path dir, String rsn)
+    {
+        this.dir = dir;
+        this.rsn = rsn;
+    }
+
+    String rsn()
+    {
+        return rsn;
+    }
+
+    /** Names this account's rollup writes in write events. */
+    @Override
+    public String toString()
+    {
+        return "rollups:" + rsn;
+    }
+
+    static Path file(Path dir, String rsn, Tier tier)
+    {
+        return dir.resolve(rsn + "." + tier.suffix + EXT);
+    }
+
+    /** Records kept for {@code retentionDays} of a tier, at least one. */
+    static long capacity(Tier tier, int retentionDays)
+    {
+        long c = Math.max(1, retentionDays) * 86_400_000L / tier.spacingMs;
+        return Math.max(1, Math.min(MAX_CAPACITY, c));
+    }
+
+    /** Queues a sample; any thread. */
+    synchronized void enqueue(long timestampMs, long bankValue, long coins)
+    {
+        if ((pendingCount + 1) * 3 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+        int o = pendingCount++ * 3;
+        pending[o] = timestampMs;
+        pending[o + 1] = bankValue;
+        pending[o + 2] = coins;
+    }
+
+    /**
+     * Folds queued samples into every tier. {@code retentionDays} is indexed by tier
+     * ordinal; a changed retention resizes that tier's ring, keeping the newest buckets.
+     */
+    void flush(int[] retentionDays, boolean fsync) throws IOException
+    {
+        long[] batch;
+        int n;
+        synchronized (this)
+        {
+            if (pendingCount == 0) return;
+            n = pendingCount;
+            batch = Arrays.copyOf(pending, n * 3);
+            pendingCount = 0;
+        }
+
+        for (Tier t : Tier.values())
+        {
+            long cap = capacity(t, retentionDays[t.ordinal()]);
+            Ring r = rings[t.ordinal()];
+            if (r == null || r.capacity != cap)
+            {
+                if (r != null) r.close();
+                r = rings[t.ordinal()] = Ring.open(file(dir, rsn, t), t.widthMs, cap);
+            }
+
+            for (int i = 0; i < n; i++)
+            {
+                int o = i * 3;
+                r.add(batch[o], batch[o + 1], batch[o + 2]);
+            }
+            if (fsync) r.ch.force(false);
+        }
+        SnapshotWriter.recordBytes((long) n * RECORD * rings.length);
+    }
+
+    @Override
+    public void close()
+    {
+        for (int i = 0; i < rings.length; i++)
+        {
+            if (rings[i] != null) rings[i].close();
+            rings[i] = null;
+        }
+    }
+
+    private static final class Ring
+    {
+        final FileChannel ch;
+        final long width;
+        final long capacity;
+        long head;
+        long count;
+
+        // newest record, mirrored in memory so the open bucket can be merged without a read
+        final long[] last = new long[10];
+
+        private final ByteBuffer hdr = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer rec = ByteBuffer.allocate(RECORD).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Ring(FileChannel ch, long width, long capacity)
+        {
+            this.ch = ch;
+            this.width = width;
+            this.capacity = capacity;
+        }
+
+        static Ring open(Path file, long width, long capacity) throws IOException
+        {
+            Files.createDirectories(file.getParent());
+
+            long[][] keep = null;
+            if (Files.exists(file))
+            {
+                try (FileChannel old = FileChannel.open(file, StandardOpenOption.READ))
+                {
+                    keep = readExisting(old, width, capacity);
+                }
+            }
+
+            Ring r;
+            if (keep == null)
+            {
+                // reuse the file as-is
+                FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                r = new Ring(ch, width, capacity);
+                if (ch.size() >= HEADER) r.loadHeader();
+                else r.writeHeader();
+            }
+            else
+            {
+                // unrecognised file, or retention changed: rewrite with the newest records that fit
+                Path tmp = file.resolveSibling(file.getFileName().toString() + ".tmp");
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+                {
+                    Ring w = new Ring(ch, width, capacity);
+                    for (long[] k : keep) w.append(k);
+                    w.writeHeader();
+                }
+                try { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+                catch (Exception ignore) { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); }
+
+                r = new Ring(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), width, capacity);
+                r.loadHeader();
+            }
+            return r;
+        }
+
+        /** Null if the file can be used in place, otherwise the records to carry over (oldest first). */
+        private static long[][] readExisting(FileChannel ch, long width, long capacity) throws IOException
+        {
+            ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (ch.read(h, 0) < HEADER
+                    || h.getInt(0) != MAGIC || h.getInt(4) != FORMAT || h.getInt(8) != RECORD
+                    || h.getLong(OFF_WIDTH) != width)
+            {
+                return new long[0][];
+            }
+
+            long cap = h.getLong(OFF_CAPACITY);
+            if (cap == capacity) return null;
+
+            long head = h.getLong(OFF_HEAD);
+            long count = Math.min(h.getLong(OFF_COUNT), cap);
+            long take = Math.min(count, capacity);
+            long[][] out = new long[(int) take][];
+            ByteBuffer b = ByteBuffer.allocate(RECORD).order(ByteOrder.LITTLE_ENDIAN);
+            for (long i = 0; i < take; i++)
+            {
+                long slot = Math.floorMod(head - take + i, cap);
+                b.clear();
+                ch.read(b, HEADER + slot * RECORD);
+                long[] r = new long[10];
+                for (int f = 0; f < 10; f++) r[f] = b.getLong(f * 8);
+                out[(int) i] = r;
+            }
+            return out;
+        }
+
+        void add(long ts, long bank, long coins) throws IOException
+        {
+            long start = width == 0 ? ts : Math.floorDiv(ts, width) * width;
+
+            // a clock step back must not reorder the ring
+            if (count > 0 && start < last[0]) start = last[0];
+
+            if (count > 0 && width != 0 && last[0] == start)
+            {
+                last[1]++;
+                last[2] = Math.min(last[2], bank);
+                last[3] = Math.max(last[3], bank);
+                last[4] = bank;
+                last[5] += bank;
+                last[6] = Math.min(last[6], coins);
+                last[7] = Math.max(last[7], coins);
+                last[8] = coins;
+                last[9] += coins;
+                writeRecord(Math.floorMod(head - 1, capacity), last);
+                return;
+            }
+
+            last[0] = start;
+            last[1] = 1;
+            last[2] = last[3] = last[4] = last[5] = bank;
+            last[6] = last[7] = last[8] = last[9] = coins;
+            append(last);
+            writeHeader();
+        }
+
+        private void append(long[] r) throws IOException
+        {
+            writeRecord(head, r);
+            head = (head + 1) % capacity;
+            count = Math.min(count + 1, capacity);
+            if (r != last) System.arraycopy(r, 0, last, 0, last.length);
+        }
+
+        private void writeRecord(long slot, long[] r) throws IOException
+        {
+            rec.clear();
+            for (long v : r) rec.putLong(v);
+            rec.flip();
+            long pos = HEADER + slot * RECORD;
+            while (rec.hasRemaining()) pos += ch.write(rec, pos);
+        }
+
+        private void writeHeader() throws IOException
+        {
+            hdr.clear();
+            hdr.putInt(MAGIC).putInt(FORMAT).putInt(RECORD).putInt(0);
+            hdr.putLong(width).putLong(capacity).putLong(head).putLong(count);
+            hdr.putLong(0L).putLong(0L);
+            hdr.flip();
+            long pos = 0;
+            while (hdr.hasRemaining()) pos += ch.write(hdr, pos);
+        }
+
+        private void loadHeader() throws IOException
+        {
+            hdr.clear();
+            ch.read(hdr, 0);
+            head = Math.floorMod(hdr.getLong(OFF_HEAD), capacity);
+            count = Math.max(0, Math.min(hdr.getLong(OFF_COUNT), capacity));
+            if (count > 0)
+            {
+                rec.clear();
+                ch.read(rec, HEADER + Math.floorMod(head - 1, capacity) * RECORD);
+                for (int f = 0; f < 10; f++) last[f] = rec.getLong(f * 8);
+            }
+        }
+
+        void close()
+        {
+            try { ch.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.craig.bankwealth;
+
+import com.craig.shared.SnapshotWriter;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped, fixed-record wealth time series ({@code <rsn>.wts}).
+ *
+ * Little-endian layout, see {@link WealthSeriesReader} for the reading side:
+ * <pre>
+ *  header (64 bytes)
+ *   0  int   magic 'BWTS'
+ *   4  int   format version (1)
+ *   8  int   record size (32)
+ *  16  long  record count
+ *  24  long  byte offset of the latest record, -1 when empty
+ *  records (32 bytes each, from offset 64, timestamps non-decreasing)
+ *   0  long  timestamp, epoch millis
+ *   8  long  bank_ge_value
+ *  16  long  bank_coins
+ *  24  long  inventory_coins
+ * </pre>
+ * A record is fully written before the header is advanced, so a reader never sees a
+ * count that covers a half-written record (on the same host).
+ *
+ * The client thread only calls {@link #enqueue}; the mapping is touched by the writer thread.
+ */
+final class WealthSeries implements AutoCloseable
+{
+    static final String EXT = ".wts";
+
+    static final int MAGIC = 0x53545742; // "BWTS" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 64;
+    static final int RECORD = 32;
+
+    static final int OFF_MAGIC = 0;
+    static final int OFF_FORMAT = 4;
+    static final int OFF_RECORD = 8;
+    static final int OFF_COUNT = 16;
+    static final int OFF_LATEST = 24;
+
+    private static final int GROW_RECORDS = 4096; // 128 KiB per growth step
+
+    private final Path file;
+
+    // queued samples, 4 longs each; guarded by this
+    private long[] pending = new long[4 * 8];
+    private int pendingCount;
+
+    // writer thread only
+    private FileChannel ch;
+    private MappedByteBuffer map;
+    private long count;
+    private long lastTs = Long.MIN_VALUE;
+
+    WealthSeries(Path file)
+    {
+        this.file = file;
+    }
+
+    Path file()
+    {
+        return file;
+    }
+
+    /** Names this file's writes in write events. */
+    @Override
+    public String toString()
+    {
+        return file.toString();
+    }
+
+    /** Queues a sample; any thread. */
+    synchronized void enqueue(long timestampMs, long bankValue, long bankCoins, long invCoins)
+    {
+        if ((pendingCount + 1) * 4 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+        int o = pendingCount++ * 4;
+        pending[o] = timestampMs;
+        pending[o + 1] = bankValue;
+        pending[o + 2] = bankCoins;
+        pending[o + 3] = invCoins;
+    }
+
+    /** Appends all queued samples. Writer thread only. */
+    void flush(boolean fsync) throws IOException
+    {
+        long[] batch;
+        int n;
+        synchronized (this)
+        {
+            if (pendingCount == 0) return;
+            n = pendingCount;
+            batch = Arrays.copyOf(pending, n * 4);
+            pendingCount = 0;
+        }
+
+        if (map == null) open();
+        for (int i = 0; i < n; i++)
+        {
+            int o = i * 4;
+            append(batch[o], batch[o + 1], batch[o + 2], batch[o + 3]);
+        }
+        if (fsync) map.force();
+        SnapshotWriter.recordBytes((long) n * RECORD);
+    }
+
+    long count()
+    {
+        return count;
+    }
+
+    @Override
+    public void close()
+    {
+        map = null; // unmapped once collected
+        if (ch != null)
+        {
+            try { ch.close(); } catch (IOException ignored) {}
+            ch = null;
+        }
+    }
+
+    private void append(long ts, long bankValue, long bankCoins, long invCoins) throws IOException
+    {
+        // keep timestamps sorted for the readers' binary search, even if the clock steps back
+        if (ts < lastTs) ts = lastTs;
+
+        long off = HEADER + count * RECORD;
+        if (off + RECORD > map.capacity()) remap(off + (long) GROW_RECORDS * RECORD);
+
+        int o = (int) off;
+        map.putLong(o, ts);
+        map.putLong(o + 8, bankValue);
+        map.putLong(o + 16, bankCoins);
+        map.putLong(o + 24, invCoins);
+
+        count++;
+        lastTs = ts;
+        map.putLong(OFF_LATEST, off);
+        map.putLong(OFF_COUNT, count);
+    }
+
+    private void open() throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = ch.size();
+        if (size >= HEADER)
+        {
+            remap(size);
+            if (map.getInt(OFF_MAGIC) == MAGIC && map.getInt(OFF_FORMAT) == FORMAT && map.getInt(OFF_RECORD) == RECORD)
+            {
+                // trust the count only as far as the file actually reaches
+                count = Math.max(0, Math.min(map.getLong(OFF_COUNT), (size - HEADER) / RECORD));
+                lastTs = count > 0 ? map.getLong((int) (HEADER + (count - 1) * RECORD)) : Long.MIN_VALUE;
+                return;
+            }
+        }
+
+        // new or unrecognised: start over
+        remap(HEADER + (long) GROW_RECORDS * RECORD);
+        for (int i = 0; i < HEADER; i += 8) map.putLong(i, 0L);
+        map.putInt(OFF_MAGIC, MAGIC);
+        map.putInt(OFF_FORMAT, FORMAT);
+        map.putInt(OFF_RECORD, RECORD);
+        map.putLong(OFF_LATEST, -1L);
+        map.putLong(OFF_COUNT, 0L);
+        count = 0;
+        lastTs = Long.MIN_VALUE;
+    }
+
+    private void remap(long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE) throw new IOException("wealth series too large: " + file);
+        map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
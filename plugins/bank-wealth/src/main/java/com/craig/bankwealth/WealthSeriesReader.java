@@ -0,0 +1,167 @@
+package com.craig.bankwealth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads {@code <rsn>.wts} files written by {@link WealthSeries} without parsing anything:
+ * the latest sample is one header read plus one record read, and time ranges are found by
+ * binary search on the record timestamps.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.bankwealth.WealthSeriesReader &lt;file.wts&gt; [fromEpochMs toEpochMs]
+ * </pre>
+ */
+public final class WealthSeriesReader implements AutoCloseable
+{
+    public static final class Sample
+    {
+        public final long timestamp;
+        public final long bankValue;
+        public final long bankCoins;
+        public final long invCoins;
+
+        Sample(long timestamp, long bankValue, long bankCoins, long invCoins)
+        {
+            this.timestamp = timestamp;
+            this.bankValue = bankValue;
+            this.bankCoins = bankCoins;
+            this.invCoins = invCoins;
+        }
+
+        @Override
+        public String toString()
+        {
+            return timestamp + "," + bankValue + "," + bankCoins + "," + invCoins;
+        }
+    }
+
+    private final FileChannel ch;
+    private final ByteBuffer header = ByteBuffer.allocate(WealthSeries.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer record = ByteBuffer.allocate(WealthSeries.RECORD).order(ByteOrder.LITTLE_ENDIAN);
+
+    public WealthSeriesReader(Path file) throws IOException
+    {
+        ch = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /** Number of complete records, per the header. */
+    public long count() throws IOException
+    {
+        readHeader();
+        return Math.max(0, Math.min(header.getLong(WealthSeries.OFF_COUNT),
+                (ch.size() - WealthSeries.HEADER) / WealthSeries.RECORD));
+    }
+
+    /** Newest sample, or null if the series is empty. */
+    public Sample latest() throws IOException
+    {
+        readHeader();
+        long off = header.getLong(WealthSeries.OFF_LATEST);
+        if (off < WealthSeries.HEADER || off + WealthSeries.RECORD > ch.size()) return null;
+        return readAt(off);
+    }
+
+    /** Samples with {@code from <= timestamp <= to}, oldest first. */
+    public List<Sample> range(long from, long to) throws IOException
+    {
+        long n = count();
+        List<Sample> out = new ArrayList<>();
+        for (long i = lowerBound(from, n); i < n; i++)
+        {
+            Sample s = readAt(offset(i));
+            if (s.timestamp > to) break;
+            out.add(s);
+        }
+        return out;
+    }
+
+    /**
+     * Checks the header and that timestamps never go backwards.
+     * @return null when well-formed, otherwise what is wrong
+     */
+    public String verify() throws IOException
+    {
+        readHeader();
+        if (header.getInt(WealthSeries.OFF_MAGIC) != WealthSeries.MAGIC) return "bad magic";
+        if (header.getInt(WealthSeries.OFF_FORMAT) != WealthSeries.FORMAT) return "unknown format " + header.getInt(WealthSeries.OFF_FORMAT);
+        if (header.getInt(WealthSeries.OFF_RECORD) != WealthSeries.RECORD) return "bad record size";
+
+        long n = count();
+        long latest = header.getLong(WealthSeries.OFF_LATEST);
+        if (n == 0 ? latest != -1 : latest != offset(n - 1)) return "latest offset " + latest + " does not match count " + n;
+
+        long prev = Long.MIN_VALUE;
+        for (long i = 0; i < n; i++)
+        {
+            long ts = readAt(offset(i)).timestamp;
+            if (ts < prev) return "timestamp goes backwards at record " + i;
+            prev = ts;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        ch.close();
+    }
+
+    private long lowerBound(long ts, long n) throws IOException
+    {
+        long lo = 0, hi = n;
+        while (lo < hi)
+        {
+            long mid = (lo + hi) >>> 1;
+            if (readAt(offset(mid)).timestamp < ts) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long offset(long index)
+    {
+        return WealthSeries.HEADER + index * WealthSeries.RECORD;
+    }
+
+    private void readHeader() throws IOException
+    {
+        header.clear();
+        while (header.hasRemaining() && ch.read(header, header.position()) > 0) { }
+        if (header.hasRemaining()) throw new IOException("truncated header");
+    }
+
+    private Sample readAt(long off) throws IOException
+    {
+        record.clear();
+        while (record.hasRemaining() && ch.read(record, off + record.position()) > 0) { }
+        if (record.hasRemaining()) throw new IOException("truncated record at " + off);
+        return new Sample(record.getLong(0), record.getLong(8), record.getLong(16), record.getLong(24));
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1 && args.length != 3)
+        {
+            System.err.println("usage: WealthSeriesReader <file.wts> [fromEpochMs toEpochMs]");
+            System.exit(2);
+        }
+
+        try (WealthSeriesReader r = new WealthSeriesReader(Paths.get(args[0])))
+        {
+            String problem = r.verify();
+            System.out.println("records: " + r.count() + (problem == null ? " (ok)" : " (" + problem + ")"));
+            System.out.println("latest:  " + r.latest());
+            if (args.length == 3)
+            {
+                for (Sample s : r.range(Long.parseLong(args[1]), Long.parseLong(args[2]))) System.out.println(s);
+            }
+            if (problem != null) System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.craig.bankwealth;
+
+import com.craig.bench.Fakes;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.Item;
+import net.runelite.api.ItemID;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Client-thread cost of one {@code recalcBank} call, with writes throttled out so only the
+ * valuation, coin count and panel hand-off are measured. Run with {@code -Pjmh.profilers=gc}
+ * for bytes allocated per call; the fake client's proxies account for a few dozen of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecalcBankBenchmark
+{
+    @Param({"100", "800", "1200"})
+    int slots;
+
+    private BankWealthPlugin plugin;
+    private BankValuation valuation;
+    private MethodHandle recalcBank;
+    private MethodHandle bankChanged;
+    private Item[] bank;
+    private int tick;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        Random rnd = new Random(42);
+        bank = new Item[slots];
+        bank[0] = new Item(ItemID.COINS_995, 25_000_000);
+        for (int i = 1; i < slots; i++) bank[i] = new Item(1 + rnd.nextInt(28_000), 1 + rnd.nextInt(5_000));
+
+        Item[] inv = new Item[28];
+        inv[0] = new Item(ItemID.COINS_995, 10_000);
+        for (int i = 1; i < inv.length; i++) inv[i] = new Item(-1, 0);
+
+        plugin = new BankWealthPlugin();
+        Fakes.set(plugin, "client", Fakes.client(() -> bank, () -> inv, "bench", null));
+        Fakes.set(plugin, "config", new BankWealthConfig() {});
+        Fakes.set(plugin, "prices", new PriceTable(id -> 50 + id % 9_973));
+        Fakes.handle(BankWealthPlugin.class, "loadConfig", void.class).invoke(plugin);
+
+        // never due for a write and never due for a price probe
+        Fakes.set(plugin, "lastWriteMs", Long.MAX_VALUE / 2);
+        Fakes.set(plugin, "lastPriceProbeMs", Long.MAX_VALUE / 2);
+
+        valuation = (BankValuation) Fakes.get(plugin, "valuation");
+        recalcBank = Fakes.handle(BankWealthPlugin.class, "recalcBank", void.class);
+        bankChanged = MethodHandles.insertArguments(Fakes.setter(BankWealthPlugin.class, "bankStale", boolean.class), 1, true)
+                .asType(MethodType.methodType(void.class, BankWealthPlugin.class));
+        recalcBank.invokeExact(plugin);
+    }
+
+    /** An inventory change: the bank is not read again. */
+    @Benchmark
+    public long inventoryOnly() throws Throwable
+    {
+        recalcBank.invokeExact(plugin);
+        return valuation.value();
+    }
+
+    /** A bank event with nothing moved: bank read plus slot diff. */
+    @Benchmark
+    public long unchanged() throws Throwable
+    {
+        bankChanged.invokeExact(plugin);
+        recalcBank.invokeExact(plugin);
+        return valuation.value();
+    }
+
+    /** One withdraw/deposit: slot diff plus one price lookup. */
+    @Benchmark
+    public long oneSlotChanged() throws Throwable
+    {
+        int slot = 1 + (tick++ % (slots - 1));
+        Item it = bank[slot];
+        bank[slot] = new Item(it.getId(), (tick & 1) == 0 ? it.getQuantity() + 1 : Math.max(1, it.getQuantity() - 1));
+        bankChanged.invokeExact(plugin);
+        recalcBank.invokeExact(plugin);
+        return valuation.value();
+    }
+
+    /** First recalc after login or a price refresh. */
+    @Benchmark
+    public long fullRevalue() throws Throwable
+    {
+        valuation.invalidate();
+        recalcBank.invokeExact(plugin);
+        return valuation.value();
+    }
+}
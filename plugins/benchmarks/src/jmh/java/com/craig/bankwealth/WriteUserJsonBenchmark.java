@@ -0,0 +1,103 @@
+package com.craig.bankwealth;
+
+import com.craig.bench.Fakes;
+import com.craig.shared.SnapshotWriter;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One JSON-mode snapshot end to end: {@code writeUserJson} on the caller plus the
+ * read-modify-write of {@code <rsn>.json} on the writer thread, against a fresh copy of
+ * a small or a 50k-entry history each time. The existing document is streamed, so heap use
+ * stays flat as the history grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteUserJsonBenchmark
+{
+    @Param({"10", "50000"})
+    int entries;
+
+    private Path dir;
+    private Path file;
+    private byte[] seed;
+    private BankWealthPlugin plugin;
+    private SnapshotWriter writer;
+    private MethodHandle writeUserJson;
+    private static final long[] RATES = new long[WealthRate.WINDOWS_MS.length];
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        dir = Files.createTempDirectory("bw-bench");
+        file = dir.resolve("bench.json");
+        seed = history(entries);
+
+        writer = SnapshotWriter.acquire();
+        plugin = new BankWealthPlugin();
+        Fakes.set(plugin, "config", new BankWealthConfig() {});
+        Fakes.handle(BankWealthPlugin.class, "loadConfig", void.class).invoke(plugin);
+        Fakes.set(plugin, "baseDir", dir);
+        Fakes.set(plugin, "writer", writer);
+
+        writeUserJson = Fakes.handle(BankWealthPlugin.class, "writeUserJson",
+                void.class, String.class, String.class, long.class, long.class, long.class, long[].class);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetFile() throws IOException
+    {
+        Files.write(file, seed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        SnapshotWriter.release(10_000);
+        try (Stream<Path> s = Files.walk(dir))
+        {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void writeAndFlush() throws Throwable
+    {
+        writeUserJson.invokeExact(plugin, "bench", "2024-01-01T00:00:00", 1_234_567_890L, 25_000_000L, 10_000L, RATES);
+        writer.flush(30_000);
+    }
+
+    /** A document shaped like the plugin's own output, with {@code n} entries. */
+    static byte[] history(int n)
+    {
+        JsonObject root = new JsonObject();
+        root.addProperty("rsn", "bench");
+        root.addProperty("lastUpdated", "2024-01-01T00:00:00");
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < n; i++)
+        {
+            JsonObject e = new JsonObject();
+            e.addProperty("timestamp", "2024-01-01T00:00:00");
+            e.addProperty("bank_ge_value", 1_000_000_000L + i * 997L);
+            e.addProperty("bank_coins", 25_000_000L);
+            e.addProperty("inventory_coins", i % 10_000);
+            list.add(e);
+        }
+        root.add("entries", list);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root).getBytes(StandardCharsets.UTF_8);
+    }
+}
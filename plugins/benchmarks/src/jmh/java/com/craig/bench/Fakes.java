@@ -0,0 +1,243 @@
+package com.craig.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * Just enough of the RuneLite API for the plugins to run outside the client.
+ *
+ * Interfaces are dynamic proxies answering the handful of calls the plugins make; anything
+ * else returns zero/null. Private plugin state is reached by reflection so nothing in the
+ * plugins has to change shape for the benchmarks.
+ */
+public final class Fakes
+{
+    private static final int BANK_ID = 95;
+    private static final int INVENTORY_ID = 93;
+
+    private Fakes() {}
+
+    public interface Answer
+    {
+        Object answer(Object[] args);
+    }
+
+    /** A proxy of {@code type} answering the named methods; everything else is zero/null. */
+    @SuppressWarnings("unchecked")
+    public static <T> T proxy(Class<T> type, Map<String, Answer> answers)
+    {
+        InvocationHandler h = (self, m, args) -> {
+            Answer a = answers.get(m.getName());
+            if (a != null) return a.answer(args);
+            return objectMethod(self, m, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, h);
+    }
+
+    /** Logged-in client whose bank and inventory are read from the suppliers on every call. */
+    public static Client client(Supplier<Item[]> bank, Supplier<Item[]> inventory, String rsn, WidgetSource widgets)
+    {
+        ItemContainer bankC = container(bank);
+        ItemContainer invC = container(inventory);
+        Player player = proxy(Player.class, Map.of("getName", a -> rsn));
+        Widget open = widget(0, "", null, null, null);
+
+        return proxy(Client.class, Map.of(
+                "getItemContainer", a -> {
+                    int id = a[0] instanceof InventoryID ? ((InventoryID) a[0]).getId() : (Integer) a[0];
+                    return id == BANK_ID ? bankC : id == INVENTORY_ID ? invC : null;
+                },
+                // by WidgetInfo (e.g. BANK_CONTAINER): treat it as open; by group/child: ask the source
+                "getWidget", a -> a.length == 1 ? open : widgets != null ? widgets.widget((Integer) a[0], (Integer) a[1]) : null,
+                "getLocalPlayer", a -> player,
+                "getGameState", a -> GameState.LOGGED_IN,
+                "getVarpValue", a -> 0,
+                "getVarbitValue", a -> 0,
+                "getTickCount", a -> 0));
+    }
+
+    public interface WidgetSource
+    {
+        Widget widget(int groupId, int childId);
+    }
+
+    public static ItemContainer container(Supplier<Item[]> items)
+    {
+        return proxy(ItemContainer.class, Map.of(
+                "getItems", a -> items.get(),
+                "size", a -> items.get().length,
+                "count", a -> {
+                    int n = 0;
+                    for (Item it : items.get()) if (it.getId() == (Integer) a[0]) n += it.getQuantity();
+                    return n;
+                }));
+    }
+
+    public static Widget widget(int id, String text, Widget[] statics, Widget[] dynamics, Widget[] nested)
+    {
+        return proxy(Widget.class, Map.of(
+                "getId", a -> id,
+                "getText", a -> text,
+                "getName", a -> "",
+                "getStaticChildren", a -> statics,
+                "getDynamicChildren", a -> dynamics,
+                "getNestedChildren", a -> nested));
+    }
+
+    /**
+     * A synthetic interface: static children {@code fanout} wide down to {@code depth}, with
+     * a row of dynamic children (item slots, list rows) under each lowest container. If
+     * {@code match} is non-null it becomes the text of the widget a depth-first walk reaches
+     * last, so finding it means the whole tree was visited.
+     */
+    public static Widget tree(int groupId, int depth, int fanout, String match, Random rnd)
+    {
+        return node(groupId, depth, fanout, rnd, new int[1], match);
+    }
+
+    private static Widget node(int groupId, int depth, int fanout, Random rnd, int[] next, String match)
+    {
+        int id = groupId << 16 | (next[0]++ & 0xFFFF);
+        String text = LABELS[rnd.nextInt(LABELS.length)];
+        if (depth == 0) return widget(id, text, null, null, null);
+
+        Widget[] statics = new Widget[fanout];
+        for (int i = 0; i < fanout; i++)
+        {
+            statics[i] = node(groupId, depth - 1, fanout, rnd, next, i == fanout - 1 ? match : null);
+        }
+
+        Widget[] dynamics = null;
+        if (depth == 1)
+        {
+            // dynamic children share their parent's id, as in the client
+            dynamics = new Widget[4 + rnd.nextInt(8)];
+            for (int i = 0; i < dynamics.length; i++)
+            {
+                boolean last = match != null && i == dynamics.length - 1;
+                dynamics[i] = widget(id, last ? match : LABELS[rnd.nextInt(LABELS.length)], null, null, null);
+            }
+        }
+        return widget(id, text, statics, dynamics, null);
+    }
+
+    private static final String[] LABELS = {
+            "", "", "", "Close", "Bank of Gielinor", "Withdraw-1", "Withdraw-All", "Deposit inventory",
+            "Search", "Rearrange mode:", "Swap", "Insert", "<col=ff9040>Rune platebody</col>", "Quantity:",
+            "Show placeholders", "Tab 1", "Members' world", "Your account has been active for 5 years.",
+    };
+
+    // ---- reflection helpers ----
+
+    public static void set(Object target, String field, Object value)
+    {
+        try
+        {
+            Field f = find(target.getClass(), field);
+            f.setAccessible(true);
+            f.set(target, value);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot set " + field, e);
+        }
+    }
+
+    public static Object get(Object target, String field)
+    {
+        try
+        {
+            Field f = find(target.getClass(), field);
+            f.setAccessible(true);
+            return f.get(target);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot read " + field, e);
+        }
+    }
+
+    /** A handle on a private instance method, typed {@code (owner, params...)ret} for invokeExact. */
+    public static MethodHandle handle(Class<?> owner, String name, Class<?> ret, Class<?>... params)
+    {
+        try
+        {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+                    .findVirtual(owner, name, MethodType.methodType(ret, params));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot find " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+
+    /** A getter handle on a private field, typed {@code (owner)type} for invokeExact. */
+    public static MethodHandle getter(Class<?> owner, String name, Class<?> type)
+    {
+        try
+        {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).findGetter(owner, name, type);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot find " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+
+    /** A setter handle on a private field, typed {@code (owner, type)void} for invokeExact. */
+    public static MethodHandle setter(Class<?> owner, String name, Class<?> type)
+    {
+        try
+        {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).findSetter(owner, name, type);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot find " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+
+    private static Field find(Class<?> c, String name) throws NoSuchFieldException
+    {
+        for (Class<?> k = c; k != null; k = k.getSuperclass())
+        {
+            try { return k.getDeclaredField(name); } catch (NoSuchFieldException ignored) {}
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    private static Object objectMethod(Object self, Method m, Object[] args)
+    {
+        switch (m.getName())
+        {
+            case "hashCode": return System.identityHashCode(self);
+            case "equals":   return self == args[0];
+            case "toString": return "fake " + m.getDeclaringClass().getSimpleName();
+        }
+        Class<?> r = m.getReturnType();
+        if (r == boolean.class) return false;
+        if (r == int.class) return 0;
+        if (r == long.class) return 0L;
+        if (r == double.class) return 0d;
+        if (r == float.class) return 0f;
+        if (r == short.class) return (short) 0;
+        if (r == byte.class) return (byte) 0;
+        if (r == char.class) return (char) 0;
+        return null;
+    }
+}
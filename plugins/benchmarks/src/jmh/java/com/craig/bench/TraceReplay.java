@@ -0,0 +1,409 @@
+package com.craig.bench;
+
+import com.craig.bankwealth.BankWealthConfig;
+import com.craig.bankwealth.BankWealthPlugin;
+import com.craig.shared.Histogram;
+import com.craig.shared.SnapshotWriter;
+import com.craig.shared.TraceReader;
+import com.craig.shared.TraceRecorder;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.events.ClientTick;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.ui.ClientToolbar;
+import uk.craig.membershipdays.MembershipDaysConfig;
+import uk.craig.membershipdays.MembershipDaysPlugin;
+
+/**
+ * Replays traces recorded with either plugin's "Record event trace" option through both
+ * plugins, headless and deterministically: the fake client answers from the state the trace
+ * carries (containers, widget trees, game state, player, membership varp, bank open), and the
+ * client thread's invokeLater / invokeAtTickEnd queues run around each tick as in the client.
+ *
+ * <pre>
+ * ./gradlew replay -Ptrace=a.rtr[,b.rtr] [-Preplay.args="--repeat 5 --realtime"]
+ * </pre>
+ * For each trace it reports, per game tick, the client-thread time and bytes allocated in
+ * the plugins' handlers and queued tasks, and the bytes the writer thread wrote. Prices are a
+ * fixed function of the item id. {@code --repeat N} replays the trace N times through the
+ * same plugins and reports the last pass, once the JIT has settled. Without
+ * {@code --realtime} events are replayed back to back, so anything throttled by the wall
+ * clock (log gap, price probe, rate refresh, metrics) fires less often than it did live.
+ *
+ * Allocation figures include the fake client's proxies (argument arrays, boxing); compare
+ * them between builds rather than reading them as absolute.
+ */
+public final class TraceReplay
+{
+    private TraceReplay() {}
+
+    public static void main(String[] args) throws Throwable
+    {
+        int repeat = 1;
+        boolean realtime = false;
+        List<Path> traces = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--repeat": repeat = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--realtime": realtime = true; break;
+                default: traces.add(Paths.get(args[i]).toAbsolutePath());
+            }
+        }
+        if (traces.isEmpty())
+        {
+            System.err.println("usage: TraceReplay [--repeat N] [--realtime] <trace.rtr>...");
+            System.exit(2);
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        // the plugins write under user.home; keep it out of the real one
+        String oldHome = System.getProperty("user.home");
+        Path home = Files.createTempDirectory("trace-replay");
+        System.setProperty("user.home", home.toString());
+        try
+        {
+            for (Path trace : traces)
+            {
+                Replay r = new Replay(realtime);
+                try
+                {
+                    for (int pass = 1; pass <= repeat; pass++) r.pass(trace, pass == repeat);
+                }
+                finally
+                {
+                    r.stop();
+                }
+            }
+        }
+        finally
+        {
+            System.setProperty("user.home", oldHome);
+            try (Stream<Path> s = Files.walk(home))
+            {
+                s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /** Both plugins on one fake client. */
+    private static final class Replay
+    {
+        private final boolean realtime;
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+
+        // client state, as of the last record
+        private final Map<Integer, Item[]> items = new HashMap<>();
+        private final Map<Integer, ItemContainer> containers = new HashMap<>();
+        private final Map<Integer, Widget> widgets = new HashMap<>(); // by packed id
+        private final Map<Integer, Integer> varps = new HashMap<>();
+        private GameState gameState = GameState.UNKNOWN;
+        private String playerName;
+        private boolean bankOpen;
+        private int tickCount;
+        private int gameCycle;
+
+        private final FakeClientThread clientThread = new FakeClientThread();
+        private final Client client;
+        private final BankWealthPlugin bank = new BankWealthPlugin();
+        private final MembershipDaysPlugin days = new MembershipDaysPlugin();
+        private final SnapshotWriter writer;
+
+        // per game tick, reset each pass
+        private Histogram tickNanos;
+        private Histogram tickAlloc;
+        private long nanos, alloc;
+        private int errors;
+
+        Replay(boolean realtime) throws Throwable
+        {
+            this.realtime = realtime;
+            Player player = Fakes.proxy(Player.class, Map.of("getName", a -> playerName));
+            Widget open = Fakes.widget(0, "", null, null, null);
+            client = Fakes.proxy(Client.class, Map.of(
+                    "getItemContainer", a -> container(a[0] instanceof InventoryID ? ((InventoryID) a[0]).getId() : (Integer) a[0]),
+                    // by WidgetInfo only the bank is asked for; by group/child from the recorded trees
+                    "getWidget", a -> a.length == 1
+                            ? (a[0] == WidgetInfo.BANK_CONTAINER && bankOpen ? open : null)
+                            : widgets.get((Integer) a[0] << 16 | (Integer) a[1]),
+                    "getLocalPlayer", a -> playerName == null ? null : player,
+                    "getGameState", a -> gameState,
+                    "getVarpValue", a -> a[0] instanceof Integer ? varps.getOrDefault((Integer) a[0], 0) : 0,
+                    "getTickCount", a -> tickCount,
+                    "getGameCycle", a -> gameCycle));
+
+            ClientToolbar toolbar = newToolbar();
+            Fakes.set(bank, "client", client);
+            Fakes.set(bank, "config", new BankWealthConfig() {});
+            Fakes.set(bank, "clientThread", clientThread);
+            Fakes.set(bank, "clientToolbar", toolbar);
+            // only read to build the price table, which is replaced below
+            Fakes.set(bank, "itemManager", allocate(ItemManager.class));
+            Fakes.handle(BankWealthPlugin.class, "startUp", void.class).invoke(bank);
+            Fakes.set(bank, "prices", priceTable(id -> 50 + id % 9_973));
+
+            Fakes.set(days, "client", client);
+            Fakes.set(days, "config", new MembershipDaysConfig() {});
+            Fakes.handle(MembershipDaysPlugin.class, "startUp", void.class).invoke(days);
+
+            writer = (SnapshotWriter) Fakes.get(bank, "writer");
+        }
+
+        void pass(Path trace, boolean report) throws Throwable
+        {
+            tickNanos = new Histogram();
+            tickAlloc = new Histogram();
+            nanos = alloc = 0;
+            errors = 0;
+            writer.flush(10_000);
+            long written0 = SnapshotWriter.bytesWritten();
+            long wall0 = System.nanoTime();
+
+            TraceReader r = new TraceReader(trace);
+            long records = 0;
+            while (r.next())
+            {
+                records++;
+                if (realtime)
+                {
+                    long due = wall0 + r.timeMicros() * 1_000;
+                    for (long left; (left = due - System.nanoTime()) > 0; ) LockSupport.parkNanos(left);
+                }
+                apply(r);
+            }
+            tickEnd();
+
+            writer.flush(30_000);
+            long wallMs = (System.nanoTime() - wall0) / 1_000_000;
+            long written = SnapshotWriter.bytesWritten() - written0;
+            if (!report) return;
+
+            long ticks = Math.max(1, tickNanos.count());
+            System.out.printf("%s: %d records, %.1f s recorded, %d game ticks, replayed in %d ms%n",
+                    trace.getFileName(), records, r.timeMicros() / 1e6, tickNanos.count(), wallMs);
+            System.out.printf("  client thread per game tick: p50 %d us, p99 %d us, max %d us, total %d ms%n",
+                    tickNanos.quantile(0.5) / 1_000, tickNanos.quantile(0.99) / 1_000, tickNanos.max() / 1_000,
+                    tickNanos.sum() / 1_000_000);
+            System.out.printf("  allocated per game tick:     p50 %d B, p99 %d B, max %d B, total %d KB%n",
+                    tickAlloc.quantile(0.5), tickAlloc.quantile(0.99), tickAlloc.max(), tickAlloc.sum() / 1024);
+            System.out.printf("  written: %d bytes, %d per game tick%n", written, written / ticks);
+            if (errors > 0) System.out.printf("  %d handler errors%n", errors);
+        }
+
+        private void apply(TraceReader r)
+        {
+            switch (r.kind())
+            {
+                case TraceRecorder.GAME_TICK:
+                    tickCount = r.tickCount();
+                    GameTick tick = new GameTick();
+                    dispatch(clientThread::runLater);
+                    dispatch(() -> { bank.onGameTick(tick); days.onGameTick(tick); });
+                    tickEnd();
+                    // one sample per game tick: everything since the previous one
+                    tickNanos.record(nanos);
+                    tickAlloc.record(alloc);
+                    nanos = alloc = 0;
+                    break;
+                case TraceRecorder.CLIENT_TICK:
+                    gameCycle++;
+                    ClientTick ct = new ClientTick();
+                    dispatch(clientThread::runLater);
+                    dispatch(() -> { bank.onClientTick(ct); days.onClientTick(ct); });
+                    tickEnd();
+                    break;
+                case TraceRecorder.GAME_STATE:
+                    gameState = gameState(r.text());
+                    GameStateChanged gs = new GameStateChanged();
+                    gs.setGameState(gameState);
+                    dispatch(() -> { bank.onGameStateChanged(gs); days.onGameStateChanged(gs); });
+                    break;
+                case TraceRecorder.CONTAINER:
+                    Item[] slots = new Item[r.slots()];
+                    for (int i = 0; i < slots.length; i++) slots[i] = new Item(r.ids()[i], r.quantities()[i]);
+                    items.put(r.containerId(), slots);
+                    ItemContainerChanged ic = new ItemContainerChanged(r.containerId(), container(r.containerId()));
+                    dispatch(() -> { bank.onItemContainerChanged(ic); days.onItemContainerChanged(ic); });
+                    break;
+                case TraceRecorder.WIDGET_LOADED:
+                    int group = r.groupId();
+                    widgets.keySet().removeIf(id -> id >>> 16 == group);
+                    Widget root = widget(r.tree());
+                    if (root != null) widgets.put(group << 16, root);
+                    WidgetLoaded wl = new WidgetLoaded();
+                    wl.setGroupId(group);
+                    dispatch(() -> { bank.onWidgetLoaded(wl); days.onWidgetLoaded(wl); });
+                    break;
+                case TraceRecorder.PLAYER:
+                    playerName = r.text();
+                    break;
+                case TraceRecorder.VARP:
+                    varps.put(r.varp(), r.value());
+                    VarbitChanged vc = new VarbitChanged();
+                    vc.setVarpId(r.varp());
+                    vc.setValue(r.value());
+                    dispatch(() -> { bank.onVarbitChanged(vc); days.onVarbitChanged(vc); });
+                    break;
+                case TraceRecorder.BANK_OPEN:
+                    bankOpen = r.bankOpen();
+                    break;
+            }
+        }
+
+        private void tickEnd()
+        {
+            dispatch(clientThread::runTickEnd);
+        }
+
+        /** Runs plugin code as the client thread would, adding its time and allocation to the tick. */
+        private void dispatch(Runnable handlers)
+        {
+            long a0 = threads.getThreadAllocatedBytes(threadId);
+            long t0 = System.nanoTime();
+            try
+            {
+                handlers.run();
+            }
+            catch (RuntimeException ex)
+            {
+                // the event bus logs and carries on; so does the replay
+                if (errors++ == 0) ex.printStackTrace();
+            }
+            nanos += System.nanoTime() - t0;
+            alloc += threads.getThreadAllocatedBytes(threadId) - a0;
+        }
+
+        private ItemContainer container(int id)
+        {
+            if (!items.containsKey(id)) return null;
+            return containers.computeIfAbsent(id, k -> Fakes.container(() -> items.get(k)));
+        }
+
+        /** Builds the recorded tree, indexing static widgets by id as client.getWidget resolves them. */
+        private Widget widget(TraceReader.Node n)
+        {
+            if (n == null) return null;
+            Widget[] statics = widgets(n.statics, true);
+            Widget[] dynamics = widgets(n.dynamics, false);
+            Widget[] nested = widgets(n.nested, false);
+            return Fakes.proxy(Widget.class, Map.of(
+                    "getId", a -> n.id,
+                    "getText", a -> n.text,
+                    "getName", a -> n.name,
+                    "getStaticChildren", a -> statics,
+                    "getDynamicChildren", a -> dynamics,
+                    "getNestedChildren", a -> nested));
+        }
+
+        private Widget[] widgets(TraceReader.Node[] nodes, boolean index)
+        {
+            if (nodes == null) return null;
+            Widget[] out = new Widget[nodes.length];
+            for (int i = 0; i < nodes.length; i++)
+            {
+                out[i] = widget(nodes[i]);
+                if (index && out[i] != null) widgets.putIfAbsent(nodes[i].id, out[i]);
+            }
+            return out;
+        }
+
+        void stop() throws Throwable
+        {
+            Fakes.handle(MembershipDaysPlugin.class, "shutDown", void.class).invoke(days);
+            Fakes.handle(BankWealthPlugin.class, "shutDown", void.class).invoke(bank);
+        }
+    }
+
+    /** Queues what the client thread would run later; the replay drains the queues around ticks. */
+    private static final class FakeClientThread extends ClientThread
+    {
+        private final ArrayDeque<Runnable> later = new ArrayDeque<>();
+        private final ArrayDeque<Runnable> tickEnd = new ArrayDeque<>();
+
+        @Override public void invoke(Runnable r) { r.run(); }
+        @Override public void invokeLater(Runnable r) { later.add(r); }
+        @Override public void invokeAtTickEnd(Runnable r) { tickEnd.add(r); }
+
+        void runLater()
+        {
+            // only what was queued before this tick; tasks queued now run next tick
+            for (int n = later.size(); n > 0; n--) later.poll().run();
+        }
+
+        void runTickEnd()
+        {
+            for (Runnable r; (r = tickEnd.poll()) != null; ) r.run();
+        }
+    }
+
+    private static GameState gameState(String name)
+    {
+        try
+        {
+            return GameState.valueOf(name);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return GameState.UNKNOWN;
+        }
+    }
+
+    private static ClientToolbar newToolbar() throws ReflectiveOperationException
+    {
+        Constructor<?> c = ClientToolbar.class.getDeclaredConstructors()[0];
+        c.setAccessible(true);
+        Object[] args = new Object[c.getParameterCount()];
+        for (int i = 0; i < args.length; i++)
+        {
+            if (c.getParameterTypes()[i] == EventBus.class) args[i] = new EventBus();
+        }
+        return (ClientToolbar) c.newInstance(args);
+    }
+
+    private static Object priceTable(IntUnaryOperator prices) throws ReflectiveOperationException
+    {
+        Constructor<?> c = Class.forName("com.craig.bankwealth.PriceTable").getDeclaredConstructor(IntUnaryOperator.class);
+        c.setAccessible(true);
+        return c.newInstance(prices);
+    }
+
+    /** An instance without running a constructor, for injected collaborators that are never called. */
+    private static Object allocate(Class<?> type) throws ReflectiveOperationException
+    {
+        Field f = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        Object unsafe = f.get(null);
+        return unsafe.getClass().getMethod("allocateInstance", Class.class).invoke(unsafe, type);
+    }
+}
@@ -0,0 +1,97 @@
+package uk.craig.membershipdays;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Per-string cost of the days parser on text that matches and on the ordinary UI text
+ * that makes up almost everything a widget scan sees, with the old regexes alongside.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseDaysBenchmark
+{
+    static final String[] MATCHING = {
+            "You have 42 days of membership left.",
+            "Your membership expires in 7 days",
+            "Membership: 365 days remaining",
+            "You are a member. 13 days",
+            "<col=ffffff>120</col> days of membership left",
+    };
+
+    static final String[] PLAIN = {
+            "Bank of Gielinor",
+            "Withdraw-All",
+            "<col=ff9040>Rune platebody</col>",
+            "Your account has been active for 5 years.",
+            "Members' world",
+            "Welcome to Old School RuneScape. Your last login was 2 days ago from 127.0.0.1.",
+            "",
+    };
+
+    // the regexes DaysMatcher replaced, applied as parseDays used to
+    static final List<Pattern> LEGACY = List.of(
+            Pattern.compile("\\b(\\d+)\\s+days?\\s+of\\s+membership\\s+left\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\bexpire[s]?\\s+in\\s+(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\bmembership\\b[^\\d]*(\\d+)\\s+days?\\s+(remaining|left)\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\byou\\s+are\\s+a\\s+member\\b[^\\d]*(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE)
+    );
+
+    static Integer legacyParse(String text)
+    {
+        String t = text == null ? "" : text.replace('\u00A0', ' ').trim();
+        if (t.isEmpty()) return null;
+        for (Pattern p : LEGACY)
+        {
+            Matcher m = p.matcher(t);
+            if (m.find())
+            {
+                try { return Integer.parseInt(m.group(1)); } catch (NumberFormatException ignored) {}
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public int matching()
+    {
+        int acc = 0;
+        for (String s : MATCHING) acc += DaysMatcher.parse(s);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public int plain()
+    {
+        int acc = 0;
+        for (String s : PLAIN) acc += DaysMatcher.parse(s);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public int legacyMatching()
+    {
+        int acc = 0;
+        for (String s : MATCHING) { Integer d = legacyParse(s); if (d != null) acc += d; }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public int legacyPlain()
+    {
+        int acc = 0;
+        for (String s : PLAIN) { Integer d = legacyParse(s); if (d != null) acc += d; }
+        return acc;
+    }
+}
@@ -0,0 +1,155 @@
+package uk.craig.membershipdays;
+
+import com.craig.bench.Fakes;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import net.runelite.api.Client;
+import net.runelite.api.Item;
+import net.runelite.api.widgets.Widget;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Widget scanning on synthetic interfaces: one in seven of the 800 group ids is loaded,
+ * each a few hundred widgets deep. Covers the raw walk, a single budgeted tick slice, and
+ * the plugin's login scan with nothing learned (full sweep) and with the group learned.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetScanBenchmark
+{
+    private static final int GROUPS = 800;
+    private static final int MATCH_GROUP = 791;
+    private static final String MATCH = "You have 42 days of membership left.";
+
+    @Param({"3", "5"})
+    int depth;
+
+    private Widget[] plain;     // by group id, no match anywhere
+    private Widget[] withMatch; // same, plus the days text deep in MATCH_GROUP
+    private final Map<Integer, Widget> byId = new HashMap<>();
+
+    private WidgetScanner walker;
+    private WidgetScanner slicer;
+
+    private MembershipDaysPlugin plugin;
+    private MethodHandle wideScan;
+    private MethodHandle loginScan;
+    private AtomicLong lastScanMs;
+    private WidgetScanner pluginScanner;
+    private Path home;
+    private String oldHome;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        Random rnd = new Random(7);
+        plain = new Widget[GROUPS];
+        withMatch = new Widget[GROUPS];
+        for (int g = 0; g < GROUPS; g += 7)
+        {
+            plain[g] = withMatch[g] = Fakes.tree(g, depth, 4, null, rnd);
+        }
+        withMatch[MATCH_GROUP] = Fakes.tree(MATCH_GROUP, depth, 4, MATCH, rnd);
+        for (Widget root : withMatch) if (root != null) index(root);
+
+        walker = new WidgetScanner((g, c) -> c == 0 ? withMatch[g] : null, w -> MATCH.equals(w.getText()));
+        slicer = new WidgetScanner((g, c) -> c == 0 ? plain[g] : null, w -> DaysMatcher.parse(w.getText()) >= 0);
+
+        // the plugin writes under user.home; keep it out of the real one
+        oldHome = System.getProperty("user.home");
+        home = Files.createTempDirectory("md-bench");
+        System.setProperty("user.home", home.toString());
+
+        Client client = Fakes.client(() -> new Item[0], () -> new Item[0], "bench", (g, c) -> byId.get(g << 16 | c));
+        plugin = new MembershipDaysPlugin();
+        Fakes.set(plugin, "client", client);
+        Fakes.set(plugin, "config", new MembershipDaysConfig()
+        {
+            @Override public int throttleMs() { return 0; }
+            @Override public boolean useVarp() { return false; }
+            @Override public int scanBudgetMicros() { return Integer.MAX_VALUE / 1000; }
+        });
+        plugin.startUp();
+
+        wideScan = Fakes.handle(MembershipDaysPlugin.class, "wideScanOnceThrottled", void.class);
+        loginScan = Fakes.getter(MembershipDaysPlugin.class, "loginScan", boolean.class);
+        lastScanMs = (AtomicLong) Fakes.get(plugin, "lastScanMs");
+        pluginScanner = (WidgetScanner) Fakes.get(plugin, "scanner");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        plugin.shutDown();
+        System.setProperty("user.home", oldHome);
+        try (Stream<Path> s = Files.walk(home))
+        {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Every loaded group walked in full; the match is the last widget reached. */
+    @Benchmark
+    public int walkAllGroups()
+    {
+        walker.reset();
+        for (int g = 0; g < GROUPS; g++) walker.add(g, 0);
+        return walker.step(Long.MAX_VALUE);
+    }
+
+    /** One client tick's share of a sweep at the default 300 us budget. */
+    @Benchmark
+    public int oneTickSlice()
+    {
+        if (slicer.idle())
+        {
+            for (int g = 0; g < GROUPS; g++) slicer.add(g, 0);
+        }
+        return slicer.step(300_000L);
+    }
+
+    /** Login scan with nothing learned: the full 800-group sweep through the plugin. */
+    @Benchmark
+    public void wideScanCold() throws Throwable
+    {
+        Fakes.set(plugin, "hot", new HotGroups());
+        runScan();
+    }
+
+    /** Login scan once the group is learned: one component probe. */
+    @Benchmark
+    public void wideScanLearned() throws Throwable
+    {
+        runScan();
+    }
+
+    private void runScan() throws Throwable
+    {
+        lastScanMs.set(0);
+        wideScan.invokeExact(plugin);
+        // one "tick" per loop; the budget is effectively unlimited so this is the total walk cost
+        do plugin.onClientTick(null);
+        while (!pluginScanner.idle() || (boolean) loginScan.invokeExact(plugin));
+    }
+
+    /** Static widgets by packed id, as client.getWidget(group, child) resolves them. */
+    private void index(Widget w)
+    {
+        byId.putIfAbsent(w.getId(), w);
+        Widget[] c = w.getStaticChildren();
+        if (c != null) for (Widget k : c) index(k);
+    }
+}
@@ -0,0 +1,120 @@
+package com.craig.bankwealth;
+
+import static org.junit.Assert.assertEquals;
+
+import com.craig.bench.Fakes;
+import java.lang.invoke.MethodHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import net.runelite.api.Client;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemID;
+import net.runelite.api.widgets.WidgetInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A steady-state {@code recalcBank} allocates nothing of its own: bytes allocated on this
+ * thread per event equal what the fake client's proxies allocate for the same calls (their
+ * argument arrays and boxed returns), so the plugin's share is zero.
+ */
+public class RecalcAllocationTest
+{
+    private static final int EVENTS = 20_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Client client;
+    private BankWealthPlugin plugin;
+    private MethodHandle recalcBank;
+    private MethodHandle bankStale;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        Random rnd = new Random(42);
+        Item[] bank = new Item[800];
+        bank[0] = new Item(ItemID.COINS_995, 25_000_000);
+        for (int i = 1; i < bank.length; i++) bank[i] = new Item(1 + rnd.nextInt(28_000), 1 + rnd.nextInt(5_000));
+
+        Item[] inv = new Item[28];
+        inv[0] = new Item(ItemID.COINS_995, 10_000);
+        for (int i = 1; i < inv.length; i++) inv[i] = new Item(-1, 0);
+
+        client = Fakes.client(() -> bank, () -> inv, "Some Name", null);
+        plugin = new BankWealthPlugin();
+        Fakes.set(plugin, "client", client);
+        Fakes.set(plugin, "config", new BankWealthConfig() {});
+        Fakes.set(plugin, "prices", new PriceTable(id -> 50 + id % 9_973));
+        Fakes.set(plugin, "panel", new BankWealthPanel());
+        Fakes.handle(BankWealthPlugin.class, "loadConfig", void.class).invoke(plugin);
+
+        // never due for a write or a price probe: only the client-thread work is measured
+        Fakes.set(plugin, "lastWriteMs", Long.MAX_VALUE / 2);
+        Fakes.set(plugin, "lastPriceProbeMs", Long.MAX_VALUE / 2);
+
+        recalcBank = Fakes.handle(BankWealthPlugin.class, "recalcBank", void.class);
+        bankStale = Fakes.setter(BankWealthPlugin.class, "bankStale", boolean.class);
+        recalcBank.invokeExact(plugin);
+    }
+
+    @Test
+    public void inventoryOnlyEventAllocatesNothing() throws Throwable
+    {
+        assertEquals("bytes per " + EVENTS + " inventory events beyond the fake client's", 0, pluginBytes(false));
+    }
+
+    @Test
+    public void unchangedBankEventAllocatesNothing() throws Throwable
+    {
+        assertEquals("bytes per " + EVENTS + " unchanged bank events beyond the fake client's", 0, pluginBytes(true));
+    }
+
+    /** Least over several rounds, after warm-up, of the bytes recalcs allocate beyond the client's. */
+    private long pluginBytes(boolean bankEvent) throws Throwable
+    {
+        for (int r = 0; r < WARMUP_ROUNDS; r++)
+        {
+            recalcs(bankEvent);
+            clientCalls(bankEvent);
+        }
+        long least = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) least = Math.min(least, recalcs(bankEvent) - clientCalls(bankEvent));
+        return least;
+    }
+
+    private long recalcs(boolean bankEvent) throws Throwable
+    {
+        long b0 = allocated();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            if (bankEvent) bankStale.invokeExact(plugin, true);
+            recalcBank.invokeExact(plugin);
+        }
+        return allocated() - b0;
+    }
+
+    /** The client calls one recalc makes, without the plugin. */
+    private long clientCalls(boolean bankEvent)
+    {
+        long b0 = allocated();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            if (bankEvent) client.getItemContainer(InventoryID.BANK).getItems();
+            else client.getItemContainer(InventoryID.BANK);
+            client.getLocalPlayer().getName();
+            client.getWidget(WidgetInfo.BANK_CONTAINER);
+            client.getItemContainer(InventoryID.INVENTORY).count(ItemID.COINS_995);
+        }
+        return allocated() - b0;
+    }
+
+    private static long allocated()
+    {
+        return MX.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
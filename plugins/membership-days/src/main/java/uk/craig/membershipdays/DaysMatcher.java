@@ -0,0 +1,322 @@
+package uk.craig.membershipdays;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Allocation-free replacement for the four membership-days regexes.
+ *
+ * One pass of a small Aho-Corasick automaton over "day", "member", "membership" and
+ * "expire" (ASCII case-folded) rejects almost every widget string. Only strings holding
+ * the keywords a pattern needs go on to that pattern's hand-written matcher, which walks
+ * the chars and accumulates the number directly instead of using {@link Matcher}.
+ *
+ * Results match the old regexes applied the old way (DaysMatcherDifferentialTest holds
+ * them): NBSP folded to a space, the text trimmed, patterns tried in order, first match
+ * wins, and a number too large for an int falls through to the next pattern. Word
+ * boundaries follow {@link Pattern}'s pre-JDK 19 {@code \b} (Unicode letters/digits and '_').
+ */
+final class DaysMatcher
+{
+    static final int NONE = -1;
+
+    // keyword bits
+    private static final int K_DAY = 1, K_MEMBER = 2, K_MEMBERSHIP = 4, K_EXPIRE = 8;
+    private static final String[] KEYWORDS = {"day", "member", "membership", "expire"};
+
+    // returned by a pattern that matched but whose number overflowed an int
+    private static final int OVERFLOW = -2;
+
+    private static final int[][] NEXT;
+    private static final int[] OUT;
+
+    static
+    {
+        // trie
+        int max = 1;
+        for (String k : KEYWORDS) max += k.length();
+        int[][] go = new int[max][26];
+        int[] out = new int[max];
+        for (int[] row : go) Arrays.fill(row, -1);
+        int states = 1;
+        for (int k = 0; k < KEYWORDS.length; k++)
+        {
+            int s = 0;
+            for (char c : KEYWORDS[k].toCharArray())
+            {
+                int i = c - 'a';
+                if (go[s][i] < 0) go[s][i] = states++;
+                s = go[s][i];
+            }
+            out[s] |= 1 << k;
+        }
+
+        // failure links, folded into a full transition table
+        int[] fail = new int[states];
+        ArrayDeque<Integer> q = new ArrayDeque<>();
+        for (int i = 0; i < 26; i++)
+        {
+            if (go[0][i] < 0) go[0][i] = 0;
+            else { fail[go[0][i]] = 0; q.add(go[0][i]); }
+        }
+        while (!q.isEmpty())
+        {
+            int s = q.poll();
+            out[s] |= out[fail[s]];
+            for (int i = 0; i < 26; i++)
+            {
+                int t = go[s][i];
+                if (t < 0) go[s][i] = go[fail[s]][i];
+                else { fail[t] = go[fail[s]][i]; q.add(t); }
+            }
+        }
+
+        NEXT = Arrays.copyOf(go, states);
+        OUT = Arrays.copyOf(out, states);
+    }
+
+    private DaysMatcher() {}
+
+    /** Days remaining named in {@code text}, or {@link #NONE}. */
+    static int parse(String text)
+    {
+        if (text == null) return NONE;
+
+        // trim, treating NBSP as the space it is replaced with
+        int lo = 0, hi = text.length();
+        while (lo < hi && ch(text, lo) <= ' ') lo++;
+        while (hi > lo && ch(text, hi - 1) <= ' ') hi--;
+        if (lo == hi) return NONE;
+
+        // single pass: which keywords occur, and is there any digit
+        int seen = 0;
+        boolean digit = false;
+        int s = 0;
+        for (int i = lo; i < hi; i++)
+        {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') { digit = true; s = 0; continue; }
+            int f = fold(c);
+            s = f >= 'a' && f <= 'z' ? NEXT[s][f - 'a'] : 0;
+            seen |= OUT[s];
+        }
+        if (!digit || (seen & K_DAY) == 0) return NONE;
+
+        int r;
+        if ((seen & K_MEMBERSHIP) != 0 && (r = first(text, lo, hi, 0)) != NONE && r != OVERFLOW) return r;
+        if ((seen & K_EXPIRE) != 0     && (r = first(text, lo, hi, 1)) != NONE && r != OVERFLOW) return r;
+        if ((seen & K_MEMBERSHIP) != 0 && (r = first(text, lo, hi, 2)) != NONE && r != OVERFLOW) return r;
+        if ((seen & K_MEMBER) != 0     && (r = first(text, lo, hi, 3)) != NONE && r != OVERFLOW) return r;
+        return NONE;
+    }
+
+    /** Leftmost match of one pattern, like {@link Matcher#find()}; its value, OVERFLOW or NONE. */
+    private static int first(String t, int lo, int hi, int pattern)
+    {
+        for (int start = lo; start < hi; start++)
+        {
+            long v;
+            switch (pattern)
+            {
+                case 0:  v = membershipLeft(t, lo, hi, start); break;
+                case 1:  v = expiresIn(t, lo, hi, start); break;
+                case 2:  v = membershipRemaining(t, lo, hi, start); break;
+                default: v = youAreAMember(t, lo, hi, start); break;
+            }
+            if (v != NONE) return v > Integer.MAX_VALUE ? OVERFLOW : (int) v;
+        }
+        return NONE;
+    }
+
+    // \b(\d+)\s+days?\s+of\s+membership\s+left\b
+    private static long membershipLeft(String t, int lo, int hi, int i)
+    {
+        if (!boundary(t, lo, hi, i)) return NONE;
+        int d = digits(t, i, hi);
+        if (d < 0) return NONE;
+        long v = value(t, i, d);
+        i = ws(t, d, hi);
+        if (i < 0 || (i = lit(t, i, hi, "day")) < 0) return NONE;
+        if (i < hi && fold(ch(t, i)) == 's') i++;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "of")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "membership")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "left")) < 0) return NONE;
+        return boundary(t, lo, hi, i) ? v : NONE;
+    }
+
+    // \bexpire[s]?\s+in\s+(\d+)\s+days?\b
+    private static long expiresIn(String t, int lo, int hi, int i)
+    {
+        if (!boundary(t, lo, hi, i) || (i = lit(t, i, hi, "expire")) < 0) return NONE;
+        if (i < hi && fold(ch(t, i)) == 's') i++;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "in")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0) return NONE;
+        int d = digits(t, i, hi);
+        if (d < 0) return NONE;
+        long v = value(t, i, d);
+        if ((i = ws(t, d, hi)) < 0 || (i = lit(t, i, hi, "day")) < 0) return NONE;
+        return optionalSThenBoundary(t, lo, hi, i) ? v : NONE;
+    }
+
+    // \bmembership\b[^\d]*(\d+)\s+days?\s+(remaining|left)\b
+    private static long membershipRemaining(String t, int lo, int hi, int i)
+    {
+        if (!boundary(t, lo, hi, i) || (i = lit(t, i, hi, "membership")) < 0) return NONE;
+        if (!boundary(t, lo, hi, i)) return NONE;
+        while (i < hi && !isDigit(ch(t, i))) i++;
+        int d = digits(t, i, hi);
+        if (d < 0) return NONE;
+        long v = value(t, i, d);
+        if ((i = ws(t, d, hi)) < 0 || (i = lit(t, i, hi, "day")) < 0) return NONE;
+        if (i < hi && fold(ch(t, i)) == 's') i++;
+        if ((i = ws(t, i, hi)) < 0) return NONE;
+        int e = lit(t, i, hi, "remaining");
+        if (e >= 0 && boundary(t, lo, hi, e)) return v;
+        e = lit(t, i, hi, "left");
+        return e >= 0 && boundary(t, lo, hi, e) ? v : NONE;
+    }
+
+    // \byou\s+are\s+a\s+member\b[^\d]*(\d+)\s+days?\b
+    private static long youAreAMember(String t, int lo, int hi, int i)
+    {
+        if (!boundary(t, lo, hi, i) || (i = lit(t, i, hi, "you")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "are")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "a")) < 0) return NONE;
+        if ((i = ws(t, i, hi)) < 0 || (i = lit(t, i, hi, "member")) < 0) return NONE;
+        if (!boundary(t, lo, hi, i)) return NONE;
+        while (i < hi && !isDigit(ch(t, i))) i++;
+        int d = digits(t, i, hi);
+        if (d < 0) return NONE;
+        long v = value(t, i, d);
+        if ((i = ws(t, d, hi)) < 0 || (i = lit(t, i, hi, "day")) < 0) return NONE;
+        return optionalSThenBoundary(t, lo, hi, i) ? v : NONE;
+    }
+
+    // s?\b after "day": the regex backtracks to the bare "day" if "days" is not at a boundary
+    private static boolean optionalSThenBoundary(String t, int lo, int hi, int i)
+    {
+        if (boundary(t, lo, hi, i)) return true;
+        return i < hi && fold(ch(t, i)) == 's' && boundary(t, lo, hi, i + 1);
+    }
+
+    /** End of an ASCII case-insensitive literal at {@code i}, or -1. {@code word} is lower case. */
+    private static int lit(String t, int i, int hi, String word)
+    {
+        int n = word.length();
+        if (hi - i < n) return -1;
+        for (int k = 0; k < n; k++)
+        {
+            if (fold(ch(t, i + k)) != word.charAt(k)) return -1;
+        }
+        return i + n;
+    }
+
+    /** End of a non-empty run of {@code \s}, or -1. */
+    private static int ws(String t, int i, int hi)
+    {
+        int j = i;
+        while (j < hi && isSpace(ch(t, j))) j++;
+        return j > i ? j : -1;
+    }
+
+    /** End of a non-empty run of ASCII digits, or -1. */
+    private static int digits(String t, int i, int hi)
+    {
+        int j = i;
+        while (j < hi && isDigit(ch(t, j))) j++;
+        return j > i ? j : -1;
+    }
+
+    /** Digits in [from, to) as a number, saturating just above int range. */
+    private static long value(String t, int from, int to)
+    {
+        long v = 0;
+        for (int i = from; i < to; i++)
+        {
+            v = v * 10 + (t.charAt(i) - '0');
+            if (v > Integer.MAX_VALUE) return Integer.MAX_VALUE + 1L;
+        }
+        return v;
+    }
+
+    /** {@code \b} at {@code i} within [lo, hi), as {@link Pattern} decides it (JDK 11-18). */
+    private static boolean boundary(String t, int lo, int hi, int i)
+    {
+        boolean left = false, right = false;
+        if (i > lo)
+        {
+            int c = codePointBefore(t, lo, i);
+            left = isWord(c) || (Character.getType(c) == Character.NON_SPACING_MARK && hasBase(t, lo, i - 1));
+        }
+        if (i < hi)
+        {
+            int c = codePointAt(t, i, hi);
+            right = isWord(c) || (Character.getType(c) == Character.NON_SPACING_MARK && hasBase(t, lo, i));
+        }
+        return left != right;
+    }
+
+    private static boolean hasBase(String t, int lo, int i)
+    {
+        for (int x = i; x >= lo; x--)
+        {
+            int c = codePointAt(t, x, t.length());
+            if (Character.isLetterOrDigit(c)) return true;
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            return false;
+        }
+        return false;
+    }
+
+    // Character.codePointAt/Before, limited to the trimmed region
+    private static int codePointAt(String t, int i, int hi)
+    {
+        char c = t.charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < hi)
+        {
+            char d = t.charAt(i + 1);
+            if (Character.isLowSurrogate(d)) return Character.toCodePoint(c, d);
+        }
+        return c;
+    }
+
+    private static int codePointBefore(String t, int lo, int i)
+    {
+        char c = t.charAt(i - 1);
+        if (Character.isLowSurrogate(c) && i - 1 > lo)
+        {
+            char h = t.charAt(i - 2);
+            if (Character.isHighSurrogate(h)) return Character.toCodePoint(h, c);
+        }
+        return c;
+    }
+
+    private static boolean isWord(int c)
+    {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /** Char at i with NBSP read as a space. */
+    private static char ch(String t, int i)
+    {
+        char c = t.charAt(i);
+        return c == '\u00A0' ? ' ' : c;
+    }
+
+    private static int fold(char c)
+    {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
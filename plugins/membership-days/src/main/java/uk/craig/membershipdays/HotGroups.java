@@ -0,0 +1,161 @@
+package uk.craig.membershipdays;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Widget groups/children that have actually shown a membership-days value on this host.
+ *
+ * Persisted as {@code _hot-groups.txt} in the output folder, one
+ * {@code groupId childIndex hits lastHitEpochMs} line per entry, most hits first, so
+ * later scans can probe the places that worked before instead of sweeping every group.
+ * The child index is the low 16 bits of the widget id; files from before held the packed
+ * id ({@code groupId << 16 | child}) there and are read as such.
+ */
+final class HotGroups
+{
+    static final String FILE = "_hot-groups.txt";
+    private static final int MAX_ENTRIES = 32;
+
+    // most hits first, most recent breaking ties
+    private static final Comparator<Entry> BEST_FIRST =
+            (a, b) -> a.hits != b.hits ? Integer.compare(b.hits, a.hits) : Long.compare(b.lastHitMs, a.lastHitMs);
+
+    static final class Entry
+    {
+        final int groupId;
+        final int childIndex;
+        int hits;
+        long lastHitMs;
+
+        Entry(int groupId, int childIndex, int hits, long lastHitMs)
+        {
+            this.groupId = groupId;
+            this.childIndex = childIndex;
+            this.hits = hits;
+            this.lastHitMs = lastHitMs;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** Best first. */
+    List<Entry> entries()
+    {
+        return entries;
+    }
+
+    boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /** Distinct group ids, best first. */
+    int[] groups()
+    {
+        int[] out = new int[entries.size()];
+        int n = 0;
+        outer:
+        for (Entry e : entries)
+        {
+            for (int i = 0; i < n; i++) if (out[i] == e.groupId) continue outer;
+            out[n++] = e.groupId;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Counts a hit; true if this child was not known before. */
+    boolean record(int groupId, int childIndex, long nowMs)
+    {
+        boolean added = false;
+        Entry hit = find(groupId, childIndex);
+        if (hit == null)
+        {
+            if (entries.size() >= MAX_ENTRIES) entries.remove(entries.size() - 1);
+            hit = new Entry(groupId, childIndex, 0, 0L);
+            entries.add(hit);
+            added = true;
+        }
+        hit.hits++;
+        hit.lastHitMs = nowMs;
+        entries.sort(BEST_FIRST);
+        return added;
+    }
+
+    /** Adds {@code other}'s hits to these, e.g. hits recorded while this was being loaded. */
+    void merge(HotGroups other)
+    {
+        for (Entry o : other.entries)
+        {
+            Entry e = find(o.groupId, o.childIndex);
+            if (e == null) entries.add(new Entry(o.groupId, o.childIndex, o.hits, o.lastHitMs));
+            else
+            {
+                e.hits += o.hits;
+                e.lastHitMs = Math.max(e.lastHitMs, o.lastHitMs);
+            }
+        }
+        entries.sort(BEST_FIRST);
+        while (entries.size() > MAX_ENTRIES) entries.remove(entries.size() - 1);
+    }
+
+    private Entry find(int groupId, int childIndex)
+    {
+        for (Entry e : entries)
+        {
+            if (e.groupId == groupId && e.childIndex == childIndex) return e;
+        }
+        return null;
+    }
+
+    byte[] serialize()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : entries)
+        {
+            sb.append(e.groupId).append(' ').append(e.childIndex).append(' ')
+              .append(e.hits).append(' ').append(e.lastHitMs).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Reads {@code file}; blocking, so writer thread only. */
+    static HotGroups load(Path file)
+    {
+        HotGroups h = new HotGroups();
+        List<String> lines;
+        try
+        {
+            if (!Files.exists(file)) return h;
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        }
+        catch (IOException ignored)
+        {
+            return h;
+        }
+
+        for (String line : lines)
+        {
+            String[] f = line.trim().split("\\s+");
+            if (f.length < 4) continue;
+            try
+            {
+                int group = Integer.parseInt(f[0]);
+                int child = Integer.parseInt(f[1]);
+                if (child >>> 16 == group) child &= 0xFFFF; // packed widget id, as older files held
+                h.entries.add(new Entry(group, child, Integer.parseInt(f[2]), Long.parseLong(f[3])));
+            }
+            catch (NumberFormatException ignored) {}
+            if (h.entries.size() >= MAX_ENTRIES) break;
+        }
+        Collections.sort(h.entries, (a, b) -> Integer.compare(b.hits, a.hits));
+        return h;
+    }
+}
@@ -0,0 +1,139 @@
+package uk.craig.membershipdays;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The last {@link #CAPACITY} plugin loads on this host ({@code _loaded.ring} in the output
+ * folder), in place of the ever-growing {@code _loaded.txt}. The file never grows past
+ * {@code HEADER + CAPACITY * SLOT} bytes.
+ *
+ * Little-endian layout:
+ * <pre>
+ *  header (32 bytes)
+ *   0  int   magic 'MDLR'
+ *   4  int   format version (1)
+ *   8  int   slot size (32)
+ *  12  int   capacity
+ *  16  long  next sequence number, from 1
+ *  slots (32 bytes each, from offset 32); sequence n goes to slot (n - 1) % capacity
+ *   0  long  sequence number, 0 = never written
+ *   8  long  loaded at, epoch millis
+ *  16  long  client process id
+ *  24  int   CRC-32 of bytes 0..23
+ *  28  int   0
+ * </pre>
+ * Clients append under an exclusive lock on the whole file; a slot torn by a crash fails its
+ * CRC and is skipped.
+ */
+final class LoadRing
+{
+    static final String FILE = "_loaded.ring";
+
+    static final int MAGIC = 0x524C444D; // "MDLR" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 32;
+    static final int SLOT = 32;
+    static final int CAPACITY = 256;
+    static final int OFF_NEXT = 16;
+
+    /** One recorded load. */
+    static final class Load
+    {
+        final long seq;
+        final long timeMs;
+        final long pid;
+
+        Load(long seq, long timeMs, long pid)
+        {
+            this.seq = seq;
+            this.timeMs = timeMs;
+            this.pid = pid;
+        }
+    }
+
+    private LoadRing() {}
+
+    /** Records one load, overwriting the oldest once the ring is full. Writer thread only. */
+    static void append(Path file, long nowMs, long pid) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            FileLock all = ch.lock();
+            try
+            {
+                ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                while (h.hasRemaining() && ch.read(h, h.position()) > 0) { }
+                int capacity = h.getInt(12);
+                if (h.hasRemaining() || h.getInt(0) != MAGIC || h.getInt(4) != FORMAT || h.getInt(8) != SLOT
+                        || capacity <= 0 || ch.size() != HEADER + (long) capacity * SLOT)
+                {
+                    capacity = CAPACITY;
+                    reset(ch, h, capacity);
+                }
+
+                long seq = Math.max(1, h.getLong(OFF_NEXT));
+                ByteBuffer s = ByteBuffer.allocate(SLOT).order(ByteOrder.LITTLE_ENDIAN);
+                s.putLong(0, seq).putLong(8, nowMs).putLong(16, pid);
+                CRC32 crc = new CRC32();
+                crc.update(s.array(), 0, 24);
+                s.putInt(24, (int) crc.getValue());
+                long off = HEADER + ((seq - 1) % capacity) * SLOT;
+                while (s.hasRemaining()) ch.write(s, off + s.position());
+
+                h.clear();
+                h.putLong(OFF_NEXT, seq + 1);
+                ByteBuffer next = ByteBuffer.wrap(h.array(), OFF_NEXT, 8);
+                while (next.hasRemaining()) ch.write(next, next.position());
+            }
+            finally
+            {
+                all.release();
+            }
+        }
+    }
+
+    /** Intact loads, oldest first; empty if there is no ring yet. */
+    static List<Load> read(Path file) throws IOException
+    {
+        List<Load> out = new ArrayList<>();
+        if (!Files.exists(file)) return out;
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER || b.getInt(0) != MAGIC) throw new IOException("not a load ring");
+        if (b.getInt(4) != FORMAT || b.getInt(8) != SLOT) throw new IOException("unsupported load ring format " + b.getInt(4));
+
+        CRC32 crc = new CRC32();
+        for (int off = HEADER; off + SLOT <= bytes.length; off += SLOT)
+        {
+            long seq = b.getLong(off);
+            if (seq <= 0) continue;
+            crc.reset();
+            crc.update(bytes, off, 24);
+            if ((int) crc.getValue() != b.getInt(off + 24)) continue;
+            out.add(new Load(seq, b.getLong(off + 8), b.getLong(off + 16)));
+        }
+        out.sort(Comparator.comparingLong(l -> l.seq));
+        return out;
+    }
+
+    private static void reset(FileChannel ch, ByteBuffer h, int capacity) throws IOException
+    {
+        ch.truncate(0);
+        h.clear();
+        for (int i = 0; i < HEADER; i += 4) h.putInt(i, 0);
+        h.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, SLOT).putInt(12, capacity).putLong(OFF_NEXT, 1);
+        while (h.hasRemaining()) ch.write(h, h.position());
+        ByteBuffer zero = ByteBuffer.allocate(capacity * SLOT);
+        while (zero.hasRemaining()) ch.write(zero, HEADER + zero.position());
+    }
+}
@@ -1,5 +1,7 @@
 package uk.craig.membershipdays;
 
+import com.craig.shared.Metrics;
+import com.craig.shared.PushChannel;
 import net.runelite.client.config.*;
 
 @ConfigGroup("membershipdays")
@@ -19,10 +21,94 @@ public interface MembershipDaysConfig extends Config
     )
     default boolean writeJson() { return false; }
 
+    @ConfigItem(
+        keyName = "writeLedger",
+        name = "Keep expiry ledger",
+        description = "Keep every account's days and estimated expiry in <output folder>/_ledger.bin, shared by every client on the host"
+    )
+    default boolean writeLedger() { return true; }
+
     @ConfigItem(
         keyName = "throttleMs",
         name = "Scan throttle (ms)",
         description = "Minimum ms between full widget scans"
     )
     default int throttleMs() { return 1500; }
+
+    @ConfigItem(
+        keyName = "fsyncWrites",
+        name = "Fsync writes",
+        description = "Force each write to disk before moving on (safer, slower on shared disks)"
+    )
+    default boolean fsyncWrites() { return false; }
+
+    @ConfigItem(
+        keyName = "fullSweepEvery",
+        name = "Full sweep every N misses",
+        description = "Probe all widget groups only after this many scans miss the learned groups (0 = only until a group is learned)"
+    )
+    default int fullSweepEvery() { return 20; }
+
+    @ConfigItem(
+        keyName = "scanBudgetMicros",
+        name = "Scan budget (µs/tick)",
+        description = "Most time a widget scan may spend in one client tick; the rest carries over to the next tick"
+    )
+    default int scanBudgetMicros() { return 300; }
+
+    @ConfigItem(
+        keyName = "useVarp",
+        name = "Read days from player variable",
+        description = "Take membership days from the client's membership varp and only scan widgets when it has no value"
+    )
+    default boolean useVarp() { return true; }
+
+    @ConfigItem(
+        keyName = "metricsFormat",
+        name = "Metrics export",
+        description = "Write scan/parse/write metrics to <output folder>/metrics/<rsn>.prom (Prometheus) or .json"
+    )
+    default Metrics.Format metricsFormat() { return Metrics.Format.OFF; }
+
+    @ConfigItem(
+        keyName = "metricsIntervalSeconds",
+        name = "Metrics interval (s)",
+        description = "How often the metrics file is rewritten"
+    )
+    default int metricsIntervalSeconds() { return 30; }
+
+    @ConfigItem(
+        keyName = "pushEnabled",
+        name = "Push to agent",
+        description = "Also send each days value to the local agent over loopback, so it does not have to poll files"
+    )
+    default boolean pushEnabled() { return false; }
+
+    @ConfigItem(
+        keyName = "pushPort",
+        name = "Agent push port",
+        description = "Loopback port the agent listens on (PUSH_PORT on the agent side)"
+    )
+    default int pushPort() { return PushChannel.DEFAULT_PORT; }
+
+    @ConfigItem(
+        keyName = "writeBoard",
+        name = "Write host board",
+        description = "Also keep this account's days in ~/.runelite/wealth-board.bin, shared by every client on the host"
+    )
+    default boolean writeBoard() { return false; }
+
+    @ConfigItem(
+        keyName = "recordTrace",
+        name = "Record event trace",
+        description = "Record logins, widget loads and ticks to ~/.runelite/traces, to replay offline with the benchmarks' TraceReplay"
+    )
+    default boolean recordTrace() { return false; }
+
+    @ConfigItem(
+        keyName = "traceMaxMb",
+        name = "Trace size limit (MB)",
+        description = "Recording stops once the trace file reaches this size"
+    )
+    default int traceMaxMb() { return 256; }
 }
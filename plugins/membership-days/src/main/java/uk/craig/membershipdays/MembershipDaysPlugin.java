@@ -1,30 +1,39 @@
 package uk.craig.membershipdays;
 
+import com.craig.shared.Histogram;
+import com.craig.shared.Jfr;
+import com.craig.shared.Metrics;
+import com.craig.shared.PushChannel;
+import com.craig.shared.SnapshotWriter;
+import com.craig.shared.TraceRecorder;
+import com.craig.shared.WealthBoard;
 import com.google.inject.Provides;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
 import net.runelite.api.Player;
+import net.runelite.api.VarPlayer;
+import net.runelite.api.events.ClientTick;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
 import net.runelite.api.events.WidgetLoaded;
 import net.runelite.api.widgets.Widget;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
-import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.function.Consumer;
 
 @PluginDescriptor(
         name = "Membership Days (Auto UI)",
@@ -36,126 +45,382 @@ public class MembershipDaysPlugin extends Plugin
     private static final Logger log = LoggerFactory.getLogger(MembershipDaysPlugin.class);
 
     @Inject private Client client;
+    @Inject private ClientThread clientThread;
     @Inject private MembershipDaysConfig config;
     @Inject private ConfigManager configManager;
 
-    private static final List<Pattern> PATTERNS = List.of(
-            Pattern.compile("\\b(\\d+)\\s+days?\\s+of\\s+membership\\s+left\\b", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("\\bexpire[s]?\\s+in\\s+(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("\\bmembership\\b[^\\d]*(\\d+)\\s+days?\\s+(remaining|left)\\b", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("\\byou\\s+are\\s+a\\s+member\\b[^\\d]*(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE)
-    );
-
     private Integer pendingFromTitle = null;
     private Integer lastWrittenDays = null;
     private String  lastWrittenRsn = null;
     private final AtomicLong lastScanMs = new AtomicLong(0);
 
+    // file output runs on the shared writer thread
+    private SnapshotWriter writer;
+    private MembershipLedger ledger;
+
+    // game ticks to wait after login for the membership varp before falling back to widgets
+    private static final int VARP_GRACE_TICKS = 3;
+
+    // membership varp: when it has a value this session, widgets are not scanned at all
+    private boolean useVarp;
+    private boolean varpActive;
+    private int     varpWaitTicks = -1;
+
+    // where values were found before; probed ahead of any full sweep. Starts empty each
+    // startUp and takes in the saved file once the writer has read it
+    private HotGroups hot = new HotGroups();
+    private boolean hotLoaded;
+    private int missesSinceSweep;
+
+    // widget walks run a slice per client tick
+    private WidgetScanner scanner;
+    private long scanBudgetNanos;
+    private boolean loginScan;       // a wideScanOnceThrottled pass is queued or running
+    private boolean sweeping;        // ...and has fallen back to the full sweep
+    private long    loginScanStartVisited;
+
+    // scan metrics (client thread)
+    private long scans, scanHits, hotHits, sweeps, widgetsVisited;
+    private long parseCalls, parseHits;
+    private long loginScanNanos;
+
+    // recorded without allocating; rendered and written on the writer thread
+    private final Histogram sliceNanos = new Histogram();
+    private final Histogram scanNanos = new Histogram();
+    private final Histogram scanWidgets = new Histogram();
+    private Metrics metrics;
+    private Metrics.Format metricsFormat;
+    private long metricsIntervalMs;
+    private long lastMetricsMs;
+
+    // optional loopback push to the agent, next to the files
+    private PushChannel push;
+    private int pushPort;
+    private WealthBoard board;
+
+    // opt-in event trace for offline replay; records first in every handler
+    private TraceRecorder trace;
+
     @Provides
     MembershipDaysConfig provideConfig(ConfigManager cm) { return cm.getConfig(MembershipDaysConfig.class); }
 
     @Override
 	protected void startUp() {
 		log.info("Membership Days (Auto UI) started");
-		try {
-			Path base = java.nio.file.Paths.get(System.getProperty("user.home"), ".runelite", "membership-days");
-			java.nio.file.Files.createDirectories(base);
-			java.nio.file.Files.writeString(
-				base.resolve("_loaded.txt"),
-				java.time.Instant.now().toString() + " loaded\n",
-				java.nio.charset.StandardCharsets.UTF_8,
-				java.nio.file.StandardOpenOption.CREATE,
-				java.nio.file.StandardOpenOption.APPEND
-			);
-		} catch (Exception e) {
-			log.warn("Init failed", e);
-		}
+		useVarp = config.useVarp();
+		varpActive = false;
+		varpWaitTicks = -1;
+		writer = SnapshotWriter.acquire();
+		metrics = buildMetrics();
+		loadMetricsConfig();
+		syncPush();
+		syncBoard();
+		syncTrace();
+		lastMetricsMs = System.currentTimeMillis();
+		hot = new HotGroups();
+		hotLoaded = false;
+		final HotGroups learning = hot;
+		final Path hotFile = outputDir().resolve(HotGroups.FILE);
+		writer.runAlways("hot-groups:load:" + hotFile, () -> {
+			HotGroups loaded = HotGroups.load(hotFile);
+			clientThread.invokeLater(() -> adoptHotGroups(learning, loaded));
+		});
+		scanner = new WidgetScanner(client::getWidget, this::checkWidget);
+		scanBudgetNanos = budgetNanos();
+		loginScan = sweeping = false;
+		missesSinceSweep = 0;
+		scans = scanHits = hotHits = sweeps = widgetsVisited = 0;
+
+		final Path loads = outputDir().resolve(LoadRing.FILE);
+		final long loadedAt = System.currentTimeMillis();
+		writer.runAlways("membership-days/_loaded", () -> {
+			try {
+				LoadRing.append(loads, loadedAt, ProcessHandle.current().pid());
+			} catch (Exception e) {
+				log.warn("Init failed", e);
+			}
+		});
 	}
 
-    @Override protected void shutDown() { log.info("Membership Days (Auto UI) stopped"); }
+    @Override
+    protected void shutDown()
+    {
+        if (writer != null)
+        {
+            saveHotGroups();
+            log.debug("MembershipDays scans={} hits={} hotHits={} sweeps={} avgVisited={}",
+                    scans, scanHits, hotHits, sweeps, scans == 0 ? 0 : widgetsVisited / scans);
+            log.debug("MembershipDays writer: depth={} coalesced={} dropped={}",
+                    writer.queueDepth(), writer.coalesced(), writer.dropped());
+            closeTrace();
+            SnapshotWriter.release(2_000);
+            writer = null;
+        }
+        if (push != null)
+        {
+            push.close();
+            push = null;
+        }
+        board = null;
+        log.info("Membership Days (Auto UI) stopped");
+    }
 
     @Subscribe
     public void onWidgetLoaded(WidgetLoaded e)
     {
-        // Scan only the group that just loaded.
-        scanGroup(e.getGroupId());
+        if (trace != null) trace.widgetLoaded(e, client);
+        // Scan only the group that just loaded, ahead of anything already queued.
+        if (!varpActive) scanner.addFirst(e.getGroupId(), 0);
         flushPendingAfterLogin();
     }
 
+    @Subscribe
+    public void onClientTick(ClientTick t)
+    {
+        if (trace != null) trace.clientTick(client);
+        // an idle scanner during a login scan still has to report DONE so the sweep gets queued
+        if (scanner == null || (scanner.idle() && !loginScan)) return;
+
+        ScanEvent ev = Jfr.AVAILABLE ? ScanEvent.start(scanner) : null;
+        long t0 = System.nanoTime();
+        int r = scanner.step(scanBudgetNanos);
+        long dt = System.nanoTime() - t0;
+        if (ev != null) ev.finish(client.getTickCount(), scanner, r, loginScan);
+        sliceNanos.record(dt);
+        if (loginScan) loginScanNanos += dt;
+        if (r == WidgetScanner.HIT)
+        {
+            // remember where it was; dynamic children share their parent's id, so that is what gets probed
+            int target = scanner.hitTarget();
+            int group = target >>> 16;
+            int id = scanner.hitWidget().getId();
+            int child = (id >>> 16 == group ? id : target) & 0xFFFF;
+            if (hot.record(group, child, System.currentTimeMillis())) saveHotGroups();
+
+            scanner.reset();
+            finishLoginScan(true);
+        }
+        else if (r == WidgetScanner.DONE && loginScan)
+        {
+            if (!sweeping && shouldSweep())
+            {
+                sweeping = true;
+                sweeps++;
+                missesSinceSweep = 0;
+                int[] hotGroups = hot.groups();
+                for (int groupId = 0; groupId < 800; groupId++) // safe, most groups are <800
+                {
+                    if (!contains(hotGroups, groupId)) scanner.add(groupId, 0);
+                }
+            }
+            else
+            {
+                if (!sweeping) missesSinceSweep++;
+                finishLoginScan(false);
+            }
+        }
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged e)
+    {
+        if ("membershipdays".equals(e.getGroup()))
+        {
+            scanBudgetNanos = budgetNanos();
+            useVarp = config.useVarp();
+            if (!useVarp) varpActive = false;
+            loadMetricsConfig();
+            syncPush();
+            syncBoard();
+            syncTrace();
+        }
+    }
+
     @Subscribe
     public void onGameStateChanged(GameStateChanged e)
     {
-        if (e.getGameState() == GameState.LOGGED_IN)
+        if (trace != null) trace.gameState(e);
+        GameState gs = e.getGameState();
+        if (gs == GameState.LOGGED_IN)
         {
             flushPendingAfterLogin();
-            wideScanOnceThrottled();
+            if (varpActive) return;
+            if (useVarp && checkVarp()) return;
+
+            if (useVarp)
+            {
+                // the varp can arrive a tick or two after login; widgets only if it never does
+                varpWaitTicks = VARP_GRACE_TICKS;
+            }
+            else
+            {
+                wideScanOnceThrottled();
+            }
+        }
+        else if (gs == GameState.LOGIN_SCREEN || gs == GameState.HOPPING)
+        {
+            varpActive = false;
+            varpWaitTicks = -1;
         }
     }
 
-    private void wideScanOnceThrottled()
+    @Subscribe
+    public void onVarbitChanged(VarbitChanged e)
     {
-        long now = System.currentTimeMillis();
-        if (now - lastScanMs.get() < Math.max(250, config.throttleMs())) return;
-        lastScanMs.set(now);
-
-        // We do not use client.getWidgets() (not available). Instead we rely on recently loaded roots
-        // by probing a few common group roots that are frequently present; failures are ignored.
-        // This is best-effort; onWidgetLoaded will still catch the rest.
-        for (int groupId = 0; groupId < 800; groupId++) // safe, most groups are <800
+        if (trace != null) trace.varbit(e);
+        if (useVarp && e.getVarpId() == VarPlayer.MEMBERSHIP_DAYS && client.getGameState() == GameState.LOGGED_IN)
         {
-            scanGroup(groupId);
+            checkVarp();
         }
     }
 
-    private void scanGroup(int groupId)
+    @Subscribe
+    public void onGameTick(GameTick t)
     {
-        try
+        if (trace != null) trace.gameTick(client);
+        if (metricsFormat != Metrics.Format.OFF && writer != null)
         {
-            Widget root = client.getWidget(groupId, 0);
-            if (root == null) return;
+            long now = System.currentTimeMillis();
+            if (now - lastMetricsMs >= metricsIntervalMs)
+            {
+                lastMetricsMs = now;
+                exportMetrics(now);
+            }
+        }
 
-            traverse(root, this::checkWidget);
+        // one varp read a tick; catches a value that arrived before the local player had a name
+        if (varpActive) { checkVarp(); return; }
+        if (varpWaitTicks < 0) return;
+        if (checkVarp())
+        {
+            varpWaitTicks = -1;
+        }
+        else if (varpWaitTicks-- == 0)
+        {
+            log.debug("Membership varp unavailable, falling back to widget scan");
+            wideScanOnceThrottled();
         }
-        catch (Throwable t)
+    }
+
+    // only recorded, so a trace from this plugin alone also replays Bank Wealth
+    @Subscribe
+    public void onItemContainerChanged(ItemContainerChanged e)
+    {
+        if (trace != null) trace.container(e);
+    }
+
+    private void syncTrace()
+    {
+        if (!config.recordTrace()) closeTrace();
+        else if (trace == null && writer != null)
+        {
+            long max = Math.max(1, config.traceMaxMb()) * 1024L * 1024L;
+            trace = TraceRecorder.acquire("membership-days", TraceRecorder.defaultDir(), writer, max);
+        }
+    }
+
+    private void closeTrace()
+    {
+        if (trace == null) return;
+        trace = null;
+        TraceRecorder.release();
+    }
+
+    /** Reads the membership-days varp; true if it held a value, in which case widget scanning stops. */
+    private boolean checkVarp()
+    {
+        int days = client.getVarpValue(VarPlayer.MEMBERSHIP_DAYS);
+        if (days <= 0) return false; // not sent yet, or free-to-play: let the widgets decide
+
+        if (!varpActive)
         {
-            // Ignore unknown groups
+            varpActive = true;
+            varpWaitTicks = -1;
+            scanner.reset();
+            finishLoginScan(false);
         }
+        handleDays(days, "varp");
+        return true;
     }
 
-    private void traverse(Widget w, Consumer<Widget> visitor)
+    private void wideScanOnceThrottled()
     {
-        if (w == null) return;
-        visitor.accept(w);
+        long now = System.currentTimeMillis();
+        if (now - lastScanMs.get() < Math.max(250, config.throttleMs())) return;
+        lastScanMs.set(now);
+
+        if (loginScan) return;
 
-        Widget[] a = w.getStaticChildren();
-        if (a != null) for (Widget c : a) traverse(c, visitor);
+        // We do not use client.getWidgets() (not available). Components and groups that showed
+        // the value before are queued first; the sweep over every group id is the fallback,
+        // queued by onClientTick once these miss.
+        scans++;
+        loginScan = true;
+        sweeping = false;
+        loginScanStartVisited = scanner.visitedTotal();
+        loginScanNanos = 0;
 
-        Widget[] b = w.getDynamicChildren();
-        if (b != null) for (Widget c : b) traverse(c, visitor);
+        for (HotGroups.Entry e : hot.entries()) scanner.add(e.groupId, e.childIndex);
+        for (int g : hot.groups()) scanner.add(g, 0);
+    }
+
+    private void finishLoginScan(boolean found)
+    {
+        if (!loginScan) return;
+        loginScan = false;
+
+        long visited = scanner.visitedTotal() - loginScanStartVisited;
+        widgetsVisited += visited;
+        scanWidgets.record(visited);
+        scanNanos.record(loginScanNanos);
+        if (found)
+        {
+            scanHits++;
+            if (!sweeping) hotHits++;
+        }
+        log.debug("Membership scan: found={} sweep={} visited={} hits={}/{} hotHits={}",
+                found, sweeping, visited, scanHits, scans, hotHits);
+    }
+
+    private long budgetNanos()
+    {
+        return Math.max(50, config.scanBudgetMicros()) * 1_000L;
+    }
+
+    /** Sweep while nothing is learned, otherwise only every {@code fullSweepEvery} missed scans. */
+    private boolean shouldSweep()
+    {
+        if (hot.isEmpty()) return true;
+        int every = config.fullSweepEvery();
+        return every > 0 && missesSinceSweep + 1 >= every;
+    }
 
-        Widget[] c = w.getNestedChildren();
-        if (c != null) for (Widget n : c) traverse(n, visitor);
+    private static boolean contains(int[] a, int v)
+    {
+        for (int x : a) if (x == v) return true;
+        return false;
     }
 
-    private void checkWidget(Widget w)
+    private boolean checkWidget(Widget w)
     {
         String txt = safe(w.getText());
         if (!txt.isEmpty())
         {
             Integer d = parseDays(txt);
-            if (d != null) { handleDays(d); return; }
+            if (d != null) { handleDays(d, "ui"); return true; }
         }
 
         String nm = safe(w.getName());
         if (!nm.isEmpty())
         {
             Integer d = parseDays(nm);
-            if (d != null) { handleDays(d); }
+            if (d != null) { handleDays(d, "ui"); return true; }
         }
         // No tooltip call here (not present in this API version)
+        return false;
     }
 
-    private void handleDays(int days)
+    private void handleDays(int days, String source)
     {
         GameState gs = client.getGameState();
         if (gs == GameState.LOGIN_SCREEN || gs == GameState.LOGGING_IN)
@@ -171,7 +436,7 @@ public class MembershipDaysPlugin extends Plugin
 
             if (Objects.equals(lastWrittenRsn, rsn) && Objects.equals(lastWrittenDays, days)) return;
 
-            writeOut(rsn, days, "ui");
+            writeOut(rsn, days, source);
             lastWrittenRsn = rsn;
             lastWrittenDays = days;
         }
@@ -198,17 +463,14 @@ public class MembershipDaysPlugin extends Plugin
 
     private Integer parseDays(String text)
     {
-        String t = text == null ? "" : text.replace('\u00A0', ' ').trim();
-        if (t.isEmpty()) return null;
-        for (Pattern p : PATTERNS)
+        int d = DaysMatcher.parse(text);
+        parseCalls++;
+        if (d != DaysMatcher.NONE)
         {
-            Matcher m = p.matcher(t);
-            if (m.find())
-            {
-                try { return Integer.parseInt(m.group(1)); } catch (NumberFormatException ignored) {}
-            }
+            parseHits++;
+            if (Jfr.AVAILABLE) ParseEvent.hit(d, text);
         }
-        return null;
+        return d == DaysMatcher.NONE ? null : d;
     }
 
     private String rsn()
@@ -222,30 +484,132 @@ public class MembershipDaysPlugin extends Plugin
 
     private String safe(String s) { return s == null ? "" : s; }
 
-    private void writeOut(String rsn, int days, String source)
+    private void loadMetricsConfig()
     {
+        metricsFormat = config.metricsFormat();
+        metricsIntervalMs = Math.max(5, config.metricsIntervalSeconds()) * 1000L;
+    }
+
+    private void syncPush()
+    {
+        boolean enabled = config.pushEnabled();
+        int port = config.pushPort();
+        if (push != null && (!enabled || pushPort != port))
+        {
+            push.close();
+            push = null;
+        }
+        if (enabled && push == null)
+        {
+            push = new PushChannel("membership-days", port);
+            pushPort = port;
+        }
+    }
+
+    private void syncBoard()
+    {
+        if (!config.writeBoard())
+        {
+            board = null;
+            return;
+        }
+        if (board != null) return;
         try
         {
-            Path base = Paths.get(System.getProperty("user.home"), ".runelite", config.outputFolderName());
-            Files.createDirectories(base);
+            board = WealthBoard.open(WealthBoard.defaultFile(), true);
+        }
+        catch (Exception ex)
+        {
+            log.warn("MembershipDays could not open the wealth board", ex);
+        }
+    }
 
-            Path txt = base.resolve(rsn + ".txt");
-            Files.writeString(txt, Integer.toString(days), StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    private Metrics buildMetrics()
+    {
+        Metrics m = new Metrics("membershipdays_");
+        m.histogram("scan_slice_nanos", "Client-thread time per widget scan slice", sliceNanos);
+        m.histogram("scan_nanos", "Total scan time per login scan", scanNanos);
+        m.histogram("scan_widgets", "Widgets visited per login scan", scanWidgets);
+        m.counter("scans_total", "Login scans started", () -> scans);
+        m.counter("scan_hits_total", "Login scans that found a value", () -> scanHits);
+        m.counter("scan_hot_hits_total", "Login scans answered by a learned group", () -> hotHits);
+        m.counter("sweeps_total", "Full 800-group sweeps", () -> sweeps);
+        m.counter("parse_calls_total", "Strings run through the days parser", () -> parseCalls);
+        m.counter("parse_hits_total", "Strings that held a days value", () -> parseHits);
+        m.counter("push_sent_total", "Frames pushed to the agent", () -> push == null ? 0 : push.sent());
+        m.counter("push_dropped_total", "Frames dropped from a full push outbox", () -> push == null ? 0 : push.dropped());
+        writer.register(m);
+        return m;
+    }
 
-            if (config.writeJson())
-            {
-                String json = String.format(
-                        "{\"rsn\":\"%s\",\"days\":%d,\"captured_at\":\"%s\",\"source\":\"%s\"}\n",
-                        rsn, days, Instant.now().toString(), source);
-                Path js = base.resolve(rsn + ".json");
-                Files.writeString(js, json, StandardCharsets.UTF_8,
-                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            }
+    /** Client thread: only decides the file; rendering happens on the writer thread. */
+    private void exportMetrics(long now)
+    {
+        String rsn = rsn();
+        if (rsn == null) return;
+
+        Metrics m = metrics;
+        Metrics.Format fmt = metricsFormat;
+        Path file = outputDir().resolve("metrics").resolve(rsn + fmt.extension());
+        writer.run("metrics:" + file, () -> SnapshotWriter.writeAtomically(file, m.render(fmt, rsn, now), false));
+    }
+
+    private Path outputDir()
+    {
+        return Paths.get(System.getProperty("user.home"), ".runelite", config.outputFolderName());
+    }
+
+    /** Client thread: takes over what the writer read, keeping hits recorded meanwhile. */
+    private void adoptHotGroups(HotGroups learning, HotGroups loaded)
+    {
+        if (hot != learning) return; // restarted since
+        boolean learnedMeanwhile = !hot.isEmpty();
+        loaded.merge(hot);
+        hot = loaded;
+        hotLoaded = true;
+        if (learnedMeanwhile) saveHotGroups();
+    }
+
+    private void saveHotGroups()
+    {
+        // until the saved file is in, writing would replace what earlier sessions learned
+        if (writer == null || !hotLoaded) return;
+        writer.replace(outputDir().resolve(HotGroups.FILE), hot.serialize(), false);
+    }
+
+    /** Hands immutable snapshots to the writer thread; a newer value for the same file supersedes a queued one. */
+    private void writeOut(String rsn, int days, String source)
+    {
+        long now = System.currentTimeMillis();
+        if (push != null) push.membership(rsn, now, days, source);
+        if (board != null) board.putDays(rsn, now, days);
+        if (writer == null) return;
+
+        Path base = outputDir();
+        boolean fsync = config.fsyncWrites();
+
+        Path txt = base.resolve(rsn + ".txt");
+        if (!writer.replace(txt, Integer.toString(days).getBytes(StandardCharsets.UTF_8), fsync))
+        {
+            log.warn("MembershipDays write dropped for {}", rsn);
         }
-        catch (IOException ioe)
+
+        if (config.writeJson())
+        {
+            String json = String.format(
+                    "{\"rsn\":\"%s\",\"days\":%d,\"captured_at\":\"%s\",\"source\":\"%s\"}\n",
+                    rsn, days, Instant.ofEpochMilli(now).toString(), source);
+            Path js = base.resolve(rsn + ".json");
+            writer.replace(js, json.getBytes(StandardCharsets.UTF_8), fsync);
+        }
+
+        if (config.writeLedger())
         {
-            log.warn("MembershipDays write failed", ioe);
+            if (ledger == null || !ledger.dir().equals(base)) ledger = new MembershipLedger(base);
+            final MembershipLedger ml = ledger;
+            ml.enqueue(rsn, days, now, source);
+            // queued after the .txt, so a ledger seeded by this flush already sees it
+            writer.run(ml.file(), () -> ml.flush(fsync));
         }
     }
 }
@@ -0,0 +1,248 @@
+package uk.craig.membershipdays;
+
+import com.craig.shared.SnapshotWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import uk.craig.membershipdays.MembershipLedgerReader.Entry;
+
+/**
+ * Host-wide ledger of membership per RSN ({@code _ledger.bin} in the output folder), sorted by
+ * expiry so "who runs out in the next three days" is one read and a prefix.
+ *
+ * Expiry is the capture time plus the days shown, so it is good to the day. Little-endian
+ * layout, see {@link MembershipLedgerReader} for the reading side:
+ * <pre>
+ *  header (32 bytes)
+ *   0  int   magic 'MDLG'
+ *   4  int   format version (1)
+ *   8  int   record size (64)
+ *  12  int   record count
+ *  16  long  last update, epoch millis
+ *  24  int   CRC-32 of every record
+ *  28  int   0
+ *  records (64 bytes each, from offset 32), soonest expiry first, then by RSN
+ *   0  long  expires at, epoch millis
+ *   8  long  captured at, epoch millis
+ *  16  int   days
+ *  20  int   source: 0 = varp, 1 = ui, 2 = title, -1 = other
+ *  24  int   RSN length in bytes
+ *  28  byte[36] RSN as used in file names, UTF-8
+ * </pre>
+ * Every client on the host merges its accounts in under an exclusive lock on
+ * {@code _ledger.lock} and replaces the ledger by rename, so readers need no lock and never see
+ * a half-written file. A missing ledger is seeded from the per-account {@code <rsn>.txt} files.
+ *
+ * The client thread only calls {@link #enqueue}; {@link #flush} runs on the writer thread.
+ */
+final class MembershipLedger
+{
+    static final String FILE = "_ledger.bin";
+    static final String LOCK = "_ledger.lock";
+
+    static final long DAY_MS = 86_400_000L;
+
+    static final int MAGIC = 0x474C444D; // "MDLG" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 32;
+    static final int RECORD = 64;
+    static final int OFF_COUNT = 12;
+    static final int OFF_UPDATED = 16;
+    static final int OFF_CRC = 24;
+
+    static final int OFF_EXPIRES = 0;
+    static final int OFF_CAPTURED = 8;
+    static final int OFF_DAYS = 16;
+    static final int OFF_SOURCE = 20;
+    static final int OFF_NAME_LEN = 24;
+    static final int OFF_NAME = 28;
+    static final int NAME_MAX = RECORD - OFF_NAME;
+
+    private static final Comparator<Entry> BY_EXPIRY =
+            Comparator.comparingLong((Entry e) -> e.expiresAt).thenComparing(e -> e.rsn);
+
+    private final Path dir;
+    private final Map<String, Entry> pending = new HashMap<>(); // guarded by itself
+
+    MembershipLedger(Path dir)
+    {
+        this.dir = dir;
+    }
+
+    Path dir()
+    {
+        return dir;
+    }
+
+    Path file()
+    {
+        return dir.resolve(FILE);
+    }
+
+    /** Queues a value for {@code rsn} (file-safe); any thread. A later one for the same RSN wins. */
+    void enqueue(String rsn, int days, long capturedAtMs, String source)
+    {
+        synchronized (pending)
+        {
+            pending.put(rsn, new Entry(rsn, days, capturedAtMs, source));
+        }
+    }
+
+    /**
+     * Merges everything queued into the ledger. Writer thread only. If the merge fails, the
+     * batch is queued again for the next flush, except where a newer capture has replaced it.
+     */
+    void flush(boolean fsync) throws IOException
+    {
+        List<Entry> batch;
+        synchronized (pending)
+        {
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        try
+        {
+            merge(batch, fsync);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            synchronized (pending)
+            {
+                for (Entry e : batch) pending.putIfAbsent(e.rsn, e);
+            }
+            throw ex;
+        }
+    }
+
+    private void merge(List<Entry> batch, boolean fsync) throws IOException
+    {
+        Files.createDirectories(dir);
+        Path file = file();
+        try (FileChannel lockCh = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            FileLock lock = lockCh.lock();
+            try
+            {
+                Map<String, Entry> byRsn = new HashMap<>();
+                for (Entry e : load(file)) byRsn.put(e.rsn, e);
+                for (Entry e : batch)
+                {
+                    // another client may have seen this account more recently
+                    Entry old = byRsn.get(e.rsn);
+                    if (old == null || old.capturedAt <= e.capturedAt) byRsn.put(e.rsn, e);
+                }
+                List<Entry> entries = new ArrayList<>(byRsn.values());
+                entries.sort(BY_EXPIRY);
+                SnapshotWriter.writeAtomically(file, encode(entries, System.currentTimeMillis()), fsync);
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+    }
+
+    /** The current records; seeded from the per-account files if there is no readable ledger. */
+    private List<Entry> load(Path file) throws IOException
+    {
+        if (Files.exists(file))
+        {
+            try { return MembershipLedgerReader.decode(Files.readAllBytes(file)); }
+            catch (IOException ignored) {} // unreadable: rebuilt below, accounts re-report as they log in
+        }
+        return seed(dir);
+    }
+
+    /** One record per {@code <rsn>.txt}, anchored at {@code captured_at} from its .json or else its mtime. */
+    static List<Entry> seed(Path dir) throws IOException
+    {
+        List<Entry> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.txt"))
+        {
+            for (Path p : ds)
+            {
+                String name = p.getFileName().toString();
+                if (name.startsWith("_") || !Files.isRegularFile(p)) continue;
+                String rsn = name.substring(0, name.length() - ".txt".length());
+                try
+                {
+                    int days = Integer.parseInt(new String(Files.readAllBytes(p), StandardCharsets.UTF_8).trim());
+                    long captured = Files.getLastModifiedTime(p).toMillis();
+                    String source = null;
+                    Path js = dir.resolve(rsn + ".json");
+                    if (Files.exists(js))
+                    {
+                        String json = new String(Files.readAllBytes(js), StandardCharsets.UTF_8);
+                        String at = field(json, "captured_at");
+                        // only if it is for the same value; a stale .json is left over from writeJson being switched off
+                        if (at != null && String.valueOf(days).equals(number(json, "days")))
+                        {
+                            captured = Instant.parse(at).toEpochMilli();
+                            source = field(json, "source");
+                        }
+                    }
+                    out.add(new Entry(rsn, days, captured, source));
+                }
+                catch (RuntimeException ignored) {} // not a days file
+            }
+        }
+        return out;
+    }
+
+    static byte[] encode(List<Entry> entries, long nowMs)
+    {
+        ByteBuffer b = ByteBuffer.allocate(HEADER + entries.size() * RECORD).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, RECORD).putInt(OFF_COUNT, entries.size()).putLong(OFF_UPDATED, nowMs);
+        for (int i = 0; i < entries.size(); i++)
+        {
+            Entry e = entries.get(i);
+            int off = HEADER + i * RECORD;
+            byte[] name = e.rsn.getBytes(StandardCharsets.UTF_8);
+            int len = Math.min(name.length, NAME_MAX);
+            b.putLong(off + OFF_EXPIRES, e.expiresAt);
+            b.putLong(off + OFF_CAPTURED, e.capturedAt);
+            b.putInt(off + OFF_DAYS, e.days);
+            b.putInt(off + OFF_SOURCE, MembershipLedgerReader.sourceCode(e.source));
+            b.putInt(off + OFF_NAME_LEN, len);
+            b.position(off + OFF_NAME);
+            b.put(name, 0, len);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), HEADER, b.capacity() - HEADER);
+        b.putInt(OFF_CRC, (int) crc.getValue());
+        return b.array();
+    }
+
+    /** A string field of the one-line .json this plugin writes. */
+    private static String field(String json, String name)
+    {
+        String key = "\"" + name + "\":\"";
+        int i = json.indexOf(key);
+        if (i < 0) return null;
+        int end = json.indexOf('"', i + key.length());
+        return end < 0 ? null : json.substring(i + key.length(), end);
+    }
+
+    private static String number(String json, String name)
+    {
+        String key = "\"" + name + "\":";
+        int i = json.indexOf(key);
+        if (i < 0) return null;
+        int start = i + key.length(), end = start;
+        while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '-')) end++;
+        return json.substring(start, end);
+    }
+}
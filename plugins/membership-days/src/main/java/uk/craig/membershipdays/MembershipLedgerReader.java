@@ -0,0 +1,156 @@
+package uk.craig.membershipdays;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Lists every account's membership from {@code _ledger.bin} (see {@link MembershipLedger}),
+ * soonest expiry first, with one read of the whole file.
+ *
+ * <pre>
+ * java -cp membership-days.jar uk.craig.membershipdays.MembershipLedgerReader [--within DAYS] [dir]
+ * java -cp membership-days.jar uk.craig.membershipdays.MembershipLedgerReader --loads [dir]
+ * </pre>
+ * {@code --within} keeps accounts expiring in the next {@code DAYS} days (already expired
+ * included); {@code --loads} lists recent plugin loads instead. {@code dir} defaults to
+ * {@code ~/.runelite/membership-days}.
+ */
+public final class MembershipLedgerReader
+{
+    static final String[] SOURCES = { "varp", "ui", "title" };
+
+    /** Last days value seen for one RSN. */
+    public static final class Entry
+    {
+        public final String rsn;
+        public final int days;
+        public final long capturedAt;
+        public final long expiresAt;
+        public final String source;
+
+        Entry(String rsn, int days, long capturedAt, String source)
+        {
+            this.rsn = rsn;
+            this.days = days;
+            this.capturedAt = capturedAt;
+            this.expiresAt = capturedAt + days * MembershipLedger.DAY_MS;
+            this.source = source;
+        }
+
+        /** Whole days left at {@code nowMs}, rounded down; negative once expired. */
+        public long daysLeft(long nowMs)
+        {
+            return Math.floorDiv(expiresAt - nowMs, MembershipLedger.DAY_MS);
+        }
+
+        @Override
+        public String toString()
+        {
+            return rsn + "," + days + "," + Instant.ofEpochMilli(capturedAt) + "," + Instant.ofEpochMilli(expiresAt) + "," + source;
+        }
+    }
+
+    private MembershipLedgerReader() {}
+
+    /** Every record, soonest expiry first; an empty list if there is no ledger yet. */
+    public static List<Entry> read(Path file) throws IOException
+    {
+        if (!Files.exists(file)) return new ArrayList<>();
+        // replaced by rename, never written in place: one read is always a whole ledger
+        return decode(Files.readAllBytes(file));
+    }
+
+    /** The accounts in {@code sorted} (as {@link #read} returns it) that expire before {@code untilMs}. */
+    public static List<Entry> expiringBefore(List<Entry> sorted, long untilMs)
+    {
+        int lo = 0, hi = sorted.size();
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (sorted.get(mid).expiresAt < untilMs) lo = mid + 1;
+            else hi = mid;
+        }
+        return sorted.subList(0, lo);
+    }
+
+    static List<Entry> decode(byte[] bytes) throws IOException
+    {
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < MembershipLedger.HEADER || b.getInt(0) != MembershipLedger.MAGIC)
+        {
+            throw new IOException("not a membership ledger");
+        }
+        if (b.getInt(4) != MembershipLedger.FORMAT || b.getInt(8) != MembershipLedger.RECORD)
+        {
+            throw new IOException("unsupported membership ledger format " + b.getInt(4));
+        }
+        int count = b.getInt(MembershipLedger.OFF_COUNT);
+        if (count < 0 || MembershipLedger.HEADER + (long) count * MembershipLedger.RECORD != bytes.length)
+        {
+            throw new IOException("membership ledger truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, MembershipLedger.HEADER, bytes.length - MembershipLedger.HEADER);
+        if ((int) crc.getValue() != b.getInt(MembershipLedger.OFF_CRC)) throw new IOException("membership ledger corrupt");
+
+        List<Entry> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int off = MembershipLedger.HEADER + i * MembershipLedger.RECORD;
+            int len = Math.max(0, Math.min(MembershipLedger.NAME_MAX, b.getInt(off + MembershipLedger.OFF_NAME_LEN)));
+            int src = b.getInt(off + MembershipLedger.OFF_SOURCE);
+            out.add(new Entry(new String(bytes, off + MembershipLedger.OFF_NAME, len, StandardCharsets.UTF_8),
+                    b.getInt(off + MembershipLedger.OFF_DAYS), b.getLong(off + MembershipLedger.OFF_CAPTURED),
+                    src >= 0 && src < SOURCES.length ? SOURCES[src] : "other"));
+        }
+        return out;
+    }
+
+    static int sourceCode(String source)
+    {
+        for (int i = 0; i < SOURCES.length; i++) if (SOURCES[i].equals(source)) return i;
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        boolean loads = false;
+        long withinDays = -1;
+        Path dir = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("--loads".equals(args[i])) loads = true;
+            else if ("--within".equals(args[i]) && i + 1 < args.length) withinDays = Long.parseLong(args[++i]);
+            else if (dir == null && !args[i].startsWith("--")) dir = Paths.get(args[i]);
+            else
+            {
+                System.err.println("usage: MembershipLedgerReader [--within DAYS | --loads] [dir]");
+                System.exit(2);
+            }
+        }
+        if (dir == null) dir = Paths.get(System.getProperty("user.home"), ".runelite", "membership-days");
+
+        if (loads)
+        {
+            System.out.println("seq,loaded_at,pid");
+            for (LoadRing.Load l : LoadRing.read(dir.resolve(LoadRing.FILE)))
+            {
+                System.out.println(l.seq + "," + Instant.ofEpochMilli(l.timeMs) + "," + l.pid);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Entry> entries = read(dir.resolve(MembershipLedger.FILE));
+        if (withinDays >= 0) entries = expiringBefore(entries, now + withinDays * MembershipLedger.DAY_MS);
+        System.out.println("rsn,days,captured_at,expires_at,source,days_left");
+        for (Entry e : entries) System.out.println(e + "," + e.daysLeft(now));
+    }
+}
@@ -0,0 +1,41 @@
+package uk.craig.membershipdays;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A widget text that parsed as membership days; an instant event. Misses are not recorded:
+ * there is one per widget visited, and their time is in {@link ScanEvent}. Only used when
+ * {@code Jfr.AVAILABLE}.
+ */
+@Name(ParseEvent.NAME)
+@Label("Membership Days Parsed")
+@Category({ "RuneLite Plugins", "Membership Days" })
+@Description("Widget text recognised as membership days")
+@StackTrace(false)
+final class ParseEvent extends Event
+{
+    static final String NAME = "uk.craig.membershipdays.DaysParsed";
+
+    private static final EventType TYPE = EventType.getEventType(ParseEvent.class);
+
+    @Label("Days")
+    int days;
+
+    @Label("Text")
+    String text;
+
+    static void hit(int days, String text)
+    {
+        if (!TYPE.isEnabled()) return;
+        ParseEvent e = new ParseEvent();
+        e.days = days;
+        e.text = text;
+        e.commit();
+    }
+}
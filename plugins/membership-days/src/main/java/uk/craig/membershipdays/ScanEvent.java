@@ -0,0 +1,67 @@
+package uk.craig.membershipdays;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** One {@link WidgetScanner#step} slice on a client tick. Only used when {@code Jfr.AVAILABLE}. */
+@Name(ScanEvent.NAME)
+@Label("Membership Widget Scan")
+@Category({ "RuneLite Plugins", "Membership Days" })
+@Description("One client tick's slice of a widget walk looking for the membership days text")
+@Threshold("100 us")
+@StackTrace(false)
+final class ScanEvent extends Event
+{
+    static final String NAME = "uk.craig.membershipdays.WidgetScan";
+
+    private static final EventType TYPE = EventType.getEventType(ScanEvent.class);
+
+    @Label("Game Tick")
+    int tick;
+
+    @Label("Group")
+    @Description("Interface group being walked when the slice ended; -1 if the queue ran out")
+    int group;
+
+    @Label("Widgets Visited")
+    long visited;
+
+    @Label("Result")
+    @Description("more, hit or done")
+    String result;
+
+    @Label("Login Scan")
+    @Description("Part of the scan that follows a login, rather than a group that just loaded")
+    boolean loginScan;
+
+    private long visited0;
+
+    /** A started event, or null when no recording has this event on. */
+    static ScanEvent start(WidgetScanner scanner)
+    {
+        if (!TYPE.isEnabled()) return null;
+        ScanEvent e = new ScanEvent();
+        e.visited0 = scanner.visitedTotal();
+        e.begin();
+        return e;
+    }
+
+    void finish(int tick, WidgetScanner scanner, int result, boolean loginScan)
+    {
+        end();
+        if (!shouldCommit()) return;
+        this.tick = tick;
+        int target = result == WidgetScanner.HIT ? scanner.hitTarget() : scanner.currentTarget();
+        this.group = target < 0 ? -1 : target >>> 16;
+        this.visited = scanner.visitedTotal() - visited0;
+        this.result = result == WidgetScanner.HIT ? "hit" : result == WidgetScanner.DONE ? "done" : "more";
+        this.loginScan = loginScan;
+        commit();
+    }
+}
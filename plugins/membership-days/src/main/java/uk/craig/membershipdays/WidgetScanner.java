@@ -0,0 +1,198 @@
+package uk.craig.membershipdays;
+
+import net.runelite.api.widgets.Widget;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Resumable depth-first widget walk, so one big interface tree (or the 800-group sweep)
+ * is spread over several client ticks instead of being walked in one frame.
+ *
+ * Work is a queue of packed component ids ({@code groupId << 16 | childId}); each is
+ * resolved only when the walk reaches it. Widgets already seen in this pass are skipped,
+ * which stops a learned component and its enclosing group from being walked twice.
+ * Client thread only.
+ */
+final class WidgetScanner
+{
+    interface Resolver
+    {
+        Widget widget(int groupId, int childId);
+    }
+
+    static final int MORE = 0;  // budget ran out, call step again next tick
+    static final int HIT = 1;   // visitor matched; see hitTarget()/hitWidget()
+    static final int DONE = 2;  // nothing left to walk
+
+    // the clock is read once per this many units of work
+    private static final int CLOCK_EVERY = 16;
+
+    private final Resolver resolver;
+    private final Predicate<Widget> visitor;
+
+    private int[] targets = new int[64];
+    private int head, tail;
+
+    private final ArrayDeque<Widget> stack = new ArrayDeque<>();
+    private final Set<Widget> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int currentTarget = -1;
+
+    private int hitTarget = -1;
+    private Widget hitWidget;
+    private long visitedTotal;
+
+    WidgetScanner(Resolver resolver, Predicate<Widget> visitor)
+    {
+        this.resolver = resolver;
+        this.visitor = visitor;
+    }
+
+    /** Queues a component behind the existing work. */
+    void add(int groupId, int childId)
+    {
+        if (tail == targets.length) compact();
+        targets[tail++] = groupId << 16 | (childId & 0xFFFF);
+    }
+
+    /** Queues a component ahead of the existing work, e.g. a group that has just loaded. */
+    void addFirst(int groupId, int childId)
+    {
+        if (head == 0)
+        {
+            int n = tail - head;
+            int[] t = new int[Math.max(targets.length, n + 32) + 32];
+            System.arraycopy(targets, head, t, 32, n);
+            targets = t;
+            head = 32;
+            tail = 32 + n;
+        }
+        targets[--head] = groupId << 16 | (childId & 0xFFFF);
+    }
+
+    boolean idle()
+    {
+        return head == tail && stack.isEmpty();
+    }
+
+    /** Drops all queued work and forgets what was visited. */
+    void reset()
+    {
+        head = tail = 0;
+        stack.clear();
+        visited.clear();
+        currentTarget = -1;
+    }
+
+    /** Packed id of the queued component whose walk matched. */
+    int hitTarget()
+    {
+        return hitTarget;
+    }
+
+    Widget hitWidget()
+    {
+        return hitWidget;
+    }
+
+    /** Packed id of the component being walked; -1 between walks. */
+    int currentTarget()
+    {
+        return currentTarget;
+    }
+
+    /** Widgets handed to the visitor since construction. */
+    long visitedTotal()
+    {
+        return visitedTotal;
+    }
+
+    /**
+     * Walks until the visitor matches, the work runs out, or {@code budgetNanos} has passed.
+     * On {@link #HIT} the remaining work is kept; call {@link #reset} to abandon it.
+     */
+    int step(long budgetNanos)
+    {
+        long deadline = System.nanoTime() + budgetNanos;
+        int sinceClock = 0;
+
+        while (true)
+        {
+            if (++sinceClock >= CLOCK_EVERY)
+            {
+                sinceClock = 0;
+                if (System.nanoTime() - deadline >= 0) return MORE;
+            }
+
+            Widget w = stack.pollFirst();
+            if (w == null)
+            {
+                if (head == tail)
+                {
+                    visited.clear();
+                    currentTarget = -1;
+                    return DONE;
+                }
+                currentTarget = targets[head++];
+                try
+                {
+                    w = resolver.widget(currentTarget >>> 16, currentTarget & 0xFFFF);
+                }
+                catch (Throwable ignored)
+                {
+                    // unknown group
+                }
+                if (w == null) continue;
+            }
+
+            if (!visited.add(w)) continue;
+            visitedTotal++;
+
+            try
+            {
+                if (visitor.test(w))
+                {
+                    hitTarget = currentTarget;
+                    hitWidget = w;
+                    return HIT;
+                }
+                // pushed in reverse so children come off the stack in the old recursive order
+                push(w.getNestedChildren());
+                push(w.getDynamicChildren());
+                push(w.getStaticChildren());
+            }
+            catch (Throwable ignored)
+            {
+                // a widget going away mid-walk only loses that subtree
+            }
+        }
+    }
+
+    private void push(Widget[] children)
+    {
+        if (children == null) return;
+        for (int i = children.length - 1; i >= 0; i--)
+        {
+            if (children[i] != null) stack.addFirst(children[i]);
+        }
+    }
+
+    private void compact()
+    {
+        int n = tail - head;
+        if (head > 0 && n < targets.length / 2)
+        {
+            System.arraycopy(targets, head, targets, 0, n);
+        }
+        else
+        {
+            targets = Arrays.copyOfRange(targets, head, head + Math.max(targets.length * 2, 64));
+        }
+        head = 0;
+        tail = n;
+    }
+}
@@ -0,0 +1,174 @@
+package uk.craig.membershipdays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+/**
+ * {@link DaysMatcher} against the four regexes it replaced, applied the way parseDays used
+ * to: NBSP replaced by a space, trimmed, patterns in order, first parseable match wins.
+ */
+public class DaysMatcherDifferentialTest
+{
+    private static final List<Pattern> LEGACY = List.of(
+            Pattern.compile("\\b(\\d+)\\s+days?\\s+of\\s+membership\\s+left\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\bexpire[s]?\\s+in\\s+(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\bmembership\\b[^\\d]*(\\d+)\\s+days?\\s+(remaining|left)\\b", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\byou\\s+are\\s+a\\s+member\\b[^\\d]*(\\d+)\\s+days?\\b", Pattern.CASE_INSENSITIVE)
+    );
+
+    private static final int CORPUS = 200_000;
+
+    private static Integer legacyParse(String text)
+    {
+        String t = text == null ? "" : text.replace('\u00A0', ' ').trim();
+        if (t.isEmpty()) return null;
+        for (Pattern p : LEGACY)
+        {
+            Matcher m = p.matcher(t);
+            if (m.find())
+            {
+                try { return Integer.parseInt(m.group(1)); } catch (NumberFormatException ignored) {}
+            }
+        }
+        return null;
+    }
+
+    private static void check(String text)
+    {
+        int d = DaysMatcher.parse(text);
+        assertEquals("\"" + text + "\"", legacyParse(text), d == DaysMatcher.NONE ? null : d);
+    }
+
+    @Test
+    public void fixedCases()
+    {
+        String[] cases = {
+                null, "", "   ", "\u00A0", "Bank of Gielinor",
+                // one per pattern
+                "You have 42 days of membership left.",
+                "Your membership expires in 7 days",
+                "Membership: 365 days remaining",
+                "You are a member. 13 days",
+                "<col=ffffff>120</col> days of membership left",
+                // case
+                "42 DAYS OF MEMBERSHIP LEFT", "EXPIRES IN 3 DAY", "mEmBeRsHiP 9 dAyS lEfT", "YOU ARE A MEMBER for 2 Days",
+                // NBSP, tabs, newlines and runs of them between words and around the text
+                "42\u00A0days\u00A0of\u00A0membership\u00A0left", "\u00A0\u00A0expires in 5 days\u00A0",
+                "42\tdays\nof  membership\r\nleft", " \t 8 days of membership left \n",
+                "expires in  \u00A0 6 \u00A0 days", "42days of membership left", "expires in 5days",
+                // word boundaries and the optional s
+                "x42 days of membership left", "_42 days of membership left", "42 days of membership lefty",
+                "expires in 5 dayss", "expires in 5 days_", "expire in 1 day.", "reexpires in 4 days",
+                "membershipx 9 days left", "you are a members 3 days", "you are a member_ 3 days",
+                // fall-through between patterns, overflow, and leftmost match
+                "99999999999 days of membership left, membership: 5 days left",
+                "2147483647 days of membership left", "2147483648 days of membership left",
+                "expires in 2147483648 days; you are a member for 4 days",
+                "Membership: 12 days left. Expires in 3 days.", "1 days of membership left 2 days of membership left",
+                "Welcome to Old School RuneScape. Your last login was 2 days ago from 127.0.0.1.",
+        };
+        for (String s : cases) check(s);
+    }
+
+    @Test
+    public void unicodeWordBoundaries()
+    {
+        // Pattern's \b went ASCII-only in JDK 19; the matcher follows the JDK 11 client
+        assumeTrue(Runtime.version().feature() < 19);
+        String[] cases = {
+                "\u00E942 days of membership left", "42 days of membership left\u0450", "e\u0301xpires in 3 days",
+                "expires in 3 days\u0301", "\u017F expires in 3 days", "\uD835\uDC00expires in 3 days",
+                "expires in 3 days\uD835\uDC00", "you are a member\u00E9 1 day",
+        };
+        for (String s : cases) check(s);
+    }
+
+    /** Random token soup: mostly misses, with some near misses and hits. */
+    @Test
+    public void randomTokens()
+    {
+        String[] toks = {
+                "day", "days", "DAYS", "Day", "s", "of", "membership", "Membership", "member", "left", "remaining",
+                "expire", "expires", "EXPIRES", "in", "you", "are", "a", " ", "  ", "\u00A0", "\t", "\n", "1", "12",
+                "0", "999999999999", "2147483647", "2147483648", "_", "x", "-", ":", ".", "(", ")", "5", "K",
+                "you are a member", "membershipday",
+        };
+        Random r = new Random(1);
+        for (int n = 0; n < CORPUS; n++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int k = 1 + r.nextInt(12);
+            for (int i = 0; i < k; i++)
+            {
+                sb.append(toks[r.nextInt(toks.length)]);
+                if (r.nextInt(3) == 0) sb.append(' ');
+            }
+            check(sb.toString());
+        }
+    }
+
+    /** Each pattern's shape with its spacing, case, numbers and edges varied. */
+    @Test
+    public void randomNearMatches()
+    {
+        Random r = new Random(7);
+        for (int n = 0; n < CORPUS; n++)
+        {
+            String s;
+            switch (r.nextInt(5))
+            {
+                case 0:
+                    s = edge(r) + num(r) + ws(r) + day(r) + ws(r) + "of" + ws(r) + "Membership" + ws(r)
+                            + (r.nextBoolean() ? "left" : "lefts") + edge(r);
+                    break;
+                case 1:
+                    s = edge(r) + (r.nextBoolean() ? "expire" : "Expires") + ws(r) + "in" + ws(r) + num(r) + ws(r) + day(r) + edge(r);
+                    break;
+                case 2:
+                    s = edge(r) + "membership" + edge(r) + ": " + num(r) + ws(r) + day(r) + ws(r)
+                            + (r.nextBoolean() ? "remaining" : "left") + edge(r);
+                    break;
+                case 3:
+                    s = edge(r) + "You" + ws(r) + "are" + ws(r) + "a" + ws(r) + "member" + edge(r) + " for " + num(r) + ws(r) + day(r) + edge(r);
+                    break;
+                default:
+                    s = edge(r) + num(r) + ws(r) + day(r) + ws(r) + "of membership left. Membership: " + num(r)
+                            + " days left; expires in " + num(r) + " " + day(r) + edge(r);
+                    break;
+            }
+            if (r.nextInt(4) == 0) s = ws(r) + s + ws(r);
+            check(s);
+        }
+    }
+
+    private static String ws(Random r)
+    {
+        return pick(r, " ", "  ", "\u00A0", "\t", "", "\n");
+    }
+
+    private static String num(Random r)
+    {
+        return pick(r, "1", "07", "30", "2147483647", "2147483648", "99999999999", "0");
+    }
+
+    private static String edge(Random r)
+    {
+        return pick(r, "", "x", "_", "1", ".", "Your ", "abc", "<br>");
+    }
+
+    private static String day(Random r)
+    {
+        return pick(r, "day", "days", "DAYS", "Day", "dayss", "dayx", "day_");
+    }
+
+    private static String pick(Random r, String... options)
+    {
+        return options[r.nextInt(options.length)];
+    }
+}
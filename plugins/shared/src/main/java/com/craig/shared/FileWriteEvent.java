@@ -0,0 +1,51 @@
+package com.craig.shared;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** One task on the {@link SnapshotWriter} thread. Only used when {@link Jfr#AVAILABLE}. */
+@Name(FileWriteEvent.NAME)
+@Label("Plugin File Write")
+@Category({ "RuneLite Plugins", "File Writes" })
+@Description("A queued write run on the plugins' writer thread, with the bytes it wrote")
+@Threshold("1 ms")
+@StackTrace(false)
+final class FileWriteEvent extends Event
+{
+    static final String NAME = "com.craig.shared.FileWrite";
+
+    private static final EventType TYPE = EventType.getEventType(FileWriteEvent.class);
+
+    @Label("Path")
+    @Description("File written, or the task's key")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /** A started event, or null when no recording has this event on. */
+    static FileWriteEvent start()
+    {
+        if (!TYPE.isEnabled()) return null;
+        FileWriteEvent e = new FileWriteEvent();
+        e.begin();
+        return e;
+    }
+
+    void finish(Object key, long bytes)
+    {
+        end();
+        if (!shouldCommit()) return;
+        this.path = String.valueOf(key);
+        this.bytes = bytes;
+        commit();
+    }
+}
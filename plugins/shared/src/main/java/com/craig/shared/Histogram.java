@@ -0,0 +1,70 @@
+package com.craig.shared;
+
+/**
+ * Fixed-bucket histogram for latencies and sizes, cheap enough for the client thread.
+ *
+ * Values below 16 get a bucket each; above that every power of two is split into 8
+ * sub-buckets, so any recorded value is reported within 12.5%. The bucket array is
+ * allocated once and {@link #record} never allocates.
+ *
+ * One recording thread per instance. Readers on other threads (the metrics export) see a
+ * racy but monotonic view, which is fine for periodic scraping.
+ */
+public final class Histogram
+{
+    private static final int EXACT = 16;
+    private static final int SUB = 8;
+    static final int BUCKETS = EXACT + (64 - 4) * SUB;
+
+    private final long[] counts = new long[BUCKETS];
+    private volatile long count;
+    private long sum;
+    private long max;
+
+    public void record(long value)
+    {
+        if (value < 0) value = 0;
+        counts[bucket(value)]++;
+        sum += value;
+        if (value > max) max = value;
+        count++; // volatile write last, so a reader that sees it sees the bucket too
+    }
+
+    public long count() { return count; }
+    public long sum()   { return sum; }
+    public long max()   { return max; }
+
+    /** Upper bound of the bucket holding the {@code q} quantile (0..1); 0 when empty. */
+    public long quantile(double q)
+    {
+        long n = count;
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++)
+        {
+            seen += counts[b];
+            if (seen >= rank) return Math.min(upperBound(b), max);
+        }
+        return max;
+    }
+
+    static int bucket(long v)
+    {
+        if (v < EXACT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v); // >= 4
+        int sub = (int) (v >>> (exp - 3)) & (SUB - 1);
+        return EXACT + (exp - 4) * SUB + sub;
+    }
+
+    /** Largest value that lands in bucket {@code b}. */
+    static long upperBound(int b)
+    {
+        if (b < EXACT) return b;
+        int exp = (b - EXACT) / SUB + 4;
+        int sub = (b - EXACT) % SUB;
+        long width = 1L << (exp - 3);
+        long lo = (1L << exp) + sub * width;
+        return lo + width - 1 < 0 ? Long.MAX_VALUE : lo + width - 1;
+    }
+}
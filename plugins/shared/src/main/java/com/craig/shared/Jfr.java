@@ -0,0 +1,25 @@
+package com.craig.shared;
+
+/**
+ * Whether this runtime has Flight Recorder. The plugins' JFR event classes are only touched
+ * behind this flag, so a JRE built without the jdk.jfr module never loads them.
+ */
+public final class Jfr
+{
+    public static final boolean AVAILABLE = available();
+
+    private Jfr() { }
+
+    private static boolean available()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, Jfr.class.getClassLoader());
+            return true;
+        }
+        catch (Throwable t)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads a Flight Recorder file and prints how much client-thread time the plugins took per
+ * game tick, and their slowest events.
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:filename=client.jfr ...    (record the client)
+ * java -cp bank-wealth.jar com.craig.shared.JfrReport client.jfr [--top N]
+ * </pre>
+ * Client-thread time per tick is Bank Wealth recalcs plus Membership Days widget scan slices,
+ * grouped by the game tick they ran in; writer-thread file writes are listed separately.
+ * Events shorter than their threshold (100 us on the client thread, 1 ms for writes) are not
+ * in the recording, so budgets are a lower bound unless the recording's settings lower them.
+ */
+public final class JfrReport
+{
+    // event names as declared on the plugins' event classes
+    static final String RECALC = "com.craig.bankwealth.Recalc";
+    static final String SCAN = "uk.craig.membershipdays.WidgetScan";
+    static final String PARSED = "uk.craig.membershipdays.DaysParsed";
+    static final String WRITE = FileWriteEvent.NAME;
+
+    private JfrReport() { }
+
+    /** Plugin work in one game tick. */
+    private static final class Tick
+    {
+        final int tick;
+        long recalcNanos, scanNanos;
+        int recalcs, slices;
+        long visited;
+
+        Tick(int tick) { this.tick = tick; }
+
+        long nanos() { return recalcNanos + scanNanos; }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path file = null;
+        int top = 10;
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("--top".equals(args[i]) && i + 1 < args.length) top = Integer.parseInt(args[++i]);
+            else file = Paths.get(args[i]);
+        }
+        if (file == null)
+        {
+            System.err.println("usage: JfrReport <recording.jfr> [--top N]");
+            System.exit(2);
+        }
+
+        Map<Integer, Tick> ticks = new HashMap<>();
+        List<RecordedEvent> clientEvents = new ArrayList<>();
+        List<RecordedEvent> writes = new ArrayList<>();
+        List<RecordedEvent> parsed = new ArrayList<>();
+        Histogram recalc = new Histogram(), scan = new Histogram(), write = new Histogram();
+        long writeBytes = 0;
+
+        for (RecordedEvent e : RecordingFile.readAllEvents(file))
+        {
+            String name = e.getEventType().getName();
+            long nanos = e.getDuration().toNanos();
+            switch (name)
+            {
+                case RECALC:
+                {
+                    Tick t = ticks.computeIfAbsent(e.getInt("tick"), Tick::new);
+                    t.recalcNanos += nanos;
+                    t.recalcs++;
+                    recalc.record(nanos);
+                    clientEvents.add(e);
+                    break;
+                }
+                case SCAN:
+                {
+                    Tick t = ticks.computeIfAbsent(e.getInt("tick"), Tick::new);
+                    t.scanNanos += nanos;
+                    t.slices++;
+                    t.visited += e.getLong("visited");
+                    scan.record(nanos);
+                    clientEvents.add(e);
+                    break;
+                }
+                case PARSED:
+                    parsed.add(e);
+                    break;
+                case WRITE:
+                    write.record(nanos);
+                    writeBytes += e.getLong("bytes");
+                    writes.add(e);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        System.out.println(file);
+        if (ticks.isEmpty() && writes.isEmpty() && parsed.isEmpty())
+        {
+            System.out.println("no plugin events; was the client recording with them enabled?");
+            return;
+        }
+
+        Histogram perTick = new Histogram();
+        for (Tick t : ticks.values()) perTick.record(t.nanos());
+        System.out.printf("%nclient-thread time per game tick with plugin work (%d ticks)%n", ticks.size());
+        System.out.printf("  p50 %s  p90 %s  p99 %s  max %s  total %s%n",
+                us(perTick.quantile(0.5)), us(perTick.quantile(0.9)), us(perTick.quantile(0.99)),
+                us(perTick.max()), us(perTick.sum()));
+        // plugin work comes out of the frame it runs in: ~20 ms at 50 fps
+        System.out.printf("  ticks over 1 ms: %d, over 5 ms: %d, over 20 ms: %d%n",
+                over(ticks, 1_000_000), over(ticks, 5_000_000), over(ticks, 20_000_000));
+
+        System.out.printf("%nby event%n");
+        row("recalc (bank wealth)", recalc);
+        row("widget scan slice", scan);
+        row("file write (writer thread)", write);
+        if (write.count() > 0) System.out.printf("  file writes wrote %d bytes%n", writeBytes);
+
+        List<Tick> worstTicks = new ArrayList<>(ticks.values());
+        worstTicks.sort(Comparator.comparingLong(Tick::nanos).reversed());
+        System.out.printf("%nworst ticks%n");
+        for (Tick t : worstTicks.subList(0, Math.min(top, worstTicks.size())))
+        {
+            System.out.printf("  tick %-8d %10s  recalc %s in %d, scan %s in %d slices (%d widgets)%n",
+                    t.tick, us(t.nanos()), us(t.recalcNanos), t.recalcs, us(t.scanNanos), t.slices, t.visited);
+        }
+
+        clientEvents.sort(Comparator.comparingLong((RecordedEvent e) -> e.getDuration().toNanos()).reversed());
+        System.out.printf("%nslowest client-thread events%n");
+        for (RecordedEvent e : clientEvents.subList(0, Math.min(top, clientEvents.size())))
+        {
+            String what = RECALC.equals(e.getEventType().getName())
+                    ? String.format("recalc tick %d, %d slots revalued%s, %d lookups (%d misses)",
+                            e.getInt("tick"), e.getInt("slotsRevalued"), e.getBoolean("full") ? " (full)" : "",
+                            e.getLong("priceLookups"), e.getLong("priceMisses"))
+                    : String.format("scan tick %d, group %d, %d widgets, %s%s",
+                            e.getInt("tick"), e.getInt("group"), e.getLong("visited"), e.getString("result"),
+                            e.getBoolean("loginScan") ? " (login scan)" : "");
+            System.out.printf("  %10s  %s%n", us(e.getDuration().toNanos()), what);
+        }
+
+        if (!writes.isEmpty())
+        {
+            writes.sort(Comparator.comparingLong((RecordedEvent e) -> e.getDuration().toNanos()).reversed());
+            System.out.printf("%nslowest file writes%n");
+            for (RecordedEvent e : writes.subList(0, Math.min(top, writes.size())))
+            {
+                System.out.printf("  %10s  %8d B  %s%n", us(e.getDuration().toNanos()), e.getLong("bytes"), e.getString("path"));
+            }
+        }
+
+        if (!parsed.isEmpty())
+        {
+            parsed.sort(Comparator.comparing(RecordedEvent::getStartTime));
+            System.out.printf("%ndays parsed: %d%n", parsed.size());
+            for (RecordedEvent e : parsed.subList(Math.max(0, parsed.size() - top), parsed.size()))
+            {
+                System.out.printf("  %s  %d days  \"%s\"%n", e.getStartTime(), e.getInt("days"), e.getString("text"));
+            }
+        }
+    }
+
+    private static long over(Map<Integer, Tick> ticks, long nanos)
+    {
+        long n = 0;
+        for (Tick t : ticks.values()) if (t.nanos() > nanos) n++;
+        return n;
+    }
+
+    private static void row(String label, Histogram h)
+    {
+        if (h.count() == 0) return;
+        System.out.printf("  %-28s %7d  p50 %s  p99 %s  max %s  total %s%n", label, h.count(),
+                us(h.quantile(0.5)), us(h.quantile(0.99)), us(h.max()), us(h.sum()));
+    }
+
+    private static String us(long nanos)
+    {
+        return nanos >= 10_000_000 ? nanos / 1_000_000 + " ms" : nanos / 1_000 + " us";
+    }
+}
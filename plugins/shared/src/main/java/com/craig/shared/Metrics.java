@@ -0,0 +1,137 @@
+package com.craig.shared;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * A plugin's histograms and counters, rendered on demand as Prometheus text or compact JSON.
+ *
+ * Histograms are recorded directly by the code being measured; counters are suppliers read
+ * only at render time, so existing fields can be exported without touching their hot paths.
+ * Rendering allocates and belongs on the writer thread.
+ */
+public final class Metrics
+{
+    public enum Format
+    {
+        OFF,
+        PROMETHEUS,
+        JSON;
+
+        public String extension()
+        {
+            return this == JSON ? ".json" : ".prom";
+        }
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    private final String prefix;
+    private final List<String> names = new ArrayList<>();
+    private final List<String> helps = new ArrayList<>();
+    private final List<Object> sources = new ArrayList<>(); // Histogram or LongSupplier
+
+    /** {@code prefix} goes in front of every metric name, e.g. {@code "bankwealth_"}. */
+    public Metrics(String prefix)
+    {
+        this.prefix = prefix;
+    }
+
+    public Histogram histogram(String name, String help)
+    {
+        Histogram h = new Histogram();
+        add(name, help, h);
+        return h;
+    }
+
+    /** Registers an existing histogram, e.g. one owned by {@link SnapshotWriter}. */
+    public void histogram(String name, String help, Histogram h)
+    {
+        add(name, help, h);
+    }
+
+    public void counter(String name, String help, LongSupplier value)
+    {
+        add(name, help, value);
+    }
+
+    private synchronized void add(String name, String help, Object source)
+    {
+        names.add(name);
+        helps.add(help);
+        sources.add(source);
+    }
+
+    public byte[] render(Format format, String rsn, long nowMs)
+    {
+        String s = format == Format.JSON ? json(rsn, nowMs) : prometheus(rsn);
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Histograms become summaries (quantiles, _sum, _count, _max); counters stay counters. */
+    public synchronized String prometheus(String rsn)
+    {
+        String label = "{rsn=\"" + escape(rsn) + "\"";
+        StringBuilder sb = new StringBuilder(2048);
+        for (int i = 0; i < names.size(); i++)
+        {
+            String n = prefix + names.get(i);
+            Object src = sources.get(i);
+            sb.append("# HELP ").append(n).append(' ').append(helps.get(i)).append('\n');
+            if (src instanceof Histogram)
+            {
+                Histogram h = (Histogram) src;
+                sb.append("# TYPE ").append(n).append(" summary\n");
+                for (double q : QUANTILES)
+                {
+                    sb.append(n).append(label).append(",quantile=\"").append(q).append("\"} ")
+                      .append(h.quantile(q)).append('\n');
+                }
+                sb.append(n).append("_sum").append(label).append("} ").append(h.sum()).append('\n');
+                sb.append(n).append("_count").append(label).append("} ").append(h.count()).append('\n');
+                sb.append(n).append("_max").append(label).append("} ").append(h.max()).append('\n');
+            }
+            else
+            {
+                sb.append("# TYPE ").append(n).append(" counter\n");
+                sb.append(n).append(label).append("} ").append(((LongSupplier) src).getAsLong()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /** {"rsn":..,"ts":..,"metrics":{"name":{"count":..,"sum":..,"p50":..,"p90":..,"p99":..,"max":..},"counter":n}} */
+    public synchronized String json(String rsn, long nowMs)
+    {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"rsn\":\"").append(escape(rsn)).append("\",\"ts\":").append(nowMs).append(",\"metrics\":{");
+        for (int i = 0; i < names.size(); i++)
+        {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(prefix).append(names.get(i)).append("\":");
+            Object src = sources.get(i);
+            if (src instanceof Histogram)
+            {
+                Histogram h = (Histogram) src;
+                sb.append("{\"count\":").append(h.count())
+                  .append(",\"sum\":").append(h.sum())
+                  .append(",\"p50\":").append(h.quantile(0.5))
+                  .append(",\"p90\":").append(h.quantile(0.9))
+                  .append(",\"p99\":").append(h.quantile(0.99))
+                  .append(",\"max\":").append(h.max()).append('}');
+            }
+            else
+            {
+                sb.append(((LongSupplier) src).getAsLong());
+            }
+        }
+        return sb.append("}}\n").toString();
+    }
+
+    private static String escape(String s)
+    {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
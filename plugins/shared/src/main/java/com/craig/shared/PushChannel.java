@@ -0,0 +1,229 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One-way push of snapshots to the local agent over loopback TCP, next to the file output.
+ *
+ * Callers only build a small frame and queue it; a daemon thread owns the socket, connects
+ * with exponential backoff (250 ms doubling to 30 s, with jitter) and drains the outbox.
+ * While the agent is down the outbox keeps the newest {@link #OUTBOX} frames and drops the
+ * oldest, so files remain the source of truth and nothing here can grow without bound.
+ *
+ * Wire format, big-endian, one frame per message:
+ * <pre>
+ *   u32  length of everything after this field
+ *   u8   protocol version (1)
+ *   u8   type
+ *   ...  payload
+ *
+ *   HELLO       (1): str source
+ *   WEALTH      (2): i64 epoch ms, str rsn, i64 bank GE value, i64 bank coins, i64 inventory coins
+ *   MEMBERSHIP  (3): i64 epoch ms, str rsn, i32 days, str source ("ui", "title", "varp")
+ *
+ *   str = u16 byte length + UTF-8
+ * </pre>
+ * HELLO is sent first on every connection. The agent never writes back.
+ */
+public final class PushChannel implements AutoCloseable
+{
+    private static final Logger log = LoggerFactory.getLogger(PushChannel.class);
+
+    public static final int DEFAULT_PORT = 47731;
+    public static final int VERSION = 1;
+    public static final int TYPE_HELLO = 1;
+    public static final int TYPE_WEALTH = 2;
+    public static final int TYPE_MEMBERSHIP = 3;
+
+    static final int OUTBOX = 512;
+    private static final long BACKOFF_MIN_MS = 250;
+    private static final long BACKOFF_MAX_MS = 30_000;
+
+    private final String source;
+    private final InetSocketAddress address;
+    private final Thread thread;
+
+    private final ArrayDeque<byte[]> outbox = new ArrayDeque<>();
+    private boolean closed;
+
+    // metrics; written under outbox lock or by the push thread, read racily
+    private volatile long sent;
+    private volatile long dropped;
+    private volatile long connects;
+    private volatile boolean connected;
+
+    /** {@code source} names the sender in the HELLO frame, e.g. {@code "bank-wealth"}. */
+    public PushChannel(String source, int port)
+    {
+        this.source = source;
+        this.address = new InetSocketAddress("127.0.0.1", port);
+        this.thread = new Thread(this::loop, "plugin-push-" + source);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void wealth(String rsn, long timestampMs, long bankValue, long bankCoins, long invCoins)
+    {
+        byte[] r = utf8(rsn);
+        ByteBuffer b = frame(TYPE_WEALTH, 8 + 2 + r.length + 24);
+        b.putLong(timestampMs);
+        putStr(b, r);
+        b.putLong(bankValue).putLong(bankCoins).putLong(invCoins);
+        offer(b.array());
+    }
+
+    public void membership(String rsn, long timestampMs, int days, String daysSource)
+    {
+        byte[] r = utf8(rsn);
+        byte[] s = utf8(daysSource);
+        ByteBuffer b = frame(TYPE_MEMBERSHIP, 8 + 2 + r.length + 4 + 2 + s.length);
+        b.putLong(timestampMs);
+        putStr(b, r);
+        b.putInt(days);
+        putStr(b, s);
+        offer(b.array());
+    }
+
+    public boolean connected() { return connected; }
+    public long sent()         { return sent; }
+    public long dropped()      { return dropped; }
+    public long connects()     { return connects; }
+
+    /** Stops the push thread; whatever is still queued is dropped (the files have it). */
+    @Override
+    public void close()
+    {
+        synchronized (outbox)
+        {
+            closed = true;
+            outbox.clear();
+            outbox.notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    private void offer(byte[] frame)
+    {
+        synchronized (outbox)
+        {
+            if (closed) return;
+            if (outbox.size() >= OUTBOX)
+            {
+                outbox.pollFirst();
+                dropped++;
+            }
+            outbox.addLast(frame);
+            outbox.notifyAll();
+        }
+    }
+
+    private void loop()
+    {
+        long backoff = BACKOFF_MIN_MS;
+        while (!isClosed())
+        {
+            try (SocketChannel ch = SocketChannel.open())
+            {
+                ch.socket().setTcpNoDelay(true);
+                ch.connect(address);
+                connected = true;
+                connects++;
+                backoff = BACKOFF_MIN_MS;
+                log.debug("Push channel {} connected to {}", source, address);
+
+                write(ch, hello());
+                drain(ch);
+            }
+            catch (IOException ex)
+            {
+                // agent not running or went away; the frame being sent stays at the head
+            }
+            finally
+            {
+                connected = false;
+            }
+
+            if (isClosed()) return;
+            long sleep = backoff + ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+            backoff = Math.min(BACKOFF_MAX_MS, backoff * 2);
+            try { Thread.sleep(sleep); }
+            catch (InterruptedException e) { return; }
+        }
+    }
+
+    private void drain(SocketChannel ch) throws IOException
+    {
+        while (true)
+        {
+            byte[] next;
+            synchronized (outbox)
+            {
+                while (outbox.isEmpty() && !closed)
+                {
+                    try { outbox.wait(); }
+                    catch (InterruptedException e) { return; }
+                }
+                if (closed) return;
+                next = outbox.peekFirst();
+            }
+
+            write(ch, next);
+
+            synchronized (outbox)
+            {
+                // only drop it once it is on the wire; it may have been evicted meanwhile
+                if (outbox.peekFirst() == next) outbox.pollFirst();
+                sent++;
+            }
+        }
+    }
+
+    private static void write(SocketChannel ch, byte[] frame) throws IOException
+    {
+        ByteBuffer b = ByteBuffer.wrap(frame);
+        while (b.hasRemaining()) ch.write(b);
+    }
+
+    private boolean isClosed()
+    {
+        synchronized (outbox) { return closed; }
+    }
+
+    private byte[] hello()
+    {
+        byte[] s = utf8(source);
+        ByteBuffer b = frame(TYPE_HELLO, 2 + s.length);
+        putStr(b, s);
+        return b.array();
+    }
+
+    private static ByteBuffer frame(int type, int payload)
+    {
+        ByteBuffer b = ByteBuffer.allocate(4 + 2 + payload).order(ByteOrder.BIG_ENDIAN);
+        b.putInt(2 + payload);
+        b.put((byte) VERSION).put((byte) type);
+        return b;
+    }
+
+    private static byte[] utf8(String s)
+    {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        return b.length > 0xFFFF ? Arrays.copyOf(b, 0xFFFF) : b;
+    }
+
+    private static void putStr(ByteBuffer b, byte[] s)
+    {
+        b.putShort((short) s.length);
+        b.put(s);
+    }
+}
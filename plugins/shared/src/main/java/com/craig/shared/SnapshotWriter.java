@@ -0,0 +1,326 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single background writer for plugin file output, so the client thread never blocks on disk.
+ *
+ * Work is keyed by file. A queued replace is superseded by a newer one for the same file,
+ * and a queued task for a key absorbs later submissions for that key (tasks drain their own
+ * pending state, so one run covers them all). Everything queued when the writer wakes is
+ * written as one group. The queue is bounded by distinct keys; beyond that, new keys are
+ * dropped and counted. Opening, closing and migrating files go through {@link #runAlways},
+ * which is never absorbed and never dropped while the writer runs.
+ *
+ * One instance per classloader, reference counted via {@link #acquire()} / {@link #release()}.
+ */
+public final class SnapshotWriter
+{
+    private static final Logger log = LoggerFactory.getLogger(SnapshotWriter.class);
+
+    /** Work run on the writer thread. */
+    public interface Task
+    {
+        void run() throws IOException;
+    }
+
+    private static final int CAPACITY = 256;
+
+    private static SnapshotWriter shared;
+    private static int refs;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Object, Object> pending = new LinkedHashMap<>();
+    private final Thread thread;
+    private boolean stopping;
+    private boolean busy;
+
+    // metrics; written under lock, read racily
+    private volatile long submitted;
+    private volatile long coalesced;
+    private volatile long dropped;
+    private volatile long completed;
+    private volatile long failed;
+
+    // writer thread only
+    private final Histogram taskNanos = new Histogram();
+    private static final Histogram WRITE_BYTES = new Histogram();
+
+    private SnapshotWriter()
+    {
+        thread = new Thread(this::loop, "plugin-snapshot-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized SnapshotWriter acquire()
+    {
+        if (shared == null) shared = new SnapshotWriter();
+        refs++;
+        return shared;
+    }
+
+    /**
+     * Flushes what is queued (waiting at most {@code timeoutMs}) and, once the last
+     * holder has released, stops the writer thread.
+     */
+    public static void release(long timeoutMs)
+    {
+        SnapshotWriter w;
+        boolean last;
+        synchronized (SnapshotWriter.class)
+        {
+            w = shared;
+            if (w == null) return;
+            last = --refs <= 0;
+            if (last)
+            {
+                shared = null;
+                refs = 0;
+            }
+        }
+
+        w.flush(timeoutMs);
+        if (last) w.stop(timeoutMs);
+    }
+
+    /** Atomically replaces {@code file} with {@code bytes}; supersedes a queued replace of the same file. */
+    public boolean replace(Path file, byte[] bytes, boolean fsync)
+    {
+        return enqueue(file, new Replace(file, bytes, fsync), true);
+    }
+
+    /** Runs {@code task} on the writer thread; absorbed by an already queued task with the same key. */
+    public boolean run(Object key, Task task)
+    {
+        return enqueue(key, task, false);
+    }
+
+    /**
+     * Runs {@code task} on the writer thread in queue order, even on a full queue; it neither
+     * absorbs nor is absorbed by other work. {@code label} names it in logs and events. Refused,
+     * with a warning, only once the writer has stopped.
+     */
+    public boolean runAlways(Object label, Task task)
+    {
+        synchronized (lock)
+        {
+            if (stopping)
+            {
+                dropped++;
+                log.warn("Snapshot writer stopped; {} was not run", label);
+                return false;
+            }
+            submitted++;
+            pending.put(new Once(label), task);
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    public int queueDepth()
+    {
+        synchronized (lock) { return pending.size(); }
+    }
+
+    public long submitted() { return submitted; }
+    public long coalesced() { return coalesced; }
+    public long dropped()   { return dropped; }
+    public long completed() { return completed; }
+    public long failed()    { return failed; }
+
+    /** Adds the writer's queue counters, task latency and write sizes to {@code m}. */
+    public void register(Metrics m)
+    {
+        m.histogram("write_task_nanos", "Time per queued write on the writer thread", taskNanos);
+        m.histogram("write_bytes", "Bytes per file write", WRITE_BYTES);
+        m.counter("writes_submitted_total", "Writes handed to the writer", this::submitted);
+        m.counter("writes_coalesced_total", "Writes absorbed by an already queued write", this::coalesced);
+        m.counter("writes_dropped_total", "Writes dropped on a full queue or after shutdown", this::dropped);
+        m.counter("writes_failed_total", "Writes that threw", this::failed);
+    }
+
+    /** For tasks that write without {@link #writeAtomically}; writer thread only. */
+    public static void recordBytes(long bytes)
+    {
+        WRITE_BYTES.record(bytes);
+    }
+
+    /** Total bytes written by every writer in this classloader so far. */
+    public static long bytesWritten()
+    {
+        return WRITE_BYTES.sum();
+    }
+
+    /** Waits until everything queued so far has been written. */
+    public void flush(long timeoutMs)
+    {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock)
+        {
+            while (!pending.isEmpty() || busy)
+            {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0 || !thread.isAlive()) return;
+                try { lock.wait(left); }
+                catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    /** Write-to-temp-then-move; for tasks already running on the writer thread. */
+    public static void writeAtomically(Path file, byte[] bytes, boolean fsync) throws IOException
+    {
+        Path dir = file.getParent();
+        if (dir != null) Files.createDirectories(dir);
+
+        Path tmp = file.resolveSibling(file.getFileName().toString() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) ch.write(buf);
+            if (fsync) ch.force(false);
+        }
+        WRITE_BYTES.record(bytes.length);
+        try { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+        catch (Exception ignore) { Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING); }
+    }
+
+    private boolean enqueue(Object key, Object op, boolean supersede)
+    {
+        synchronized (lock)
+        {
+            if (stopping) { dropped++; return false; }
+            submitted++;
+
+            if (pending.containsKey(key))
+            {
+                if (supersede) pending.put(key, op); // keeps its place in the queue
+                coalesced++;
+                return true;
+            }
+            if (pending.size() >= CAPACITY)
+            {
+                dropped++;
+                return false;
+            }
+
+            pending.put(key, op);
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    private void stop(long timeoutMs)
+    {
+        synchronized (lock)
+        {
+            stopping = true;
+            lock.notifyAll();
+        }
+        try { thread.join(timeoutMs); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void loop()
+    {
+        Object[] keys = new Object[CAPACITY];
+        Object[] group = new Object[CAPACITY];
+        while (true)
+        {
+            int n = 0;
+            synchronized (lock)
+            {
+                busy = false;
+                lock.notifyAll();
+                while (pending.isEmpty() && !stopping)
+                {
+                    try { lock.wait(); } catch (InterruptedException e) { return; }
+                }
+                if (pending.isEmpty()) return; // stopping and drained
+                if (pending.size() > group.length) // runAlways work beyond CAPACITY
+                {
+                    keys = new Object[pending.size()];
+                    group = new Object[pending.size()];
+                }
+
+                for (Iterator<Map.Entry<Object, Object>> it = pending.entrySet().iterator(); it.hasNext(); )
+                {
+                    Map.Entry<Object, Object> e = it.next();
+                    keys[n] = e.getKey();
+                    group[n++] = e.getValue();
+                    it.remove();
+                }
+                busy = true;
+            }
+
+            for (int i = 0; i < n; i++)
+            {
+                Object op = group[i];
+                Object key = keys[i];
+                group[i] = keys[i] = null;
+                FileWriteEvent ev = Jfr.AVAILABLE ? FileWriteEvent.start() : null;
+                long bytes0 = WRITE_BYTES.sum();
+                long t0 = System.nanoTime();
+                try
+                {
+                    if (op instanceof Replace) ((Replace) op).write();
+                    else ((Task) op).run();
+                    completed++;
+                }
+                catch (Exception ex)
+                {
+                    failed++;
+                    log.debug("Snapshot write failed", ex);
+                }
+                taskNanos.record(System.nanoTime() - t0);
+                if (ev != null) ev.finish(key, WRITE_BYTES.sum() - bytes0);
+            }
+        }
+    }
+
+    private static final class Replace
+    {
+        final Path file;
+        final byte[] bytes;
+        final boolean fsync;
+
+        Replace(Path file, byte[] bytes, boolean fsync)
+        {
+            this.file = file;
+            this.bytes = bytes;
+            this.fsync = fsync;
+        }
+
+        void write() throws IOException
+        {
+            writeAtomically(file, bytes, fsync);
+        }
+    }
+
+    /** Key of one {@link #runAlways} task: equal only to itself. */
+    private static final class Once
+    {
+        final Object label;
+
+        Once(Object label)
+        {
+            this.label = label;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.valueOf(label);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a trace written by {@link TraceRecorder} one record at a time. The file is read into
+ * memory whole (traces are size capped); a torn last record, from a client that died while
+ * recording, ends the trace.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.shared.TraceReader &lt;file.rtr&gt;
+ * </pre>
+ * prints the duration and the number of records of each kind.
+ */
+public final class TraceReader
+{
+    /** One recorded widget and its children; arrays are null where the client returned null. */
+    public static final class Node
+    {
+        public final int id;
+        public final String text;
+        public final String name;
+        public final Node[] statics;
+        public final Node[] dynamics;
+        public final Node[] nested;
+
+        Node(int id, String text, String name, Node[] statics, Node[] dynamics, Node[] nested)
+        {
+            this.id = id;
+            this.text = text;
+            this.name = name;
+            this.statics = statics;
+            this.dynamics = dynamics;
+            this.nested = nested;
+        }
+    }
+
+    private final ByteBuffer in;
+    private final long startMs;
+    private final List<String> strings = new ArrayList<>();
+
+    // current record
+    private int kind;
+    private long timeMicros;
+    private int a, b;
+    private String text;
+    private int[] ids = new int[0], qtys = new int[0];
+    private Node tree;
+
+    public TraceReader(Path file) throws IOException
+    {
+        in = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < TraceRecorder.HEADER || in.getInt(0) != TraceRecorder.MAGIC)
+        {
+            throw new IOException("not a trace: " + file);
+        }
+        if (in.getInt(4) != TraceRecorder.FORMAT) throw new IOException("unsupported trace format " + in.getInt(4));
+        startMs = in.getLong(8);
+        in.position(TraceRecorder.HEADER);
+    }
+
+    /** Epoch millis at which recording started. */
+    public long startMs() { return startMs; }
+
+    /** Moves to the next record; false at the end of the trace. */
+    public boolean next()
+    {
+        if (!in.hasRemaining()) return false;
+        int mark = in.position();
+        try
+        {
+            kind = in.get();
+            timeMicros += readVarLong();
+            text = null;
+            tree = null;
+            switch (kind)
+            {
+                case TraceRecorder.GAME_TICK:
+                case TraceRecorder.BANK_OPEN:
+                    a = (int) readVarLong();
+                    break;
+                case TraceRecorder.CLIENT_TICK:
+                    break;
+                case TraceRecorder.GAME_STATE:
+                case TraceRecorder.PLAYER:
+                    text = readString();
+                    break;
+                case TraceRecorder.CONTAINER:
+                    readContainer();
+                    break;
+                case TraceRecorder.WIDGET_LOADED:
+                    a = (int) readVarLong();
+                    tree = readVarLong() == 0 ? null : readNode(0);
+                    break;
+                case TraceRecorder.VARP:
+                    a = (int) readVarLong();
+                    b = (int) unzigzag(readVarLong());
+                    break;
+                default:
+                    throw new IllegalStateException("unknown record kind " + kind + " at " + mark);
+            }
+            return true;
+        }
+        catch (BufferUnderflowException ex)
+        {
+            in.position(in.limit()); // torn tail
+            return false;
+        }
+    }
+
+    public int kind() { return kind; }
+
+    /** Microseconds since recording started. */
+    public long timeMicros() { return timeMicros; }
+
+    /** GAME_TICK: the client's tick count. */
+    public int tickCount() { return a; }
+
+    /** GAME_STATE: the state's name; PLAYER: the local player's name. */
+    public String text() { return text; }
+
+    /** CONTAINER: container id. */
+    public int containerId() { return a; }
+
+    /** CONTAINER: item ids, one per slot; only the first {@link #slots()} are valid. */
+    public int[] ids() { return ids; }
+
+    /** CONTAINER: quantities, parallel to {@link #ids()}. */
+    public int[] quantities() { return qtys; }
+
+    public int slots() { return b; }
+
+    /** WIDGET_LOADED: the group id. */
+    public int groupId() { return a; }
+
+    /** WIDGET_LOADED: widget (group, 0) with its children as recorded; null if the group had none. */
+    public Node tree() { return tree; }
+
+    /** VARP: the varp id. */
+    public int varp() { return a; }
+
+    /** VARP: its new value. */
+    public int value() { return b; }
+
+    /** BANK_OPEN: whether the bank interface is showing. */
+    public boolean bankOpen() { return a != 0; }
+
+    private void readContainer()
+    {
+        a = (int) readVarLong();
+        int n = (int) readVarLong();
+        if (ids.length < n)
+        {
+            ids = new int[n];
+            qtys = new int[n];
+        }
+        int prevId = 0;
+        for (int i = 0; i < n; i++)
+        {
+            ids[i] = (int) (prevId + unzigzag(readVarLong()));
+            qtys[i] = (int) readVarLong();
+            prevId = ids[i];
+        }
+        b = n;
+    }
+
+    private Node readNode(int depth)
+    {
+        int id = (int) readVarLong();
+        String t = readString();
+        String n = readString();
+        return new Node(id, t, n, readChildren(depth), readChildren(depth), readChildren(depth));
+    }
+
+    private Node[] readChildren(int depth)
+    {
+        int n = (int) readVarLong() - 1;
+        if (n < 0) return null;
+        Node[] out = new Node[n];
+        for (int i = 0; i < n; i++) out[i] = readNode(depth + 1);
+        return out;
+    }
+
+    private String readString()
+    {
+        int ref = (int) readVarLong();
+        if (ref > 0) return strings.get(ref - 1);
+        int len = (int) readVarLong();
+        if (len > in.remaining()) throw new BufferUnderflowException();
+        String s = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        if (strings.size() < TraceRecorder.MAX_STRINGS) strings.add(s);
+        return s;
+    }
+
+    private long readVarLong()
+    {
+        long v = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            byte x = in.get();
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0) return v;
+        }
+    }
+
+    private static long unzigzag(long v)
+    {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static final String[] KINDS = {
+            "?", "game ticks", "client ticks", "game states", "containers", "widget loads", "players", "varps", "bank open",
+    };
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("usage: TraceReader <file.rtr>");
+            System.exit(2);
+        }
+
+        TraceReader r = new TraceReader(Paths.get(args[0]));
+        long[] counts = new long[KINDS.length];
+        long widgets = 0;
+        while (r.next())
+        {
+            counts[r.kind()]++;
+            if (r.kind() == TraceRecorder.WIDGET_LOADED) widgets += count(r.tree());
+        }
+        System.out.println("started: " + r.startMs() + ", duration: " + r.timeMicros() / 1_000 + " ms");
+        for (int k = 1; k < KINDS.length; k++) System.out.println(KINDS[k] + ": " + counts[k]);
+        System.out.println("widgets recorded: " + widgets);
+        System.out.println("strings: " + r.strings.size() + ", bytes: " + r.in.limit());
+    }
+
+    private static long count(Node n)
+    {
+        if (n == null) return 0;
+        long c = 1;
+        for (Node[] kids : Arrays.asList(n.statics, n.dynamics, n.nested))
+        {
+            if (kids != null) for (Node k : kids) c += count(k);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,415 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.Player;
+import net.runelite.api.VarPlayer;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in recorder of the client events the plugins react to, for replay off a live client
+ * (see {@link TraceReader} and the benchmarks' {@code TraceReplay}).
+ *
+ * Each plugin feeds it every event kind, so a trace from either plugin replays both. Within
+ * one classloader the plugins share an instance (reference counted like {@link SnapshotWriter})
+ * and an event reaching both is recorded once: events by identity, ticks by their counters.
+ *
+ * Little-endian file, {@code ~/.runelite/traces/<owner>-<yyyyMMdd-HHmmss>-<pid>.rtr}:
+ * <pre>
+ *  header (24 bytes)
+ *   0  int   magic 'RTR1'
+ *   4  int   format version (1)
+ *   8  long  start, epoch millis
+ *  16  long  reserved
+ *  records, back to back: kind byte, varint micros since the previous record, then
+ *   GAME_TICK      tick count
+ *   CLIENT_TICK    -
+ *   GAME_STATE     string state name
+ *   CONTAINER      container id, slot count, per slot zigzag(id - previous id), quantity
+ *   WIDGET_LOADED  group id, 1 and the widget tree of (group, 0), or 0 if it is not there
+ *   PLAYER         string local player name
+ *   VARP           varp id, zigzag(value)
+ *   BANK_OPEN      0 or 1
+ * </pre>
+ * Integers are varints. A string is a varint reference: 0 is followed by a varint length and
+ * UTF-8 bytes and takes the next table index (up to {@link #MAX_STRINGS}), anything else is
+ * that index plus one. A widget node is its id, text and name strings, then its static,
+ * dynamic and nested children, each as a varint count plus one (0 = no array) and the nodes.
+ * Trees are cut at {@link #MAX_WIDGETS} nodes or {@link #MAX_DEPTH} levels.
+ *
+ * Recording costs a few buffer writes on the client thread; the bytes are appended by the
+ * writer thread once per game tick. Recording stops once the file reaches its size limit.
+ */
+public final class TraceRecorder
+{
+    private static final Logger log = LoggerFactory.getLogger(TraceRecorder.class);
+
+    public static final String EXT = ".rtr";
+
+    public static final int GAME_TICK = 1;
+    public static final int CLIENT_TICK = 2;
+    public static final int GAME_STATE = 3;
+    public static final int CONTAINER = 4;
+    public static final int WIDGET_LOADED = 5;
+    public static final int PLAYER = 6;
+    public static final int VARP = 7;
+    public static final int BANK_OPEN = 8;
+
+    static final int MAGIC = 0x31525452; // "RTR1" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 24;
+    static final int MAX_STRINGS = 65_536;
+    static final int MAX_WIDGETS = 4_096;
+    static final int MAX_DEPTH = 32;
+
+    // only these varps are read by the plugins
+    private static final int[] VARPS = { VarPlayer.MEMBERSHIP_DAYS };
+
+    // handed over at each game tick, or once this much is buffered: client ticks keep
+    // coming on the login screen, where there are no game ticks
+    private static final int HANDOVER_BYTES = 16 * 1024;
+
+    private static TraceRecorder shared;
+    private static int refs;
+
+    private final Path file;
+    private final SnapshotWriter writer;
+    private final long maxBytes;
+
+    // client thread only
+    private byte[] buf = new byte[16 * 1024];
+    private int len;
+    private long lastNanos;
+    private long recorded;          // bytes handed over so far, header included
+    private boolean full;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private int widgetBudget;
+    private Object lastEvent;
+    private int lastTick = Integer.MIN_VALUE;
+    private int lastCycle = Integer.MIN_VALUE;
+    private String lastPlayer;
+    private int lastBankOpen = -1;
+
+    // handed to the writer thread; guarded by itself
+    private final Object pendingLock = new Object();
+    private byte[] pending = new byte[16 * 1024];
+    private int pendingLen;
+
+    // writer thread only
+    private FileChannel ch;
+
+    private TraceRecorder(Path file, SnapshotWriter writer, long maxBytes)
+    {
+        this.file = file;
+        this.writer = writer;
+        this.maxBytes = maxBytes;
+
+        ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(FORMAT).putLong(System.currentTimeMillis()).putLong(0);
+        System.arraycopy(h.array(), 0, buf, 0, HEADER);
+        len = HEADER;
+        lastNanos = System.nanoTime();
+    }
+
+    public static Path defaultDir()
+    {
+        return Paths.get(System.getProperty("user.home"), ".runelite", "traces");
+    }
+
+    /**
+     * Starts recording into a new file in {@code dir} named after {@code owner}, or joins the
+     * recording already running in this classloader.
+     */
+    public static synchronized TraceRecorder acquire(String owner, Path dir, SnapshotWriter writer, long maxBytes)
+    {
+        if (shared == null)
+        {
+            String stamp = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+            String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+            Path file = dir.resolve(owner + "-" + stamp + "-" + pid + EXT);
+            shared = new TraceRecorder(file, writer, maxBytes);
+            log.info("Recording client events to {}", file);
+        }
+        refs++;
+        return shared;
+    }
+
+    /** Drops a reference; the last one writes what is left and closes the file. Client thread. */
+    public static void release()
+    {
+        TraceRecorder r;
+        synchronized (TraceRecorder.class)
+        {
+            if (shared == null || --refs > 0) return;
+            r = shared;
+            shared = null;
+            refs = 0;
+        }
+        r.handOver();
+        r.writer.runAlways("trace:close:" + r.file, r::close);
+    }
+
+    public Path file()
+    {
+        return file;
+    }
+
+    // ---- events (client thread) ----
+
+    public void gameTick(Client client)
+    {
+        int tick = client.getTickCount();
+        if (tick == lastTick) return;
+        lastTick = tick;
+        state(client);
+        if (!begin(GAME_TICK)) return;
+        putVarInt(tick);
+        handOver();
+    }
+
+    public void clientTick(Client client)
+    {
+        int cycle = client.getGameCycle();
+        if (cycle == lastCycle) return;
+        lastCycle = cycle;
+        state(client);
+        begin(CLIENT_TICK);
+    }
+
+    public void gameState(GameStateChanged e)
+    {
+        if (seen(e) || !begin(GAME_STATE)) return;
+        putString(e.getGameState() == null ? GameState.UNKNOWN.name() : e.getGameState().name());
+    }
+
+    public void container(ItemContainerChanged e)
+    {
+        if (seen(e) || !begin(CONTAINER)) return;
+        ItemContainer c = e.getItemContainer();
+        Item[] items = c == null ? null : c.getItems();
+        putVarInt(e.getContainerId());
+        int n = items == null ? 0 : items.length;
+        putVarInt(n);
+        int prevId = 0;
+        for (int i = 0; i < n; i++)
+        {
+            putVarLong(zigzag((long) items[i].getId() - prevId));
+            putVarLong(items[i].getQuantity() & 0xFFFFFFFFL);
+            prevId = items[i].getId();
+        }
+    }
+
+    public void widgetLoaded(WidgetLoaded e, Client client)
+    {
+        if (seen(e) || !begin(WIDGET_LOADED)) return;
+        putVarInt(e.getGroupId());
+        Widget root = client.getWidget(e.getGroupId(), 0);
+        putVarInt(root == null ? 0 : 1);
+        if (root == null) return;
+        widgetBudget = MAX_WIDGETS;
+        putWidget(root, 0);
+    }
+
+    public void varbit(VarbitChanged e)
+    {
+        if (seen(e)) return;
+        int varp = e.getVarpId();
+        if (!watched(varp) || !begin(VARP)) return;
+        putVarInt(varp);
+        putVarLong(zigzag(e.getValue()));
+    }
+
+    /** Player name and bank visibility, recorded when they change. */
+    private void state(Client client)
+    {
+        Player p = client.getLocalPlayer();
+        String name = p == null ? null : p.getName();
+        if (name != null && !name.equals(lastPlayer) && begin(PLAYER))
+        {
+            putString(name);
+            lastPlayer = name;
+        }
+
+        int open = client.getWidget(WidgetInfo.BANK_CONTAINER) != null ? 1 : 0;
+        if (open != lastBankOpen && begin(BANK_OPEN))
+        {
+            putVarInt(open);
+            lastBankOpen = open;
+        }
+    }
+
+    private static boolean watched(int varp)
+    {
+        for (int v : VARPS) if (v == varp) return true;
+        return false;
+    }
+
+    private boolean seen(Object event)
+    {
+        if (event == lastEvent) return true;
+        lastEvent = event;
+        return false;
+    }
+
+    private boolean begin(int kind)
+    {
+        if (len >= HANDOVER_BYTES || recorded + len > maxBytes) handOver();
+        if (full) return false;
+        long now = System.nanoTime();
+        putByte(kind);
+        putVarLong(Math.max(0, (now - lastNanos) / 1_000));
+        // keep the remainder so rounding does not drift over a long trace
+        lastNanos = now - (now - lastNanos) % 1_000;
+        return true;
+    }
+
+    private void putWidget(Widget w, int depth)
+    {
+        widgetBudget--;
+        putVarLong(w == null ? 0 : w.getId() & 0xFFFFFFFFL);
+        putString(w == null ? null : w.getText());
+        putString(w == null ? null : w.getName());
+        boolean deeper = w != null && depth < MAX_DEPTH;
+        putChildren(deeper ? w.getStaticChildren() : null, depth);
+        putChildren(deeper ? w.getDynamicChildren() : null, depth);
+        putChildren(deeper ? w.getNestedChildren() : null, depth);
+    }
+
+    private void putChildren(Widget[] children, int depth)
+    {
+        if (children == null || widgetBudget <= 0)
+        {
+            putVarInt(0);
+            return;
+        }
+        int n = Math.min(children.length, widgetBudget);
+        putVarInt(n + 1);
+        for (int i = 0; i < n; i++) putWidget(children[i], depth + 1);
+    }
+
+    // ---- encoding ----
+
+    private void putString(String s)
+    {
+        if (s == null) s = "";
+        Integer idx = strings.get(s);
+        if (idx != null)
+        {
+            putVarInt(idx + 1);
+            return;
+        }
+        if (strings.size() < MAX_STRINGS) strings.put(s, strings.size());
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        putVarInt(0);
+        putVarInt(b.length);
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, len, b.length);
+        len += b.length;
+    }
+
+    private void putByte(int b)
+    {
+        ensure(1);
+        buf[len++] = (byte) b;
+    }
+
+    private void putVarInt(int v)
+    {
+        putVarLong(v & 0xFFFFFFFFL);
+    }
+
+    private void putVarLong(long v)
+    {
+        ensure(10);
+        while ((v & ~0x7FL) != 0)
+        {
+            buf[len++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[len++] = (byte) v;
+    }
+
+    private void ensure(int n)
+    {
+        if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+    }
+
+    static long zigzag(long v)
+    {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    // ---- output ----
+
+    /** Moves the recorded bytes to the writer thread. Client thread. */
+    private void handOver()
+    {
+        if (len == 0) return;
+        if (recorded + len > maxBytes)
+        {
+            full = true;
+            len = 0;
+            log.info("Trace {} reached {} bytes, recording stopped", file, maxBytes);
+            return;
+        }
+        synchronized (pendingLock)
+        {
+            if (pendingLen + len > pending.length) pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLen + len));
+            System.arraycopy(buf, 0, pending, pendingLen, len);
+            pendingLen += len;
+        }
+        recorded += len;
+        len = 0;
+        writer.run("trace:" + file, this::append);
+    }
+
+    private void append() throws IOException
+    {
+        byte[] chunk;
+        synchronized (pendingLock)
+        {
+            if (pendingLen == 0) return;
+            chunk = Arrays.copyOf(pending, pendingLen);
+            pendingLen = 0;
+        }
+        if (ch == null)
+        {
+            Files.createDirectories(file.getParent());
+            ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer b = ByteBuffer.wrap(chunk);
+        while (b.hasRemaining()) ch.write(b);
+        SnapshotWriter.recordBytes(chunk.length);
+    }
+
+    private void close() throws IOException
+    {
+        append();
+        if (ch != null)
+        {
+            ch.close();
+            ch = null;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Host-wide board of the latest values per account, shared by every client JVM through one
+ * memory-mapped file ({@code ~/.runelite/wealth-board.bin}).
+ *
+ * Each account owns a fixed slot, claimed once by a CAS on its key and found again by linear
+ * probing from the key's hash. Updates are a seqlock: the writer moves the slot's sequence
+ * to odd, stores the fields and releases it back to even; a reader copies the fields and keeps
+ * them only if it saw the same even sequence before and after. Nobody blocks, and an update
+ * costs a few stores into a page that is already mapped, so it is done on the client thread.
+ *
+ * Little-endian layout, see {@link WealthBoardReader} for the command-line reader:
+ * <pre>
+ *  header (64 bytes)
+ *   0  int   magic 'WBRD'
+ *   4  int   format version (1)
+ *   8  int   slot size (128)
+ *  12  int   slot count (1024)
+ *  16  long  created, epoch millis
+ *  slots (128 bytes each, from offset 64)
+ *   0  long  sequence, odd while an update is in progress, 0 = never written
+ *   8  long  key: hash of the normalised RSN, 0 = free
+ *  16  long  wealth updated, epoch millis (0 = none yet)
+ *  24  long  bank_ge_value
+ *  32  long  bank_coins
+ *  40  long  inventory_coins
+ *  48  long  days updated, epoch millis (0 = none yet)
+ *  56  int   membership days
+ *  60  int   RSN length in bytes
+ *  64  byte[64] RSN, UTF-8
+ * </pre>
+ * RSNs are keyed case-insensitively with '_' and non-breaking spaces read as spaces, so the
+ * Bank Wealth and Membership Days plugins land in the same slot for the same account.
+ */
+public final class WealthBoard
+{
+    public static final String FILE = "wealth-board.bin";
+
+    static final int MAGIC = 0x44524257; // "WBRD" little-endian
+    static final int FORMAT = 1;
+    static final int HEADER = 64;
+    static final int SLOT = 128;
+    static final int SLOTS = 1024;
+    static final int SIZE = HEADER + SLOT * SLOTS;
+
+    static final int OFF_SEQ = 0;
+    static final int OFF_KEY = 8;
+    static final int OFF_WEALTH_MS = 16;
+    static final int OFF_BANK = 24;
+    static final int OFF_BANK_COINS = 32;
+    static final int OFF_INV_COINS = 40;
+    static final int OFF_DAYS_MS = 48;
+    static final int OFF_DAYS = 56;
+    static final int OFF_NAME_LEN = 60;
+    static final int OFF_NAME = 64;
+    static final int NAME_MAX = SLOT - OFF_NAME;
+
+    private static final int WRITE_SPINS = 64;
+    static final long TAKEOVER_MS = 2_000;
+    private static final int READ_RETRIES = 1_000;
+
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** One account as last seen on the board. */
+    public static final class Entry
+    {
+        public final String rsn;
+        public final long wealthMs;
+        public final long bankValue;
+        public final long bankCoins;
+        public final long invCoins;
+        public final long daysMs;
+        public final int days;
+
+        Entry(String rsn, long wealthMs, long bankValue, long bankCoins, long invCoins, long daysMs, int days)
+        {
+            this.rsn = rsn;
+            this.wealthMs = wealthMs;
+            this.bankValue = bankValue;
+            this.bankCoins = bankCoins;
+            this.invCoins = invCoins;
+            this.daysMs = daysMs;
+            this.days = days;
+        }
+
+        @Override
+        public String toString()
+        {
+            return rsn + "," + wealthMs + "," + bankValue + "," + bankCoins + "," + invCoins + "," + daysMs + "," + days;
+        }
+    }
+
+    private final ByteBuffer map;
+
+    // writers only (one thread per instance: the client thread)
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final long[] stuck;
+    private final long[] stuckSince;
+    private long skipped;
+
+    private WealthBoard(ByteBuffer map, boolean writable)
+    {
+        this.map = map.order(ByteOrder.LITTLE_ENDIAN);
+        this.stuck = writable ? new long[SLOTS] : null;
+        this.stuckSince = writable ? new long[SLOTS] : null;
+    }
+
+    public static Path defaultFile()
+    {
+        return Paths.get(System.getProperty("user.home"), ".runelite", FILE);
+    }
+
+    /**
+     * Maps {@code file}; for writing it is created and initialised if missing (under a file
+     * lock, so concurrent first opens agree).
+     */
+    public static WealthBoard open(Path file, boolean write) throws IOException
+    {
+        if (write)
+        {
+            Path dir = file.getParent();
+            if (dir != null) Files.createDirectories(dir);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                FileLock lock = ch.lock();
+                try
+                {
+                    if (ch.size() == 0) initialise(ch);
+                    check(ch);
+                    return new WealthBoard(ch.map(FileChannel.MapMode.READ_WRITE, 0, SIZE), true);
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            check(ch);
+            return new WealthBoard(ch.map(FileChannel.MapMode.READ_ONLY, 0, SIZE), false);
+        }
+    }
+
+    public boolean putWealth(String rsn, long nowMs, long bankValue, long bankCoins, long invCoins)
+    {
+        int base = slot(rsn);
+        long seq = base < 0 ? -1 : begin(base);
+        if (seq < 0) { skipped++; return false; }
+
+        map.putLong(base + OFF_WEALTH_MS, nowMs);
+        map.putLong(base + OFF_BANK, bankValue);
+        map.putLong(base + OFF_BANK_COINS, bankCoins);
+        map.putLong(base + OFF_INV_COINS, invCoins);
+        putName(base, rsn);
+        return end(base, seq);
+    }
+
+    public boolean putDays(String rsn, long nowMs, int days)
+    {
+        int base = slot(rsn);
+        long seq = base < 0 ? -1 : begin(base);
+        if (seq < 0) { skipped++; return false; }
+
+        map.putLong(base + OFF_DAYS_MS, nowMs);
+        map.putInt(base + OFF_DAYS, days);
+        putName(base, rsn);
+        return end(base, seq);
+    }
+
+    /** Updates given up on because the board was full or a slot stayed busy. */
+    public long skipped() { return skipped; }
+
+    /**
+     * Every written slot, each internally consistent. Slots are read one after another, so
+     * two accounts may come from slightly different moments.
+     */
+    public List<Entry> snapshot()
+    {
+        List<Entry> out = new ArrayList<>();
+        byte[] name = new byte[NAME_MAX];
+        for (int i = 0; i < SLOTS; i++)
+        {
+            int base = HEADER + i * SLOT;
+            for (int attempt = 0; attempt < READ_RETRIES; attempt++)
+            {
+                long s1 = (long) LONG.getAcquire(map, base + OFF_SEQ);
+                if (s1 == 0) break; // free, or claimed but not written yet
+                if ((s1 & 1) != 0) { Thread.onSpinWait(); continue; }
+
+                long wealthMs = map.getLong(base + OFF_WEALTH_MS);
+                long bank = map.getLong(base + OFF_BANK);
+                long bankCoins = map.getLong(base + OFF_BANK_COINS);
+                long invCoins = map.getLong(base + OFF_INV_COINS);
+                long daysMs = map.getLong(base + OFF_DAYS_MS);
+                int days = map.getInt(base + OFF_DAYS);
+                int len = Math.max(0, Math.min(NAME_MAX, map.getInt(base + OFF_NAME_LEN)));
+                for (int b = 0; b < len; b++) name[b] = map.get(base + OFF_NAME + b);
+
+                VarHandle.loadLoadFence();
+                if ((long) LONG.getAcquire(map, base + OFF_SEQ) != s1) continue;
+
+                out.add(new Entry(new String(name, 0, len, StandardCharsets.UTF_8),
+                        wealthMs, bank, bankCoins, invCoins, daysMs, days));
+                break;
+            }
+        }
+        return out;
+    }
+
+    /** Base offset of the slot for {@code rsn}, claiming a free one if needed; -1 when full. */
+    private int slot(String rsn)
+    {
+        Integer cached = slots.get(rsn);
+        if (cached != null) return cached;
+
+        long key = key(rsn);
+        int start = (int) Long.remainderUnsigned(key, SLOTS);
+        for (int probe = 0; probe < SLOTS; probe++)
+        {
+            int base = HEADER + ((start + probe) % SLOTS) * SLOT;
+            long k = (long) LONG.getVolatile(map, base + OFF_KEY);
+            if (k == 0 && LONG.compareAndSet(map, base + OFF_KEY, 0L, key)) k = key;
+            if (k == key)
+            {
+                slots.put(rsn, base);
+                return base;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes the slot's seqlock and returns the odd sequence now held, or -1 if another writer
+     * kept it for the whole spin. A sequence still odd after {@link #TAKEOVER_MS} belongs to a
+     * process that died mid-update and is taken over.
+     */
+    private long begin(int base)
+    {
+        int idx = (base - HEADER) / SLOT;
+        long s = (long) LONG.getVolatile(map, base + OFF_SEQ);
+        for (int spin = 0; spin < WRITE_SPINS; spin++)
+        {
+            if ((s & 1) == 0)
+            {
+                if (LONG.compareAndSet(map, base + OFF_SEQ, s, s + 1)) return s + 1;
+            }
+            else
+            {
+                Thread.onSpinWait();
+            }
+            s = (long) LONG.getVolatile(map, base + OFF_SEQ);
+        }
+
+        if ((s & 1) == 0) return -1;
+        long now = System.currentTimeMillis();
+        if (stuck[idx] != s)
+        {
+            stuck[idx] = s;
+            stuckSince[idx] = now;
+            return -1;
+        }
+        if (now - stuckSince[idx] >= TAKEOVER_MS && LONG.compareAndSet(map, base + OFF_SEQ, s, s + 2)) return s + 2;
+        return -1;
+    }
+
+    /** Releases the seqlock; a CAS so a writer that was taken over can never move it backwards. */
+    private boolean end(int base, long seq)
+    {
+        if (LONG.compareAndSet(map, base + OFF_SEQ, seq, seq + 1)) return true;
+        skipped++;
+        return false;
+    }
+
+    private void putName(int base, String rsn)
+    {
+        byte[] b = rsn.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(b.length, NAME_MAX);
+        map.putInt(base + OFF_NAME_LEN, len);
+        for (int i = 0; i < len; i++) map.put(base + OFF_NAME + i, b[i]);
+    }
+
+    /** FNV-1a of the normalised name; never 0. */
+    static long key(String rsn)
+    {
+        String n = rsn.replace('\u00A0', ' ').replace('_', ' ').trim().toLowerCase(Locale.ROOT);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : n.getBytes(StandardCharsets.UTF_8))
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    private static void initialise(FileChannel ch) throws IOException
+    {
+        ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, SLOT).putInt(12, SLOTS).putLong(16, System.currentTimeMillis());
+        while (h.hasRemaining()) ch.write(h, h.position());
+        ch.write(ByteBuffer.allocate(1), SIZE - 1); // zero-filled slots
+        ch.force(true);
+    }
+
+    private static void check(FileChannel ch) throws IOException
+    {
+        ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (h.hasRemaining() && ch.read(h, h.position()) > 0) { }
+        if (h.hasRemaining() || ch.size() < SIZE) throw new IOException("truncated wealth board");
+        if (h.getInt(0) != MAGIC) throw new IOException("not a wealth board");
+        if (h.getInt(4) != FORMAT || h.getInt(8) != SLOT || h.getInt(12) != SLOTS)
+        {
+            throw new IOException("unsupported wealth board format " + h.getInt(4));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.craig.shared;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Prints every account on the host's {@link WealthBoard} and the host totals, from one pass
+ * over the mapping; nothing is parsed and the clients are never blocked.
+ *
+ * <pre>
+ * java -cp bank-wealth.jar com.craig.shared.WealthBoardReader [board file] [--csv]
+ * </pre>
+ */
+public final class WealthBoardReader
+{
+    private WealthBoardReader() { }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path file = WealthBoard.defaultFile();
+        boolean csv = false;
+        for (String a : args)
+        {
+            if ("--csv".equals(a)) csv = true;
+            else file = Paths.get(a);
+        }
+
+        List<WealthBoard.Entry> entries = WealthBoard.open(file, false).snapshot();
+        if (csv)
+        {
+            System.out.println("rsn,wealth_ms,bank_ge_value,bank_coins,inventory_coins,days_ms,days");
+            for (WealthBoard.Entry e : entries) System.out.println(e);
+            return;
+        }
+
+        long bank = 0, coins = 0;
+        for (WealthBoard.Entry e : entries)
+        {
+            long updated = Math.max(e.wealthMs, e.daysMs);
+            System.out.printf("%-14s bank %,15d  coins %,15d  days %5s  %s%n",
+                    e.rsn, e.bankValue + e.invCoins, e.bankCoins + e.invCoins,
+                    e.daysMs == 0 ? "-" : Integer.toString(e.days),
+                    Instant.ofEpochMilli(updated));
+            bank += e.bankValue + e.invCoins;
+            coins += e.bankCoins + e.invCoins;
+        }
+        System.out.printf("%d accounts, total %,d gp (%,d gp in coins)%n", entries.size(), bank, coins);
+    }
+}
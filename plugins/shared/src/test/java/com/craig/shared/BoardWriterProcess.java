@@ -0,0 +1,95 @@
+package com.craig.shared;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A client JVM for {@link WealthBoardConcurrencyTest}; prints READY once the board is open.
+ *
+ * <pre>
+ * write FILE SEED ACCOUNTS MILLIS   update random accounts until MILLIS pass (forever if 0),
+ *                                   then print "DONE puts skipped"
+ * hold  FILE RSN                    claim RSN, leave its slot mid-update and wait to be killed
+ * </pre>
+ * Every update keeps {@code bankValue == bankCoins + invCoins} and
+ * {@code days == daysMs % DAYS_MOD}, so a reader can tell a torn slot from a whole one.
+ */
+final class BoardWriterProcess
+{
+    static final int DAYS_MOD = 997;
+
+    public static void main(String[] args) throws Exception
+    {
+        Path file = Paths.get(args[1]);
+        WealthBoard board = WealthBoard.open(file, true);
+
+        if ("hold".equals(args[0]))
+        {
+            String rsn = args[2];
+            board.putWealth(rsn, 1, 3, 1, 2);
+            hold(file, rsn);
+            System.out.println("READY");
+            System.out.flush();
+            Thread.sleep(Long.MAX_VALUE);
+            return;
+        }
+
+        Random rnd = new Random(Long.parseLong(args[2]));
+        int accounts = Integer.parseInt(args[3]);
+        long millis = Long.parseLong(args[4]);
+        System.out.println("READY");
+        System.out.flush();
+
+        long end = millis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + millis;
+        long puts = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            String rsn = name(rnd.nextInt(accounts));
+            long now = System.currentTimeMillis();
+            boolean ok;
+            if (rnd.nextInt(4) == 0)
+            {
+                long daysMs = now + rnd.nextInt(1_000_000);
+                ok = board.putDays(rsn, daysMs, (int) (daysMs % DAYS_MOD));
+            }
+            else
+            {
+                long coins = rnd.nextLong() >>> 2, inv = rnd.nextLong() >>> 2;
+                ok = board.putWealth(rsn, now, coins + inv, coins, inv);
+            }
+            if (ok) puts++;
+        }
+        System.out.println("DONE " + puts + " " + board.skipped());
+    }
+
+    static String name(int i)
+    {
+        return "Account " + i;
+    }
+
+    /** Leaves the slot as a writer killed between its stores would: odd sequence, half the fields new. */
+    private static void hold(Path file, String rsn) throws Exception
+    {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, WealthBoard.SIZE);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            long key = WealthBoard.key(rsn);
+            for (int i = 0; i < WealthBoard.SLOTS; i++)
+            {
+                int base = WealthBoard.HEADER + i * WealthBoard.SLOT;
+                if (map.getLong(base + WealthBoard.OFF_KEY) != key) continue;
+                map.putLong(base + WealthBoard.OFF_SEQ, map.getLong(base + WealthBoard.OFF_SEQ) + 1);
+                map.putLong(base + WealthBoard.OFF_BANK, 1_000_000);
+                map.force();
+                return;
+            }
+            throw new IllegalStateException("no slot for " + rsn);
+        }
+    }
+}
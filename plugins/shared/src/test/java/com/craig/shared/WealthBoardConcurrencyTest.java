@@ -0,0 +1,206 @@
+package com.craig.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link WealthBoard} shared by several writer JVMs ({@link BoardWriterProcess}) on one host,
+ * with this JVM reading.
+ */
+public class WealthBoardConcurrencyTest
+{
+    private static final int WRITERS = 4;
+    private static final int ACCOUNTS = 8;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<Process> started = new ArrayList<>();
+    // one reader per process, or lines the first one buffered would be lost
+    private final Map<Process, BufferedReader> stdout = new HashMap<>();
+    private Path file;
+
+    @Before
+    public void setUp()
+    {
+        file = tmp.getRoot().toPath().resolve(WealthBoard.FILE);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (Process p : started) p.destroyForcibly();
+    }
+
+    @Test(timeout = 60_000)
+    public void readersNeverSeeATornSlot() throws Exception
+    {
+        List<Process> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) writers.add(start("write", file.toString(), Integer.toString(i), Integer.toString(ACCOUNTS), "4000"));
+        for (Process w : writers) awaitReady(w);
+
+        WealthBoard board = WealthBoard.open(file, false);
+        int snapshots = 0;
+        while (anyAlive(writers))
+        {
+            check(board.snapshot());
+            snapshots++;
+        }
+
+        long puts = 0;
+        for (Process w : writers)
+        {
+            assertEquals(0, w.waitFor());
+            String done = lastLine(w);
+            assertTrue(done, done.startsWith("DONE "));
+            puts += Long.parseLong(done.split(" ")[1]);
+        }
+        List<WealthBoard.Entry> last = board.snapshot();
+        check(last);
+        assertEquals(ACCOUNTS, last.size());
+        assertTrue("only " + puts + " updates", puts > 10_000);
+        assertTrue("only " + snapshots + " snapshots", snapshots > 100);
+    }
+
+    @Test(timeout = 60_000)
+    public void writersKilledMidRunLeaveTheBoardWritable() throws Exception
+    {
+        List<Process> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) writers.add(start("write", file.toString(), Integer.toString(i), Integer.toString(ACCOUNTS), "0"));
+        for (Process w : writers) awaitReady(w);
+
+        Random rnd = new Random(42);
+        for (Process w : writers)
+        {
+            Thread.sleep(50 + rnd.nextInt(200));
+            w.destroyForcibly().waitFor();
+        }
+
+        // any slot a writer died inside is taken over once it has been odd for TAKEOVER_MS
+        WealthBoard board = WealthBoard.open(file, true);
+        long deadline = System.currentTimeMillis() + WealthBoard.TAKEOVER_MS + 5_000;
+        for (int i = 0; i < ACCOUNTS; i++)
+        {
+            String rsn = BoardWriterProcess.name(i);
+            while (!board.putWealth(rsn, 1, 30 + i, 10, 20 + i))
+            {
+                assertTrue(rsn + " still busy", System.currentTimeMillis() < deadline);
+                Thread.sleep(20);
+            }
+        }
+
+        List<WealthBoard.Entry> entries = board.snapshot();
+        check(entries);
+        assertEquals(ACCOUNTS, entries.size());
+        for (WealthBoard.Entry e : entries) assertEquals(10, e.bankCoins);
+    }
+
+    @Test(timeout = 60_000)
+    public void slotOfAWriterKilledMidUpdateIsTakenOver() throws Exception
+    {
+        Process holder = start("hold", file.toString(), "Held");
+        awaitReady(holder);
+        holder.destroyForcibly().waitFor();
+
+        WealthBoard board = WealthBoard.open(file, true);
+        assertNull("half-written slot was read", find(board.snapshot(), "Held"));
+
+        long t0 = System.currentTimeMillis();
+        assertFalse(board.putWealth("Held", 2, 30, 10, 20));
+        while (!board.putWealth("Held", 2, 30, 10, 20))
+        {
+            assertTrue("not taken over", System.currentTimeMillis() - t0 < WealthBoard.TAKEOVER_MS + 5_000);
+            Thread.sleep(20);
+        }
+        assertTrue("taken over early", System.currentTimeMillis() - t0 >= WealthBoard.TAKEOVER_MS);
+
+        WealthBoard.Entry e = find(board.snapshot(), "Held");
+        assertNotNull(e);
+        assertEquals(30, e.bankValue);
+        assertEquals(10, e.bankCoins);
+        assertEquals(20, e.invCoins);
+    }
+
+    /** Every entry whole: its fields agree with each other, and each account appears once. */
+    private static void check(List<WealthBoard.Entry> entries)
+    {
+        Set<String> seen = new HashSet<>();
+        for (WealthBoard.Entry e : entries)
+        {
+            assertTrue("duplicate " + e.rsn, seen.add(e.rsn));
+            assertEquals("torn wealth: " + e, e.bankCoins + e.invCoins, e.bankValue);
+            if (e.daysMs != 0) assertEquals("torn days: " + e, e.daysMs % BoardWriterProcess.DAYS_MOD, e.days);
+        }
+    }
+
+    private static WealthBoard.Entry find(List<WealthBoard.Entry> entries, String rsn)
+    {
+        for (WealthBoard.Entry e : entries) if (e.rsn.equals(rsn)) return e;
+        return null;
+    }
+
+    private Process start(String... args) throws Exception
+    {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-cp");
+        cmd.add(location(WealthBoard.class) + File.pathSeparator + location(BoardWriterProcess.class));
+        cmd.add(BoardWriterProcess.class.getName());
+        for (String a : args) cmd.add(a);
+        Process p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        started.add(p);
+        return p;
+    }
+
+    private static String location(Class<?> c) throws Exception
+    {
+        return Paths.get(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    private void awaitReady(Process p) throws IOException
+    {
+        assertEquals("READY", reader(p).readLine());
+    }
+
+    private String lastLine(Process p) throws IOException
+    {
+        String line, last = null;
+        BufferedReader r = reader(p);
+        while ((line = r.readLine()) != null) last = line;
+        return String.valueOf(last);
+    }
+
+    private BufferedReader reader(Process p)
+    {
+        return stdout.computeIfAbsent(p, k -> new BufferedReader(new InputStreamReader(k.getInputStream(), StandardCharsets.UTF_8)));
+    }
+
+    private static boolean anyAlive(List<Process> ps)
+    {
+        for (Process p : ps) if (p.isAlive()) return true;
+        return false;
+    }
+}